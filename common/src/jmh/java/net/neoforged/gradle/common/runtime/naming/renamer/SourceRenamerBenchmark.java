@@ -0,0 +1,122 @@
+package net.neoforged.gradle.common.runtime.naming.renamer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link TokenScanningSourceRenamer} with the {@link RegexBasedSourceRenamer} on a set of generated
+ * source files, which look like decompiled Minecraft classes with SRG names.
+ * <p>
+ * Run with {@code gradlew :common:jmh}.
+ */
+@SuppressWarnings("deprecation")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SourceRenamerBenchmark {
+
+    private static final int FILES = 200;
+    private static final int MEMBERS_PER_FILE = 60;
+
+    @Param({"false", "true"})
+    public boolean javadocs;
+
+    private byte[][] sources;
+    private RegexBasedSourceRenamer regexRenamer;
+    private TokenScanningSourceRenamer scanningRenamer;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        final Random random = new Random(42);
+        final Map<String, String> names = new HashMap<>();
+        final Map<String, String> docs = new HashMap<>();
+
+        sources = new byte[FILES][];
+        int id = 10000;
+        for (int file = 0; file < FILES; file++) {
+            final StringBuilder source = new StringBuilder();
+            source.append("package net.minecraft.world.level;\n\n");
+            source.append("import java.util.List;\n\n");
+            source.append("public class Generated").append(file).append(" {\n");
+            for (int member = 0; member < MEMBERS_PER_FILE; member++) {
+                final String field = "f_" + id++ + "_";
+                final String method = "m_" + id++ + "_";
+                final String parameter = "p_" + id++ + "_";
+                names.put(field, "field" + member);
+                names.put(method, "method" + member);
+                names.put(parameter, "parameter" + member);
+                if (random.nextInt(4) == 0) {
+                    docs.put(method, "Documents method " + member);
+                }
+
+                source.append("   private final int ").append(field).append(" = ").append(random.nextInt()).append(";\n\n");
+                source.append("   @Override\n");
+                source.append("   public int ").append(method).append("(int ").append(parameter).append(") {\n");
+                source.append("      List<Integer> list = List.of(").append(parameter).append(", this.").append(field).append(");\n");
+                source.append("      list.forEach((p_").append(id).append("_1_) -> System.out.println(p_").append(id).append("_1_));\n");
+                source.append("      return this.").append(field).append(" + ").append(parameter).append(" * list.size();\n");
+                source.append("   }\n\n");
+            }
+            source.append("}\n");
+            sources[file] = source.toString().getBytes(StandardCharsets.UTF_8);
+        }
+
+        regexRenamer = new RegexBasedSourceRenamer() {
+            @Override
+            public Map<String, String> getNames() {
+                return names;
+            }
+
+            @Override
+            public Map<String, String> getDocs() {
+                return docs;
+            }
+        };
+        scanningRenamer = new TokenScanningSourceRenamer() {
+            @Override
+            public Map<String, String> getNames() {
+                return names;
+            }
+
+            @Override
+            public Map<String, String> getDocs() {
+                return docs;
+            }
+        };
+    }
+
+    @Benchmark
+    public void regex(Blackhole blackhole) throws IOException {
+        for (byte[] source : sources) {
+            blackhole.consume(regexRenamer.rename(source, javadocs, true));
+        }
+    }
+
+    @Benchmark
+    public void scanning(Blackhole blackhole) throws IOException {
+        for (byte[] source : sources) {
+            blackhole.consume(scanningRenamer.rename(source, javadocs, true));
+        }
+    }
+}
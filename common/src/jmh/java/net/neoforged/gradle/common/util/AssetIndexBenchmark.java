@@ -0,0 +1,134 @@
+package net.neoforged.gradle.common.util;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reading the distinct asset hashes from a generated asset index of 4096 objects, which is the size of the
+ * asset index of a current game version.
+ * <p>
+ * Compares the streaming {@link AssetIndex} reader against binding the file with Gson reflection through an unbuffered
+ * reader, which is how the assets were read before, and against building a full {@link JsonObject} tree.
+ * <p>
+ * Run with {@code gradlew :common:jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class AssetIndexBenchmark {
+
+    private static final int OBJECTS = 4096;
+    private static final Gson GSON = new Gson();
+
+    private Path workspace;
+    private File assetIndex;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, NoSuchAlgorithmException {
+        workspace = Files.createTempDirectory("asset-index-benchmark");
+        assetIndex = workspace.resolve("index.json").toFile();
+
+        final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+        final StringBuilder json = new StringBuilder("{\n  \"objects\": {\n");
+        for (int object = 0; object < OBJECTS; object++) {
+            final String name = "minecraft/sounds/generated/sound" + object + ".ogg";
+            final StringBuilder hash = new StringBuilder();
+            for (byte b : digest.digest(name.getBytes(StandardCharsets.UTF_8))) {
+                hash.append(String.format("%02x", b));
+            }
+
+            json.append("    \"").append(name).append("\": {\n");
+            json.append("      \"hash\": \"").append(hash).append("\",\n");
+            json.append("      \"size\": ").append(1000 + object * 37).append("\n");
+            json.append("    }").append(object == OBJECTS - 1 ? "\n" : ",\n");
+        }
+        json.append("  }\n}\n");
+        Files.write(assetIndex.toPath(), json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(workspace.toFile());
+    }
+
+    @Benchmark
+    public Set<String> streaming() {
+        final Set<String> hashes = new HashSet<>();
+        for (AssetIndex.Asset asset : AssetIndex.read(assetIndex).getObjects().values()) {
+            hashes.add(asset.getHash());
+        }
+        return hashes;
+    }
+
+    @Benchmark
+    public Set<String> unbufferedReflection() throws IOException {
+        final ReflectiveAssetIndex index;
+        try (InputStream stream = new FileInputStream(assetIndex)) {
+            index = GSON.fromJson(new InputStreamReader(stream), ReflectiveAssetIndex.class);
+        }
+
+        final Set<String> hashes = new HashSet<>();
+        for (ReflectiveAsset asset : index.objects.values()) {
+            hashes.add(asset.hash);
+        }
+        return hashes;
+    }
+
+    @Benchmark
+    public Set<String> tree() throws IOException {
+        final JsonObject json;
+        try (Reader reader = Files.newBufferedReader(assetIndex.toPath(), StandardCharsets.UTF_8)) {
+            json = JsonParser.parseReader(reader).getAsJsonObject();
+        }
+
+        final Set<String> hashes = new HashSet<>();
+        for (Map.Entry<String, JsonElement> entry : json.getAsJsonObject("objects").entrySet()) {
+            hashes.add(entry.getValue().getAsJsonObject().get("hash").getAsString());
+        }
+        return hashes;
+    }
+
+    private static final class ReflectiveAssetIndex {
+        private Map<String, ReflectiveAsset> objects = new HashMap<>();
+    }
+
+    private static final class ReflectiveAsset {
+        private String hash;
+        private long size;
+    }
+}
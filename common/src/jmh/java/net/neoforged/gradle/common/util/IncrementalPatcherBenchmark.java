@@ -0,0 +1,150 @@
+package net.neoforged.gradle.common.util;
+
+import codechicken.diffpatch.cli.PatchOperation;
+import codechicken.diffpatch.util.PatchMode;
+import codechicken.diffpatch.util.archiver.ArchiveFormat;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Measures a full run of the {@link IncrementalPatcher} on a generated source tree of 5000 files, every second of
+ * which has a patch, with a varying amount of patch shards applied in parallel.
+ * <p>
+ * Run with {@code gradlew :common:jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class IncrementalPatcherBenchmark {
+
+    private static final int FILES = 5000;
+    private static final int LINES_PER_FILE = 80;
+    private static final String PATCHES_PREFIX = "patches";
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    private Path workspace;
+    private Path base;
+    private Path patches;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        workspace = Files.createTempDirectory("patch-benchmark");
+        base = workspace.resolve("base.jar");
+        patches = workspace.resolve("patches");
+
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(base))) {
+            for (int file = 0; file < FILES; file++) {
+                final String name = "net/minecraft/generated/Generated" + file + ".java";
+                out.putNextEntry(new ZipEntry(name));
+                out.write(source(file).getBytes(StandardCharsets.UTF_8));
+                out.closeEntry();
+
+                if (file % 2 == 0) {
+                    final Path patch = patches.resolve(PATCHES_PREFIX).resolve(name + ".patch");
+                    Files.createDirectories(patch.getParent());
+                    Files.write(patch, patch(name, file).getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(workspace.toFile());
+    }
+
+    @Benchmark
+    public int patch() throws IOException {
+        final Path run = Files.createTempDirectory(workspace, "run");
+        try {
+            final IncrementalPatcher patcher = new IncrementalPatcher(
+                    base.toFile(),
+                    patches,
+                    PATCHES_PREFIX,
+                    run.resolve("output.jar").toFile(),
+                    run.resolve("rejects.zip"),
+                    run.resolve("patch-state.txt").toFile(),
+                    "benchmark",
+                    parallelism
+            );
+            return patcher.apply((basePath, patchesPath, outputPath, rejectsPath) -> PatchOperation.builder()
+                    .logTo(new PrintStream(NullOutputStream.NULL_OUTPUT_STREAM))
+                    .basePath(basePath)
+                    .patchesPath(patchesPath)
+                    .patchesPrefix(PATCHES_PREFIX)
+                    .outputPath(outputPath, ArchiveFormat.ZIP)
+                    .rejectsPath(rejectsPath)
+                    .mode(PatchMode.OFFSET)
+                    .build()
+                    .operate()
+                    .exit);
+        } finally {
+            FileUtils.deleteDirectory(run.toFile());
+        }
+    }
+
+    private static String source(int file) {
+        final StringBuilder source = new StringBuilder();
+        source.append("package net.minecraft.generated;\n\n");
+        source.append("public class Generated").append(file).append(" {\n");
+        for (int line = 0; line < LINES_PER_FILE; line++) {
+            source.append(line(file, line)).append("\n");
+        }
+        source.append("}\n");
+        return source.toString();
+    }
+
+    private static String line(int file, int line) {
+        return "   private final int field" + line + " = " + (file * 31 + line) + ";";
+    }
+
+    /**
+     * Creates a patch which replaces a line in the middle of the generated source.
+     */
+    private static String patch(String name, int file) {
+        //The first field is on the fourth line of the file.
+        final int changed = LINES_PER_FILE / 2;
+        final int start = changed + 4 - 3;
+
+        final StringBuilder patch = new StringBuilder();
+        patch.append("--- a/").append(name).append("\n");
+        patch.append("+++ b/").append(name).append("\n");
+        patch.append("@@ -").append(start).append(",7 +").append(start).append(",7 @@\n");
+        for (int line = changed - 3; line < changed; line++) {
+            patch.append(" ").append(line(file, line)).append("\n");
+        }
+        patch.append("-").append(line(file, changed)).append("\n");
+        patch.append("+   private final int field").append(changed).append(" = 0; // Patched\n");
+        for (int line = changed + 1; line <= changed + 3; line++) {
+            patch.append(" ").append(line(file, line)).append("\n");
+        }
+        return patch.toString();
+    }
+}
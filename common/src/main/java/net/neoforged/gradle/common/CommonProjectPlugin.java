@@ -1,6 +1,9 @@
 package net.neoforged.gradle.common;
 
+import net.neoforged.gradle.common.caching.AssetDownloadService;
 import net.neoforged.gradle.common.caching.CentralCacheService;
+import net.neoforged.gradle.common.caching.MappingFileCacheService;
+import net.neoforged.gradle.common.caching.VerifiedHashIndexService;
 import net.neoforged.gradle.common.dependency.ExtraJarDependencyManager;
 import net.neoforged.gradle.common.extensions.*;
 import net.neoforged.gradle.common.extensions.dependency.creation.ProjectBasedDependencyCreator;
@@ -33,10 +36,12 @@ import org.gradle.api.Project;
 import org.gradle.api.artifacts.repositories.MavenArtifactRepository;
 import org.gradle.api.plugins.JavaPlugin;
 import org.gradle.api.tasks.SourceSetContainer;
+import org.gradle.build.event.BuildEventsListenerRegistry;
 import org.gradle.plugins.ide.eclipse.EclipsePlugin;
 import org.gradle.plugins.ide.idea.IdeaPlugin;
 import org.jetbrains.gradle.ext.IdeaExtPlugin;
 
+import javax.inject.Inject;
 import java.util.HashSet;
 import java.util.Optional;
 import java.util.Set;
@@ -45,6 +50,17 @@ public class CommonProjectPlugin implements Plugin<Project> {
     
     public static final String ASSETS_SERVICE = "ng_assets";
     public static final String LIBRARIES_SERVICE = "ng_libraries";
+    public static final String ASSET_DOWNLOAD_SERVICE = "ng_asset_downloads";
+    public static final String MAPPING_FILE_CACHE_SERVICE = "ng_mapping_files";
+    public static final String DECOMPILED_SOURCES_SERVICE = "ng_decompiled_sources";
+    public static final String HASH_INDEX_SERVICE = "ng_hash_indices";
+
+    private final BuildEventsListenerRegistry buildEventsListenerRegistry;
+
+    @Inject
+    public CommonProjectPlugin(BuildEventsListenerRegistry buildEventsListenerRegistry) {
+        this.buildEventsListenerRegistry = buildEventsListenerRegistry;
+    }
     
     @Override
     public void apply(Project project) {
@@ -61,6 +77,10 @@ public class CommonProjectPlugin implements Plugin<Project> {
         //Register the assets service
         CentralCacheService.register(project, ASSETS_SERVICE, FileCacheUtils.getAssetsCacheDirectory(project));
         CentralCacheService.register(project, LIBRARIES_SERVICE, FileCacheUtils.getLibrariesCacheDirectory(project));
+        CentralCacheService.register(project, DECOMPILED_SOURCES_SERVICE, FileCacheUtils.getDecompiledSourcesCacheDirectory(project));
+        AssetDownloadService.register(project, ASSET_DOWNLOAD_SERVICE);
+        MappingFileCacheService.register(project, MAPPING_FILE_CACHE_SERVICE);
+        VerifiedHashIndexService.register(project, HASH_INDEX_SERVICE, buildEventsListenerRegistry);
         
         project.getExtensions().create("allRuntimes", RuntimesExtension.class);
         project.getExtensions().create(IdeManagementExtension.class, "ideManager", IdeManagementExtension.class, project);
@@ -0,0 +1,233 @@
+package net.neoforged.gradle.common.caching;
+
+import net.neoforged.gradle.util.FileUtils;
+import net.neoforged.gradle.util.HashFunction;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.gradle.api.Project;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Build-wide service which fetches objects into {@link ContentAddressedStore content addressed stores}.
+ * <p>
+ * All downloads share a single pooled HTTP client, so connections to the asset servers are kept alive and reused
+ * between objects, and run on a bounded thread pool instead of one worker action per object. The pool is shared
+ * with the other downloads of the build, like those of the minecraft artifact cache, and shut down with the service.
+ */
+public abstract class AssetDownloadService implements BuildService<AssetDownloadService.Parameters>, AutoCloseable {
+
+    public static final String MAX_CONCURRENT_DOWNLOADS_PROPERTY = "neogradle.assets.maxConcurrentDownloads";
+    private static final int DEFAULT_MAX_CONCURRENT_DOWNLOADS = 16;
+    private static final int MAX_ATTEMPTS = 10;
+    private static final int ATTEMPT_DELAY = 100;
+    private static final int TIMEOUT = 30_000;
+
+    private final Map<Path, ContentAddressedStore> stores = new ConcurrentHashMap<>();
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient client;
+    private final ExecutorService executor;
+
+    public static Provider<AssetDownloadService> register(Project project, String name) {
+        return project.getGradle().getSharedServices().registerIfAbsent(
+                name,
+                AssetDownloadService.class,
+                spec -> spec.getParameters().getMaxConcurrentDownloads().set(
+                        project.getProviders().gradleProperty(MAX_CONCURRENT_DOWNLOADS_PROPERTY)
+                                .map(Integer::parseUnsignedInt)
+                                .orElse(DEFAULT_MAX_CONCURRENT_DOWNLOADS)
+                )
+        );
+    }
+
+    public AssetDownloadService() {
+        final int concurrency = Math.max(1, getParameters().getMaxConcurrentDownloads().get());
+
+        this.connectionManager = new PoolingHttpClientConnectionManager();
+        this.connectionManager.setMaxTotal(concurrency);
+        this.connectionManager.setDefaultMaxPerRoute(concurrency);
+
+        this.client = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout(TIMEOUT)
+                        .setSocketTimeout(TIMEOUT)
+                        .build())
+                .useSystemProperties()
+                .build();
+
+        this.executor = Executors.newFixedThreadPool(concurrency, new DownloadThreadFactory());
+    }
+
+    /**
+     * @return The bounded executor the downloads of this build run on.
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Gets the store located in the given directory.
+     *
+     * @param directory The root directory of the store
+     * @param index The index used to track verified objects
+     * @return The store
+     */
+    public ContentAddressedStore getStore(File directory, VerifiedHashIndex index) {
+        return stores.computeIfAbsent(directory.toPath().toAbsolutePath().normalize(), root -> ContentAddressedStore.open(root, index));
+    }
+
+    /**
+     * Ensures that the object with the given hash is present in the store, downloading it if needed.
+     * <p>
+     * The lock of the object is only held while checking for and moving in the object, the download itself runs into
+     * a temporary file without it, so that slow downloads do not block other objects sharing the same lock stripe.
+     *
+     * @param store The store to place the object in
+     * @param cache The cache service guarding the directory of the store
+     * @param hash The SHA-1 hash of the object
+     * @param url The url to download the object from
+     * @param isOffline Whether gradle is running in offline mode
+     * @return A future which completes with the path of the verified object
+     */
+    public CompletableFuture<Path> fetch(ContentAddressedStore store, CentralCacheService cache, String hash, String url, boolean isOffline) {
+        return CompletableFuture.supplyAsync(() -> {
+            final Path target = store.getObjectPath(hash);
+            try {
+                if (cache.withLock(target, () -> store.verify(hash))) {
+                    cache.recordHit(target);
+                    return target;
+                }
+
+                if (isOffline) {
+                    throw new IllegalStateException("Cannot download asset " + url + " as Gradle is running in offline mode and the file does not exist");
+                }
+
+                final long start = System.nanoTime();
+                final Path temporary = download(hash, url, target);
+                try {
+                    cache.withLock(target, () -> {
+                        //Another build might have stored the object while this one was downloading it.
+                        if (!store.verify(hash)) {
+                            FileUtils.atomicMove(temporary, target);
+                            store.markKnownGood(hash);
+                        }
+                        return null;
+                    });
+                } finally {
+                    Files.deleteIfExists(temporary);
+                }
+                cache.recordMiss(target, Files.size(target), System.nanoTime() - start);
+                return target;
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to download asset: " + url, e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Downloads the object into a new temporary file next to the target, and checks its hash.
+     *
+     * @return The temporary file, which the caller has to move or delete
+     */
+    private Path download(String hash, String url, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+
+        // Try downloading multiple times with a small delay in case of blocked connections
+        for (int attempt = 0; ; ++attempt) {
+            final Path temporary = FileUtils.temporaryPath(target.getParent(), hash);
+            try {
+                final String actual = downloadTo(url, temporary);
+                if (!actual.equalsIgnoreCase(hash)) {
+                    throw new IOException(String.format("Downloaded asset %s does not match the expected hash. Expected: %s Actual: %s", url, hash, actual));
+                }
+
+                return temporary;
+            } catch (IOException e) {
+                Files.deleteIfExists(temporary);
+                if (attempt == MAX_ATTEMPTS - 1) {
+                    throw e;
+                }
+
+                try {
+                    Thread.sleep(ATTEMPT_DELAY);
+                } catch (InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while downloading: " + url, interruptedException);
+                }
+            }
+        }
+    }
+
+    private String downloadTo(String url, Path temporary) throws IOException {
+        final HttpGet request = new HttpGet(url);
+        try (CloseableHttpResponse response = client.execute(request)) {
+            final HttpEntity entity = response.getEntity();
+            if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
+                //Consume the body so the connection can be returned to the pool
+                EntityUtils.consumeQuietly(entity);
+                throw new IOException("Failed to download " + url + ", HTTP-Status: " + response.getStatusLine().getStatusCode());
+            }
+
+            final MessageDigest digest = HashFunction.SHA1.get();
+            try (InputStream stream = new DigestInputStream(entity.getContent(), digest);
+                 OutputStream output = Files.newOutputStream(temporary)) {
+                final byte[] buffer = new byte[8192];
+                int read;
+                while ((read = stream.read(buffer)) != -1) {
+                    output.write(buffer, 0, read);
+                }
+            }
+
+            return HashFunction.toHex(digest.digest());
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        executor.shutdownNow();
+        client.close();
+        connectionManager.close();
+    }
+
+    public interface Parameters extends BuildServiceParameters {
+        Property<Integer> getMaxConcurrentDownloads();
+    }
+
+    private static final class DownloadThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            final Thread thread = new Thread(runnable, "NeoGradle Asset Download " + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
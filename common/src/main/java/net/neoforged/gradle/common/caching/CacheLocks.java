@@ -0,0 +1,132 @@
+package net.neoforged.gradle.common.caching;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The lock stripes of a cache directory, each of which is both an in-process lock and a file lock in the locks
+ * directory of the cache.
+ * <p>
+ * File locks are held per JVM and are not reentrant, so every stripe holds its file lock together with a hold count:
+ * nested acquisitions of a stripe by the thread which already holds it only count up, and the file lock is released
+ * when the outermost acquisition ends. Copies of this class loaded by other class loaders of the same JVM do not share
+ * the in-process locks, their overlapping file locks are waited for instead.
+ */
+final class CacheLocks {
+
+    private static final int OVERLAP_RETRY_DELAY = 10;
+
+    //File locks are held per JVM, so every service instance for the same directory has to share the in-process locks.
+    private static final Map<Path, CacheLocks> LOCKS = new ConcurrentHashMap<>();
+
+    private final Path directory;
+    private final Stripe[] stripes;
+
+    private CacheLocks(Path directory, int stripes) {
+        this.directory = directory;
+        this.stripes = new Stripe[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Gets the lock stripes stored in the given directory.
+     *
+     * @param directory The directory which holds the lock files
+     * @param stripes The amount of stripes, the same for all callers of the same directory
+     * @return The lock stripes
+     */
+    static CacheLocks in(Path directory, int stripes) {
+        return LOCKS.computeIfAbsent(directory.toAbsolutePath().normalize(), path -> new CacheLocks(path, stripes));
+    }
+
+    /**
+     * Runs the given action while holding the given stripe, both in this process and across processes.
+     *
+     * @param index The index of the stripe
+     * @param lockFile The name of the lock file of the stripe
+     * @param action The action to run
+     * @return The result of the action
+     * @throws IOException If the lock could not be acquired, or the action failed
+     */
+    <T> T withLock(int index, String lockFile, CentralCacheService.CacheAction<T> action) throws IOException {
+        final Stripe stripe = stripes[index];
+        stripe.lock.lock();
+        try {
+            stripe.acquire(directory.resolve(lockFile));
+            try {
+                return action.run();
+            } finally {
+                stripe.release();
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * A single stripe. The channel, file lock and hold count are only accessed by the thread holding the in-process lock.
+     */
+    private static final class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private FileChannel channel;
+        private FileLock fileLock;
+        private int holds = 0;
+
+        private void acquire(Path lockFile) throws IOException {
+            if (holds++ > 0)
+                return;
+
+            try {
+                Files.createDirectories(lockFile.getParent());
+                channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                fileLock = lockFile(channel, lockFile);
+            } catch (IOException | RuntimeException e) {
+                release();
+                throw e;
+            }
+        }
+
+        private void release() throws IOException {
+            if (--holds > 0)
+                return;
+
+            try {
+                if (fileLock != null) {
+                    fileLock.release();
+                }
+            } finally {
+                fileLock = null;
+                if (channel != null) {
+                    channel.close();
+                    channel = null;
+                }
+            }
+        }
+
+        private static FileLock lockFile(FileChannel channel, Path lockFile) throws IOException {
+            while (true) {
+                try {
+                    return channel.lock();
+                } catch (OverlappingFileLockException e) {
+                    //Held by another class loader of this JVM, which does not share the in-process lock.
+                    try {
+                        Thread.sleep(OVERLAP_RETRY_DELAY);
+                    } catch (InterruptedException interruptedException) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while waiting for the lock: " + lockFile, interruptedException);
+                    }
+                }
+            }
+        }
+    }
+}
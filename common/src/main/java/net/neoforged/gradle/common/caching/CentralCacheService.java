@@ -1,29 +1,347 @@
 package net.neoforged.gradle.common.caching;
 
+import net.neoforged.gradle.util.FileUtils;
 import org.gradle.api.Project;
 import org.gradle.api.file.Directory;
-import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.Property;
 import org.gradle.api.provider.Provider;
 import org.gradle.api.services.BuildService;
 import org.gradle.api.services.BuildServiceParameters;
-import org.gradle.api.tasks.Internal;
-import org.gradle.api.tasks.Nested;
-import org.gradle.api.tasks.OutputDirectory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * This is a cache service, which holds no directory information, yet.
- * I tried different ways of adding a directory property, but it always failed during isolation of the params.
- * For now please make sure that consuming tasks have a directory property, which is set to their cache directory.
+ * A cache service which guards a shared cache directory, like the assets or libraries cache.
+ * <p>
+ * Access to the files in the cache is synchronized per file: files are mapped onto a fixed set of lock stripes, each
+ * of which is both an in-process lock and a file lock in the cache directory, so that builds in different daemons
+ * which share the cache do not download or write the same file at the same time.
+ * <p>
+ * The service keeps track of when the files it fetched were last used, and how large they are, in an access index.
+ * When the build finishes and those files have grown beyond the maximum size, the least recently used ones are removed.
+ * Files which were not fetched through the service are never removed, and neither are files which are still
+ * referenced by an output outside the cache, like the library list an IDE project or run configuration is built
+ * from. It also reports the hits, misses, amount of bytes fetched and the time spent fetching them.
  */
-public abstract class CentralCacheService implements BuildService<BuildServiceParameters.None> {
-    
+public abstract class CentralCacheService implements BuildService<CentralCacheService.Parameters>, AutoCloseable {
+
+    public static final String MAX_SIZE_PROPERTY = "neogradle.cache.maxSizeMb";
+    private static final long DEFAULT_MAX_SIZE_MB = 10 * 1024;
+    private static final int STRIPES = 64;
+    private static final String LOCKS_DIRECTORY = ".locks";
+    private static final String ACCESS_INDEX = ".access.index";
+    private static final String ACCESS_INDEX_HEADER = "cache-access-index-v2";
+    private static final String REFERENCES_INDEX = ".references.index";
+    private static final String GLOBAL_LOCK = "global.lock";
+
+    private static final Logger LOGGER = Logging.getLogger(CentralCacheService.class);
+
+    private final Path root;
+    private final CacheLocks locks;
+    private final Map<String, Long> accessed = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> references = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong bytesFetched = new AtomicLong();
+    private final AtomicLong nanosFetching = new AtomicLong();
+
     public static void register(Project project, String name, Provider<Directory> cacheDirectory) {
         project.getGradle().getSharedServices().registerIfAbsent(
                 name,
                 CentralCacheService.class,
                 spec -> {
-                    spec.getMaxParallelUsages().set(1);
+                    //The directory is passed as a path, directory properties fail during isolation of the parameters.
+                    spec.getParameters().getCacheDirectory().set(cacheDirectory.map(directory -> directory.getAsFile().getAbsolutePath()));
+                    spec.getParameters().getMaxSizeMb().set(
+                            project.getProviders().gradleProperty(MAX_SIZE_PROPERTY)
+                                    .map(Long::parseLong)
+                                    .orElse(DEFAULT_MAX_SIZE_MB)
+                    );
                 }
         );
     }
+
+    public CentralCacheService() {
+        this.root = Paths.get(getParameters().getCacheDirectory().get()).toAbsolutePath().normalize();
+        //One lock per stripe, and a last one for the cache as a whole.
+        this.locks = CacheLocks.in(root.resolve(LOCKS_DIRECTORY), STRIPES + 1);
+    }
+
+    /**
+     * @return The directory of the cache.
+     */
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * Runs the given action while holding the lock for the given file, both in this process and across processes.
+     * The lock is reentrant, also for other files which share the lock stripe of the given file.
+     *
+     * @param file The file in the cache which is accessed
+     * @param action The action to run
+     * @return The result of the action
+     * @throws IOException If the lock could not be acquired, or the action failed
+     */
+    public <T> T withLock(Path file, CacheAction<T> action) throws IOException {
+        final String key = keyOf(file);
+        final int stripe = Math.floorMod(key.hashCode(), STRIPES);
+        return locks.withLock(stripe, "stripe-" + stripe + ".lock", action);
+    }
+
+    /**
+     * Records that the given file was found in the cache.
+     *
+     * @param file The file
+     */
+    public void recordHit(Path file) {
+        hits.incrementAndGet();
+        accessed.put(keyOf(file), System.currentTimeMillis());
+    }
+
+    /**
+     * Records that the given file was not found in the cache, and had to be fetched.
+     *
+     * @param file The file
+     * @param bytes The size of the fetched file
+     * @param nanos The time spent fetching the file
+     */
+    public void recordMiss(Path file, long bytes, long nanos) {
+        misses.incrementAndGet();
+        bytesFetched.addAndGet(bytes);
+        nanosFetching.addAndGet(nanos);
+        accessed.put(keyOf(file), System.currentTimeMillis());
+    }
+
+    /**
+     * Records that the given output, which lives outside the cache, references the given files in the cache.
+     * The files are not removed from the cache for as long as the output exists, or until the output records a new
+     * set of references.
+     *
+     * @param output The output which references the files
+     * @param files The files in the cache
+     */
+    public void recordReferences(Path output, Collection<Path> files) {
+        final Set<String> keys = new HashSet<>();
+        for (Path file : files) {
+            keys.add(keyOf(file));
+        }
+        references.put(output.toAbsolutePath().normalize().toString(), keys);
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getBytesFetched() {
+        return bytesFetched.get();
+    }
+
+    public long getNanosFetching() {
+        return nanosFetching.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (hits.get() > 0 || misses.get() > 0) {
+            LOGGER.info("Cache {}: {} hits, {} misses, {} KiB fetched in {} ms",
+                    root, hits.get(), misses.get(), bytesFetched.get() / 1024, TimeUnit.NANOSECONDS.toMillis(nanosFetching.get()));
+        }
+
+        if ((accessed.isEmpty() && references.isEmpty()) || !Files.isDirectory(root))
+            return;
+
+        locks.withLock(STRIPES, GLOBAL_LOCK, () -> {
+            final Map<String, CachedFile> files = readAccessIndex();
+            for (Map.Entry<String, Long> entry : accessed.entrySet()) {
+                //Only the files used during this build are looked at, the size of all others is known from the index.
+                final Path path = root.resolve(entry.getKey());
+                if (Files.isRegularFile(path)) {
+                    files.put(entry.getKey(), new CachedFile(path, entry.getKey(), Files.size(path), entry.getValue()));
+                }
+            }
+
+            final Map<String, Set<String>> allReferences = readReferencesIndex();
+            allReferences.putAll(references);
+
+            final long maxSize = getParameters().getMaxSizeMb().get() * 1024 * 1024;
+            if (maxSize > 0) {
+                evict(files, allReferences, maxSize);
+            }
+
+            writeAccessIndex(files);
+            writeReferencesIndex(allReferences);
+            return null;
+        });
+    }
+
+    /**
+     * Removes the least recently used files which were not used during this build, and are not referenced by an
+     * existing output, until the files of the access index fit in the given size.
+     */
+    private void evict(Map<String, CachedFile> files, Map<String, Set<String>> allReferences, long maxSize) throws IOException {
+        long totalSize = 0;
+        for (CachedFile file : files.values()) {
+            totalSize += file.size;
+        }
+
+        if (totalSize <= maxSize)
+            return;
+
+        //Outputs which no longer exist, for example because the project was cleaned, do not hold on to their files.
+        allReferences.keySet().removeIf(output -> !Files.exists(Paths.get(output)));
+        final Set<String> referenced = new HashSet<>();
+        for (Set<String> keys : allReferences.values()) {
+            referenced.addAll(keys);
+        }
+
+        final List<CachedFile> candidates = new ArrayList<>(files.values());
+        candidates.sort(Comparator.comparingLong(file -> file.lastAccess));
+        for (CachedFile file : candidates) {
+            if (totalSize <= maxSize)
+                break;
+            if (accessed.containsKey(file.key) || referenced.contains(file.key))
+                continue;
+
+            //A file which was removed by someone else no longer counts towards the size either.
+            withLock(file.path, () -> Files.deleteIfExists(file.path));
+            totalSize -= file.size;
+            files.remove(file.key);
+        }
+
+        LOGGER.info("Cache {} evicted least recently used files, {} KiB remaining", root, totalSize / 1024);
+    }
+
+    private Map<String, CachedFile> readAccessIndex() {
+        final Map<String, CachedFile> files = new HashMap<>();
+        final Path index = root.resolve(ACCESS_INDEX);
+        if (!Files.isRegularFile(index))
+            return files;
+
+        try (BufferedReader reader = Files.newBufferedReader(index, StandardCharsets.UTF_8)) {
+            //An index of an older format does not record sizes, its files are no longer tracked until they are used again.
+            if (!ACCESS_INDEX_HEADER.equals(reader.readLine()))
+                return files;
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String[] parts = line.split("\t", 3);
+                if (parts.length != 3)
+                    continue;
+
+                try {
+                    final CachedFile file = new CachedFile(root.resolve(parts[2]), parts[2], Long.parseLong(parts[1]), Long.parseLong(parts[0]));
+                    files.merge(file.key, file, (a, b) -> a.lastAccess >= b.lastAccess ? a : b);
+                } catch (NumberFormatException ignored) {
+                    //Corrupt line, the file is no longer tracked until it is used again.
+                }
+            }
+        } catch (IOException e) {
+            files.clear();
+        }
+        return files;
+    }
+
+    private void writeAccessIndex(Map<String, CachedFile> files) throws IOException {
+        final Path temporary = FileUtils.temporaryPath(root, ACCESS_INDEX);
+        try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            writer.write(ACCESS_INDEX_HEADER);
+            writer.newLine();
+            for (CachedFile file : files.values()) {
+                writer.write(file.lastAccess + "\t" + file.size + "\t" + file.key);
+                writer.newLine();
+            }
+        }
+        FileUtils.atomicMove(temporary, root.resolve(ACCESS_INDEX));
+    }
+
+    private Map<String, Set<String>> readReferencesIndex() {
+        final Map<String, Set<String>> allReferences = new HashMap<>();
+        final Path index = root.resolve(REFERENCES_INDEX);
+        if (!Files.isRegularFile(index))
+            return allReferences;
+
+        try (BufferedReader reader = Files.newBufferedReader(index, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String[] parts = line.split("\t", 2);
+                if (parts.length == 2) {
+                    allReferences.computeIfAbsent(parts[0], output -> new HashSet<>()).add(parts[1]);
+                }
+            }
+        } catch (IOException e) {
+            allReferences.clear();
+        }
+        return allReferences;
+    }
+
+    private void writeReferencesIndex(Map<String, Set<String>> allReferences) throws IOException {
+        final Path temporary = FileUtils.temporaryPath(root, REFERENCES_INDEX);
+        try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Set<String>> entry : allReferences.entrySet()) {
+                for (String key : entry.getValue()) {
+                    writer.write(entry.getKey() + "\t" + key);
+                    writer.newLine();
+                }
+            }
+        }
+        FileUtils.atomicMove(temporary, root.resolve(REFERENCES_INDEX));
+    }
+
+    private String keyOf(Path file) {
+        final Path normalized = file.toAbsolutePath().normalize();
+        final Path key = normalized.startsWith(root) ? root.relativize(normalized) : normalized;
+        return key.toString().replace('\\', '/');
+    }
+
+    /**
+     * An action which is run while holding the lock of a file in the cache.
+     */
+    @FunctionalInterface
+    public interface CacheAction<T> {
+        T run() throws IOException;
+    }
+
+    public interface Parameters extends BuildServiceParameters {
+        Property<String> getCacheDirectory();
+
+        Property<Long> getMaxSizeMb();
+    }
+
+    private static final class CachedFile {
+        private final Path path;
+        private final String key;
+        private final long size;
+        private final long lastAccess;
+
+        private CachedFile(Path path, String key, long size, long lastAccess) {
+            this.path = path;
+            this.key = key;
+            this.size = size;
+            this.lastAccess = lastAccess;
+        }
+    }
 }
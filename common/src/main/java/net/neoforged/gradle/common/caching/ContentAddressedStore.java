@@ -0,0 +1,85 @@
+package net.neoforged.gradle.common.caching;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A store of files, addressed by their SHA-1 hash, using the same layout as the vanilla launcher:
+ * {@code objects/<first two characters of hash>/<hash>}.
+ * <p>
+ * Objects which have already been verified are tracked in a {@link VerifiedHashIndex}, as long as their size and last
+ * modification time do not change, an object is considered valid without being re-hashed.
+ */
+public final class ContentAddressedStore {
+
+    private static final String OBJECTS_DIRECTORY = "objects";
+
+    private final Path root;
+    private final Path objects;
+    private final VerifiedHashIndex index;
+
+    private ContentAddressedStore(Path root, VerifiedHashIndex index) {
+        this.root = root;
+        this.objects = root.resolve(OBJECTS_DIRECTORY);
+        this.index = index;
+    }
+
+    /**
+     * Opens the store located in the given directory.
+     *
+     * @param root The root directory of the store
+     * @param index The index used to track verified objects
+     * @return The store
+     */
+    public static ContentAddressedStore open(Path root, VerifiedHashIndex index) {
+        return new ContentAddressedStore(root, index);
+    }
+
+    /**
+     * @return The root directory of the store.
+     */
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * Gets the location of the object with the given hash, regardless of whether it exists.
+     *
+     * @param hash The SHA-1 hash of the object
+     * @return The path of the object
+     */
+    public Path getObjectPath(String hash) {
+        return objects.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    /**
+     * Checks whether the object with the given hash exists and is valid.
+     * Objects which are not yet known to be good are hashed once, and recorded in the index.
+     *
+     * @param hash The SHA-1 hash of the object
+     * @return True when the object exists and its content matches the hash
+     */
+    public boolean verify(String hash) {
+        final Path path = getObjectPath(hash);
+        if (!Files.isRegularFile(path))
+            return false;
+
+        try {
+            return index.hash(path).equalsIgnoreCase(hash);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Marks the object with the given hash as valid.
+     * Should only be called after the content of the object has been verified.
+     *
+     * @param hash The SHA-1 hash of the object
+     * @throws IOException If the attributes of the object could not be read
+     */
+    public void markKnownGood(String hash) throws IOException {
+        index.record(getObjectPath(hash), hash);
+    }
+}
@@ -0,0 +1,83 @@
+package net.neoforged.gradle.common.caching;
+
+import net.minecraftforge.srgutils.IMappingFile;
+import net.neoforged.gradle.common.util.CacheableIMappingFile;
+import net.neoforged.gradle.common.util.FileCacheUtils;
+import org.gradle.api.Project;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Build service which loads mapping files, parsing every distinct mapping file at most once per daemon.
+ * <p>
+ * Parsed mapping files are held by the {@link ParsedFileCache} of the cache directory, so they are shared between all
+ * projects and builds running in the same daemon, and with deserialized {@link CacheableIMappingFile}s of the same
+ * content. Consumers must treat the returned mapping files as immutable.
+ */
+public abstract class MappingFileCacheService implements BuildService<MappingFileCacheService.Parameters>, AutoCloseable {
+
+    private static final Logger LOGGER = Logging.getLogger(MappingFileCacheService.class);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public static Provider<MappingFileCacheService> register(Project project, String name) {
+        return project.getGradle().getSharedServices().registerIfAbsent(
+                name,
+                MappingFileCacheService.class,
+                //The directory is passed as a path, directory properties fail during isolation of the parameters.
+                spec -> spec.getParameters().getCacheDirectory().set(FileCacheUtils.getCacheDirectory(project).map(directory -> directory.getAsFile().getAbsolutePath()))
+        );
+    }
+
+    /**
+     * Loads the given mapping file, reusing an already parsed mapping file with the same content if possible.
+     *
+     * @param file The mapping file
+     * @return The parsed mapping file
+     * @throws IOException If the mapping file could not be read
+     */
+    public IMappingFile load(File file) throws IOException {
+        final boolean[] parsed = new boolean[1];
+        final IMappingFile mappingFile = ParsedFileCache.in(new File(getParameters().getCacheDirectory().get())).get(file, CacheableIMappingFile.MODEL_NAME, () -> {
+            parsed[0] = true;
+            return IMappingFile.load(file);
+        });
+
+        (parsed[0] ? misses : hits).incrementAndGet();
+        return mappingFile;
+    }
+
+    /**
+     * @return The amount of mapping files which were served from the cache during this build.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return The amount of mapping files which had to be parsed during this build.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public void close() {
+        if (hits.get() > 0 || misses.get() > 0) {
+            LOGGER.info("Mapping file cache: {} hits, {} misses", hits.get(), misses.get());
+        }
+    }
+
+    public interface Parameters extends BuildServiceParameters {
+        Property<String> getCacheDirectory();
+    }
+}
@@ -0,0 +1,227 @@
+package net.neoforged.gradle.common.caching;
+
+import net.neoforged.gradle.util.FileUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The cache of parsed models of files, like the launcher manifest, a version json or a mapping file.
+ * <p>
+ * Every model is parsed at most once per JVM for a given content, and is held through a soft reference keyed by the
+ * SHA-1 hash of the content and the name of its format, so it is shared between all projects and builds running in the
+ * same daemon until the memory is needed elsewhere. The hashes of files are looked up in the {@link VerifiedHashIndex}
+ * of the cache directory.
+ * <p>
+ * Models of a {@link Format} are additionally stored in a compact binary file in the {@value #DIRECTORY} directory of
+ * the cache directory, so that later builds can read the model without parsing the file again. The stored model is
+ * named after the hash, so it is only invalidated when the content of the file changes, and the file itself may be in a
+ * read-only location.
+ */
+public final class ParsedFileCache {
+
+    /**
+     * The directory in the cache directory which holds the stored models.
+     */
+    public static final String DIRECTORY = "parsed";
+
+    private static final String HEADER = "neogradle-parsed-file-v2";
+
+    private static final Map<Path, ParsedFileCache> CACHES = new ConcurrentHashMap<>();
+    private static final Map<String, SoftReference<Object>> MODELS = new ConcurrentHashMap<>();
+
+    private final Path directory;
+    private final VerifiedHashIndex hashes;
+
+    ParsedFileCache(File cacheDirectory) {
+        this.directory = cacheDirectory.toPath().resolve(DIRECTORY);
+        this.hashes = VerifiedHashIndex.in(cacheDirectory);
+    }
+
+    /**
+     * Gets the cache which stores its models in the given directory.
+     * All callers in the same JVM share a single instance per directory.
+     *
+     * @param directory The cache directory of the plugin
+     * @return The cache
+     */
+    public static ParsedFileCache in(File directory) {
+        return CACHES.computeIfAbsent(directory.toPath().toAbsolutePath().normalize(), path -> new ParsedFileCache(path.toFile()));
+    }
+
+    /**
+     * Gets the model of the given file.
+     * Uses the model parsed earlier in this JVM, or the stored model, if the file did not change since. Otherwise the
+     * file is parsed and the model is stored.
+     *
+     * @param file The file to get the model of
+     * @param format The format of the model
+     * @return The model of the file
+     * @param <T> The type of the model
+     * @throws IOException If the file could not be read or parsed
+     */
+    public <T> T get(File file, Format<T> format) throws IOException {
+        final String hash = hashes.hash(file);
+        return get(hash, format.getName(), () -> {
+            final Path stored = directory.resolve(hash + "." + format.getName() + ".bin");
+            T model = read(stored, format, hash);
+            if (model == null) {
+                model = format.parse(file);
+                write(stored, format, hash, model);
+            }
+            return model;
+        });
+    }
+
+    /**
+     * Gets the model of the given file, without storing it.
+     * Uses the model parsed earlier in this JVM, if the file did not change since.
+     *
+     * @param file The file to get the model of
+     * @param name The name of the model
+     * @param loader The loader which parses the file
+     * @return The model of the file
+     * @param <T> The type of the model
+     * @throws IOException If the file could not be read or parsed
+     */
+    public <T> T get(File file, String name, Loader<T> loader) throws IOException {
+        return get(hashes.hash(file), name, loader);
+    }
+
+    /**
+     * Gets the model of the content with the given hash.
+     * Uses the model parsed earlier in this JVM, otherwise the model is loaded and remembered.
+     *
+     * @param hash The SHA-1 hash of the content
+     * @param name The name of the model
+     * @param loader The loader which parses the content
+     * @return The model of the content
+     * @param <T> The type of the model
+     * @throws IOException If the content could not be parsed
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T get(String hash, String name, Loader<T> loader) throws IOException {
+        final SoftReference<Object> reference = MODELS.get(hash + "\t" + name);
+        final Object cached = reference == null ? null : reference.get();
+        if (cached != null)
+            return (T) cached;
+
+        final T model = loader.load();
+        put(hash, name, model);
+        return model;
+    }
+
+    /**
+     * Remembers the model of the content with the given hash, so later lookups do not need to parse the content.
+     *
+     * @param hash The SHA-1 hash of the content
+     * @param name The name of the model
+     * @param model The model of the content, which has to be immutable
+     */
+    public static void put(String hash, String name, Object model) {
+        MODELS.values().removeIf(reference -> reference.get() == null);
+        MODELS.put(hash + "\t" + name, new SoftReference<>(model));
+    }
+
+    /**
+     * Forgets all models parsed in this JVM, as if a new daemon was started.
+     */
+    static void clear() {
+        MODELS.clear();
+    }
+
+    private static <T> T read(Path stored, Format<T> format, String hash) {
+        if (!Files.isRegularFile(stored))
+            return null;
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(stored)))) {
+            if (!HEADER.equals(input.readUTF()) || !format.getName().equals(input.readUTF()) || !hash.equals(input.readUTF()))
+                return null;
+
+            return format.read(input);
+        } catch (IOException | RuntimeException e) {
+            //A stale or corrupt model is simply replaced.
+            return null;
+        }
+    }
+
+    private static <T> void write(Path stored, Format<T> format, String hash, T model) {
+        try {
+            Files.createDirectories(stored.getParent());
+            final Path temporary = FileUtils.temporaryPath(stored.getParent(), stored.getFileName().toString());
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                output.writeUTF(HEADER);
+                output.writeUTF(format.getName());
+                output.writeUTF(hash);
+                format.write(output, model);
+            }
+            FileUtils.atomicMove(temporary, stored);
+        } catch (IOException ignored) {
+            //Failing to store the model only costs parsing the file again in the next build.
+        }
+    }
+
+    /**
+     * Parses the model of a file or content.
+     *
+     * @param <T> The type of the model
+     */
+    @FunctionalInterface
+    public interface Loader<T> {
+
+        /**
+         * @return The parsed model
+         * @throws IOException If the model could not be parsed
+         */
+        T load() throws IOException;
+    }
+
+    /**
+     * Defines how the model of a file is parsed, and how it is stored in the binary file.
+     *
+     * @param <T> The type of the model
+     */
+    public interface Format<T> {
+
+        /**
+         * @return The name of the format, which has to change whenever the binary representation changes.
+         */
+        String getName();
+
+        /**
+         * Parses the model from the file.
+         *
+         * @param file The file to parse
+         * @return The model
+         * @throws IOException If the file could not be read or parsed
+         */
+        T parse(File file) throws IOException;
+
+        /**
+         * Reads the model from the stored binary file.
+         *
+         * @param input The input to read from
+         * @return The model
+         * @throws IOException If the model could not be read
+         */
+        T read(DataInputStream input) throws IOException;
+
+        /**
+         * Writes the model to the stored binary file.
+         *
+         * @param output The output to write to
+         * @param model The model
+         * @throws IOException If the model could not be written
+         */
+        void write(DataOutputStream output, T model) throws IOException;
+    }
+}
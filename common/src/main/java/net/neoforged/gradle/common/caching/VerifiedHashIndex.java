@@ -0,0 +1,360 @@
+package net.neoforged.gradle.common.caching;
+
+import net.neoforged.gradle.util.FileUtils;
+import net.neoforged.gradle.util.HashFunction;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A persistent index of files whose SHA-1 hash has already been computed.
+ * <p>
+ * Every entry is keyed by the absolute path of the file and remembers the size, last modification time and, where the
+ * file system exposes one, the file key (inode) of the file at the moment it was hashed. As long as these attributes
+ * still match, the recorded hash is returned without reading the file again, turning verification on warm builds into
+ * a single stat call.
+ * <p>
+ * The index is stored as an append-only log next to the cache directories, so that concurrent builds can add to it
+ * without coordination. The log stays open for appending until the build finishes, see {@link VerifiedHashIndexService}.
+ * It is compacted when it is loaded and has grown too large. Appending builds hold a shared lock on a sibling lock
+ * file and compaction an exclusive one, and appenders reopen the log once it was replaced by a compaction.
+ */
+public final class VerifiedHashIndex {
+
+    public static final String INDEX_FILE = "verified-hashes.index";
+    private static final String LOCK_FILE = INDEX_FILE + ".lock";
+    private static final String NO_FILE_KEY = "-";
+    private static final int COMPACTION_THRESHOLD = 1024;
+
+    private static final Map<Path, VerifiedHashIndex> INDICES = new ConcurrentHashMap<>();
+
+    private final Path indexFile;
+    private final Path lockFile;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private FileChannel lock;
+    private FileChannel log;
+    private Object logFileKey;
+
+    private VerifiedHashIndex(Path indexFile) {
+        this.indexFile = indexFile;
+        this.lockFile = indexFile.resolveSibling(LOCK_FILE);
+    }
+
+    /**
+     * Gets the index stored in the given directory.
+     * All callers in the same JVM share a single instance per directory.
+     *
+     * @param directory The directory which holds the index
+     * @return The index
+     */
+    public static VerifiedHashIndex in(File directory) {
+        return INDICES.computeIfAbsent(directory.toPath().toAbsolutePath().normalize().resolve(INDEX_FILE), path -> {
+            final VerifiedHashIndex index = new VerifiedHashIndex(path);
+            index.load();
+            return index;
+        });
+    }
+
+    /**
+     * Closes the logs of all indices in this JVM. The indices stay usable, their logs are reopened when the next
+     * entry is recorded.
+     */
+    public static void closeAll() {
+        for (VerifiedHashIndex index : INDICES.values()) {
+            index.closeLog();
+        }
+    }
+
+    /**
+     * Gets the SHA-1 hash of the given file.
+     * Uses the recorded hash if the file did not change since it was last hashed, otherwise hashes the file and
+     * records the result.
+     *
+     * @param file The file to hash
+     * @return The hash of the file
+     * @throws IOException If the file could not be read
+     */
+    public String hash(File file) throws IOException {
+        return hash(file.toPath());
+    }
+
+    /**
+     * Gets the SHA-1 hash of the given file.
+     * Uses the recorded hash if the file did not change since it was last hashed, otherwise hashes the file and
+     * records the result.
+     *
+     * @param file The file to hash
+     * @return The hash of the file
+     * @throws IOException If the file could not be read
+     */
+    public String hash(Path file) throws IOException {
+        final String key = keyOf(file);
+        final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+
+        final Entry entry = entries.get(key);
+        if (entry != null && entry.matches(attributes)) {
+            return entry.hash;
+        }
+
+        final String hash = HashFunction.SHA1.hash(file);
+
+        //Only record the hash if the file did not change while we were reading it.
+        final BasicFileAttributes after = Files.readAttributes(file, BasicFileAttributes.class);
+        if (Entry.attributesEqual(attributes, after)) {
+            record(key, new Entry(hash, attributes));
+        }
+        return hash;
+    }
+
+    /**
+     * Checks whether the given file exists and has the expected SHA-1 hash.
+     *
+     * @param file The file to check
+     * @param expectedHash The expected hash, compared case-insensitively
+     * @return True if the file exists and matches
+     * @throws IOException If the file could not be read
+     */
+    public boolean matches(File file, String expectedHash) throws IOException {
+        return file.isFile() && hash(file).equalsIgnoreCase(expectedHash);
+    }
+
+    /**
+     * Records the hash of a file whose content was verified by other means, for example while it was downloaded.
+     *
+     * @param file The file
+     * @param hash The verified SHA-1 hash of the file
+     * @throws IOException If the attributes of the file could not be read
+     */
+    public void record(Path file, String hash) throws IOException {
+        record(keyOf(file), new Entry(hash.toLowerCase(Locale.ROOT), Files.readAttributes(file, BasicFileAttributes.class)));
+    }
+
+    /**
+     * Removes the given file from the index, for example because it is about to be replaced.
+     *
+     * @param file The file
+     */
+    public void invalidate(Path file) {
+        entries.remove(keyOf(file));
+    }
+
+    private void record(String key, Entry entry) {
+        final Entry previous = entries.put(key, entry);
+        if (entry.equals(previous))
+            return;
+
+        append(entry.serialize(key));
+    }
+
+    /**
+     * Appends a line to the log. The log is opened once per index and kept open, and every line is written in a single
+     * write, so that the lines of concurrent builds do not interleave. The write happens under a shared lock, so that
+     * no compaction replaces the log in the meantime.
+     */
+    private synchronized void append(String line) {
+        try {
+            if (lock == null) {
+                Files.createDirectories(indexFile.getParent());
+                lock = openLockFile();
+            }
+
+            try (FileLock ignored = lock.lock(0, Long.MAX_VALUE, true)) {
+                //A compaction in another build replaced the log, lines appended to the old one would be lost.
+                if (log != null && !isCurrentLog()) {
+                    log.close();
+                    log = null;
+                }
+                if (log == null) {
+                    log = FileChannel.open(indexFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                    logFileKey = Files.readAttributes(indexFile, BasicFileAttributes.class).fileKey();
+                }
+
+                final ByteBuffer buffer = ByteBuffer.wrap((line + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+                while (buffer.hasRemaining()) {
+                    log.write(buffer);
+                }
+            }
+        } catch (IOException | OverlappingFileLockException e) {
+            //Failing to persist the index only costs a re-hash in the next build, the log is reopened for the next line.
+            closeLog();
+        }
+    }
+
+    /**
+     * Checks whether the open log is still the index file. Where the file system exposes no file key, a replaced log
+     * is detected by its size, which at worst reopens the log needlessly.
+     */
+    private boolean isCurrentLog() throws IOException {
+        if (!Files.isRegularFile(indexFile))
+            return false;
+
+        final BasicFileAttributes attributes = Files.readAttributes(indexFile, BasicFileAttributes.class);
+        if (attributes.fileKey() != null)
+            return attributes.fileKey().equals(logFileKey);
+
+        return attributes.size() == log.size();
+    }
+
+    private synchronized void closeLog() {
+        log = close(log);
+        lock = close(lock);
+        logFileKey = null;
+    }
+
+    private static FileChannel close(FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                //Nothing is written through a channel which failed to close.
+            }
+        }
+        return null;
+    }
+
+    private FileChannel openLockFile() throws IOException {
+        return FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private void load() {
+        if (!Files.isRegularFile(indexFile))
+            return;
+
+        final int lines;
+        try {
+            lines = read();
+        } catch (IOException e) {
+            entries.clear();
+            return;
+        }
+
+        if (lines > entries.size() * 2 + COMPACTION_THRESHOLD) {
+            compact();
+        }
+    }
+
+    /**
+     * Reads the log into the entries.
+     *
+     * @return The amount of lines in the log
+     */
+    private int read() throws IOException {
+        int lines = 0;
+        try (BufferedReader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines++;
+                final String[] parts = line.split("\t", 5);
+                if (parts.length != 5)
+                    continue;
+
+                try {
+                    entries.put(parts[4], new Entry(parts[0], Long.parseLong(parts[1]), Long.parseLong(parts[2]), parts[3]));
+                } catch (NumberFormatException ignored) {
+                    //Corrupt line, the file will simply be re-hashed.
+                }
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Rewrites the log with one line per entry. Only happens while no other build appends to the log, otherwise the
+     * log is compacted by a later build.
+     */
+    private synchronized void compact() {
+        try (FileChannel channel = openLockFile();
+             FileLock exclusive = channel.tryLock()) {
+            if (exclusive == null)
+                return;
+
+            //Pick up the lines other builds appended since the log was loaded.
+            read();
+
+            final Path temporary = FileUtils.temporaryPath(indexFile.getParent(), INDEX_FILE);
+            try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                    writer.write(entry.getValue().serialize(entry.getKey()));
+                    writer.newLine();
+                }
+            }
+            FileUtils.atomicMove(temporary, indexFile);
+        } catch (IOException | OverlappingFileLockException ignored) {
+            //The uncompacted log is still valid.
+        }
+    }
+
+    private static String keyOf(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+
+    private static String fileKeyOf(BasicFileAttributes attributes) {
+        final Object fileKey = attributes.fileKey();
+        return fileKey == null ? NO_FILE_KEY : fileKey.toString();
+    }
+
+    private static final class Entry {
+        private final String hash;
+        private final long size;
+        private final long lastModified;
+        private final String fileKey;
+
+        private Entry(String hash, BasicFileAttributes attributes) {
+            this(hash, attributes.size(), attributes.lastModifiedTime().toMillis(), fileKeyOf(attributes));
+        }
+
+        private Entry(String hash, long size, long lastModified, String fileKey) {
+            this.hash = hash;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.fileKey = fileKey;
+        }
+
+        private boolean matches(BasicFileAttributes attributes) {
+            return size == attributes.size() &&
+                           lastModified == attributes.lastModifiedTime().toMillis() &&
+                           fileKey.equals(fileKeyOf(attributes));
+        }
+
+        private static boolean attributesEqual(BasicFileAttributes left, BasicFileAttributes right) {
+            return left.size() == right.size() &&
+                           left.lastModifiedTime().equals(right.lastModifiedTime()) &&
+                           fileKeyOf(left).equals(fileKeyOf(right));
+        }
+
+        private String serialize(String key) {
+            return hash + '\t' + size + '\t' + lastModified + '\t' + fileKey + '\t' + key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Entry)) return false;
+            final Entry entry = (Entry) o;
+            return size == entry.size && lastModified == entry.lastModified && hash.equals(entry.hash) && fileKey.equals(entry.fileKey);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = hash.hashCode();
+            result = 31 * result + Long.hashCode(size);
+            result = 31 * result + Long.hashCode(lastModified);
+            result = 31 * result + fileKey.hashCode();
+            return result;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package net.neoforged.gradle.common.caching;
+
+import org.gradle.api.Project;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+import org.gradle.build.event.BuildEventsListenerRegistry;
+import org.gradle.tooling.events.FinishEvent;
+import org.gradle.tooling.events.OperationCompletionListener;
+
+/**
+ * Build service which closes the logs of all {@link VerifiedHashIndex verified hash indices} when the build finishes.
+ * <p>
+ * The indices are shared by all builds of the daemon and keep their logs open while they are used, the service makes
+ * sure that the daemon does not hold on to the log files between builds. It is registered as a task completion
+ * listener, so that it is created, and closed, in every build.
+ */
+public abstract class VerifiedHashIndexService implements BuildService<BuildServiceParameters.None>, OperationCompletionListener, AutoCloseable {
+
+    public static void register(Project project, String name, BuildEventsListenerRegistry listeners) {
+        final Provider<VerifiedHashIndexService> service = project.getGradle().getSharedServices().registerIfAbsent(
+                name,
+                VerifiedHashIndexService.class,
+                spec -> {}
+        );
+        listeners.onTaskCompletion(service);
+    }
+
+    @Override
+    public void onFinish(FinishEvent event) {
+        //Only the end of the build is of interest.
+    }
+
+    @Override
+    public void close() {
+        VerifiedHashIndex.closeAll();
+    }
+}
@@ -1,24 +1,26 @@
 package net.neoforged.gradle.common.extensions;
 
 import com.google.common.collect.ImmutableMap;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
 import net.minecraftforge.gdi.ConfigurableDSLElement;
+import net.neoforged.gradle.common.CommonProjectPlugin;
+import net.neoforged.gradle.common.caching.AssetDownloadService;
+import net.neoforged.gradle.common.caching.VerifiedHashIndex;
 import net.neoforged.gradle.common.tasks.MinecraftLauncherFileCacheProvider;
 import net.neoforged.gradle.common.tasks.MinecraftVersionManifestFileCacheProvider;
 import net.neoforged.gradle.common.util.FileCacheUtils;
 import net.neoforged.gradle.common.util.FileDownloadingUtils;
+import net.neoforged.gradle.common.util.LauncherManifest;
 import net.neoforged.gradle.common.util.MinecraftArtifactType;
-import net.neoforged.gradle.common.util.SerializationUtils;
+import net.neoforged.gradle.common.util.VersionDownloads;
 import net.neoforged.gradle.dsl.common.extensions.MinecraftArtifactCache;
 import net.neoforged.gradle.dsl.common.tasks.WithOutput;
 import net.neoforged.gradle.dsl.common.util.CacheFileSelector;
 import net.neoforged.gradle.dsl.common.util.DistributionType;
 import net.neoforged.gradle.dsl.common.util.GameArtifact;
-import net.neoforged.gradle.util.HashFunction;
 import net.neoforged.gradle.util.UrlConstants;
 import org.gradle.api.Project;
 import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.provider.Provider;
 import org.gradle.api.tasks.TaskProvider;
 import org.jetbrains.annotations.NotNull;
 
@@ -29,12 +31,23 @@ import java.net.URL;
 import java.util.EnumMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
 
 public abstract class MinecraftArtifactCacheExtension implements ConfigurableDSLElement<MinecraftArtifactCache>, MinecraftArtifactCache {
 
     private final Project project;
-    private final Map<CacheFileSelector, File> cacheFiles;
+    /**
+     * Runs the downloads of independent artifacts in parallel, on the bounded executor of the download service.
+     * Every caller waits for the downloads it started before it returns, so no download outlives the call which
+     * requested it, or races with the tasks which provide the same files during the build.
+     */
+    private final Provider<AssetDownloadService> downloadService;
+    private final Map<CacheFileSelector, CompletableFuture<File>> cacheFiles;
+    private final Map<String, CompletableFuture<VersionDownloads>> versionJsons = new ConcurrentHashMap<>();
 
     private static final class TaskKey{
         private final Project project;
@@ -65,6 +78,7 @@ public abstract class MinecraftArtifactCacheExtension implements ConfigurableDSL
     @Inject
     public MinecraftArtifactCacheExtension(Project project) {
         this.project = project;
+        this.downloadService = AssetDownloadService.register(project, CommonProjectPlugin.ASSET_DOWNLOAD_SERVICE);
         this.cacheFiles = new ConcurrentHashMap<>();
 
         //TODO: Move this to gradle user home.
@@ -82,24 +96,34 @@ public abstract class MinecraftArtifactCacheExtension implements ConfigurableDSL
 
     @Override
     public final Map<CacheFileSelector, File> getCacheFiles() {
-        return ImmutableMap.copyOf(this.cacheFiles);
+        //Downloads which are still running on another thread are waited for, failed downloads are no longer tracked.
+        final ImmutableMap.Builder<CacheFileSelector, File> result = ImmutableMap.builder();
+        this.cacheFiles.forEach((selector, file) -> result.put(selector, await(file)));
+        return result.build();
     }
 
     @Override
     public final Map<GameArtifact, File> cacheGameVersion(String gameVersion, DistributionType side) {
-        gameVersion = resolveVersion(gameVersion);
+        //Start all downloads before waiting on any of them, so that they run in parallel.
+        final Map<GameArtifact, CompletableFuture<File>> downloads = startDownloads(resolveVersion(gameVersion), side);
+
+        //Wait for every download, even if one of them failed, so that none keeps running after this call.
+        CompletableFuture.allOf(downloads.values().toArray(new CompletableFuture[0])).exceptionally(e -> null).join();
 
         final Map<GameArtifact, File> result = new EnumMap<>(GameArtifact.class);
+        downloads.forEach((artifact, file) -> result.put(artifact, await(file)));
+        return result;
+    }
 
-        final String finalGameVersion = gameVersion;
+    private Map<GameArtifact, CompletableFuture<File>> startDownloads(final String gameVersion, final DistributionType side) {
+        final Map<GameArtifact, CompletableFuture<File>> result = new EnumMap<>(GameArtifact.class);
 
-        GameArtifact.LAUNCHER_MANIFEST.doWhenRequired(side, () -> result.put(GameArtifact.LAUNCHER_MANIFEST, this.cacheLauncherMetadata()));
-        GameArtifact.LAUNCHER_MANIFEST.doWhenRequired(side, () -> result.put(GameArtifact.LAUNCHER_MANIFEST, this.cacheLauncherMetadata()));
-        GameArtifact.VERSION_MANIFEST.doWhenRequired(side, () -> result.put(GameArtifact.VERSION_MANIFEST, this.cacheVersionManifest(finalGameVersion)));
-        GameArtifact.CLIENT_JAR.doWhenRequired(side, () -> result.put(GameArtifact.CLIENT_JAR, this.cacheVersionArtifact(finalGameVersion, DistributionType.CLIENT)));
-        GameArtifact.SERVER_JAR.doWhenRequired(side, () -> result.put(GameArtifact.SERVER_JAR, this.cacheVersionArtifact(finalGameVersion, DistributionType.SERVER)));
-        GameArtifact.CLIENT_MAPPINGS.doWhenRequired(side, () -> result.put(GameArtifact.CLIENT_MAPPINGS, this.cacheVersionMappings(finalGameVersion, DistributionType.CLIENT)));
-        GameArtifact.SERVER_MAPPINGS.doWhenRequired(side, () -> result.put(GameArtifact.SERVER_MAPPINGS, this.cacheVersionMappings(finalGameVersion, DistributionType.SERVER)));
+        GameArtifact.LAUNCHER_MANIFEST.doWhenRequired(side, () -> result.put(GameArtifact.LAUNCHER_MANIFEST, this.launcherMetadataDownload()));
+        GameArtifact.VERSION_MANIFEST.doWhenRequired(side, () -> result.put(GameArtifact.VERSION_MANIFEST, this.versionManifestDownload(gameVersion)));
+        GameArtifact.CLIENT_JAR.doWhenRequired(side, () -> result.put(GameArtifact.CLIENT_JAR, this.versionArtifactDownload(gameVersion, DistributionType.CLIENT)));
+        GameArtifact.SERVER_JAR.doWhenRequired(side, () -> result.put(GameArtifact.SERVER_JAR, this.versionArtifactDownload(gameVersion, DistributionType.SERVER)));
+        GameArtifact.CLIENT_MAPPINGS.doWhenRequired(side, () -> result.put(GameArtifact.CLIENT_MAPPINGS, this.versionMappingsDownload(gameVersion, DistributionType.CLIENT)));
+        GameArtifact.SERVER_MAPPINGS.doWhenRequired(side, () -> result.put(GameArtifact.SERVER_MAPPINGS, this.versionMappingsDownload(gameVersion, DistributionType.SERVER)));
 
         return result;
     }
@@ -132,34 +156,22 @@ public abstract class MinecraftArtifactCacheExtension implements ConfigurableDSL
 
     @Override
     public final File cacheLauncherMetadata() {
-        return this.cache(UrlConstants.MOJANG_MANIFEST, CacheFileSelector.launcherMetadata());
+        return await(this.launcherMetadataDownload());
     }
 
     @Override
     public final File cacheVersionManifest(String gameVersion) {
-        gameVersion = resolveVersion(gameVersion);
-
-        final CacheFileSelector cacheFileSelector = CacheFileSelector.forVersionJson(gameVersion);
-        final String finalGameVersion = gameVersion;
-        return this.cacheFiles.computeIfAbsent(cacheFileSelector, selector -> downloadVersionManifestToCache(project, getCacheDirectory().get().getAsFile(), finalGameVersion));
+        return await(this.versionManifestDownload(resolveVersion(gameVersion)));
     }
 
     @Override
     public final File cacheVersionArtifact(String gameVersion, DistributionType side) {
-        gameVersion = resolveVersion(gameVersion);
-
-        final CacheFileSelector cacheFileSelector = CacheFileSelector.forVersionJar(gameVersion, side.getName());
-        final String finalGameVersion = gameVersion;
-        return this.cacheFiles.computeIfAbsent(cacheFileSelector, selector -> downloadVersionArtifactToCache(project, getCacheDirectory().get().getAsFile(), finalGameVersion, side));
+        return await(this.versionArtifactDownload(resolveVersion(gameVersion), side));
     }
 
     @Override
     public final File cacheVersionMappings(String gameVersion, DistributionType side) {
-        gameVersion = resolveVersion(gameVersion);
-
-        final CacheFileSelector cacheFileSelector = CacheFileSelector.forVersionMappings(gameVersion, side.getName());
-        final String finalGameVersion = gameVersion;
-        return this.cacheFiles.computeIfAbsent(cacheFileSelector, selector -> downloadVersionMappingsToCache(project, getCacheDirectory().get().getAsFile(), finalGameVersion, side));
+        return await(this.versionMappingsDownload(resolveVersion(gameVersion), side));
     }
 
     @Override
@@ -169,92 +181,149 @@ public abstract class MinecraftArtifactCacheExtension implements ConfigurableDSL
 
     @Override
     public final File cache(final String url, final CacheFileSelector selector) {
-        return this.cacheFiles.computeIfAbsent(selector, cacheKey -> downloadJsonToCache(project, url, getCacheDirectory().getAsFile().get(), selector));
+        return await(this.jsonDownload(url, selector));
     }
 
-    private File downloadVersionManifestToCache(Project project, final File cacheDirectory, final String minecraftVersion) {
-        final File manifestFile = new File(new File(cacheDirectory, CacheFileSelector.launcherMetadata().getCacheDirectory()), CacheFileSelector.launcherMetadata().getCacheFileName());
-
-        String url = null;
-
-        JsonObject json = SerializationUtils.fromJson(manifestFile, JsonObject.class);
-
-        for (JsonElement e : json.getAsJsonArray("versions")) {
-            String v = e.getAsJsonObject().get("id").getAsString();
-            if (Objects.equals(minecraftVersion, "+") || v.equals(minecraftVersion)) {
-                url = e.getAsJsonObject().get("url").getAsString();
-                break;
-            }
-        }
-
-        if (url == null) {
-            throw new IllegalStateException("Could not find the correct version json for version: " + minecraftVersion);
-        }
+    private CompletableFuture<File> launcherMetadataDownload() {
+        return this.jsonDownload(UrlConstants.MOJANG_MANIFEST, CacheFileSelector.launcherMetadata());
+    }
 
-        return downloadJsonToCache(project, url, cacheDirectory, CacheFileSelector.forVersionJson(minecraftVersion));
+    private CompletableFuture<File> jsonDownload(final String url, final CacheFileSelector selector) {
+        //Gradle state is only read on the calling thread, the download itself runs in the background.
+        final File cacheDirectory = getCacheDirectory().get().getAsFile();
+        final boolean isOffline = isOffline();
+        return this.cacheFile(selector, cacheKey -> CompletableFuture.supplyAsync(
+                () -> downloadJsonToCache(isOffline, url, cacheDirectory, selector),
+                downloadExecutor()
+        ));
     }
 
-    private File downloadVersionArtifactToCache(final Project project, final File cacheDirectory, String minecraftVersion, final DistributionType side) {
-        minecraftVersion = resolveVersion(minecraftVersion);
+    private CompletableFuture<File> versionManifestDownload(final String minecraftVersion) {
+        final File cacheDirectory = getCacheDirectory().get().getAsFile();
+        final boolean isOffline = isOffline();
+        //The launcher metadata download is created up front, computeIfAbsent does not allow modifying the map from within the mapping function.
+        final CompletableFuture<File> launcherMetadata = this.launcherMetadataDownload();
+        return this.cacheFile(CacheFileSelector.forVersionJson(minecraftVersion), selector -> launcherMetadata.thenApplyAsync(
+                manifestFile -> downloadVersionManifestToCache(isOffline, manifestFile, cacheDirectory, minecraftVersion),
+                downloadExecutor()
+        ));
+    }
 
-        return doDownloadVersionDownloadToCache(project,
-                cacheDirectory,
-                minecraftVersion,
+    private CompletableFuture<File> versionArtifactDownload(final String minecraftVersion, final DistributionType side) {
+        return versionDownload(minecraftVersion,
                 side.getName(),
                 CacheFileSelector.forVersionJar(minecraftVersion, side.getName()),
                 String.format("Failed to download game artifact %s for %s", side.getName(), minecraftVersion));
     }
 
-    private File downloadVersionMappingsToCache(final Project project, final File cacheDirectory, String minecraftVersion, final DistributionType side) {
-        minecraftVersion = resolveVersion(minecraftVersion);
-
-        return doDownloadVersionDownloadToCache(project,
-                cacheDirectory,
-                minecraftVersion,
+    private CompletableFuture<File> versionMappingsDownload(final String minecraftVersion, final DistributionType side) {
+        return versionDownload(minecraftVersion,
                 String.format("%s_mappings", side.getName()),
                 CacheFileSelector.forVersionMappings(minecraftVersion, side.getName()),
                 String.format("Failed to download game mappings of %s for %s", side.getName(), minecraftVersion));
     }
 
-    private File doDownloadVersionDownloadToCache(Project project, File cacheDirectory, String minecraftVersion, final String artifact, final CacheFileSelector cacheFileSelector, final String potentialError) {
-        minecraftVersion = resolveVersion(minecraftVersion);
+    private CompletableFuture<File> versionDownload(final String minecraftVersion, final String artifact, final CacheFileSelector cacheFileSelector, final String potentialError) {
+        final File cacheDirectory = getCacheDirectory().get().getAsFile();
+        final boolean isOffline = isOffline();
+        final CompletableFuture<VersionDownloads> versionJson = this.versionJson(minecraftVersion);
+        return this.cacheFile(cacheFileSelector, selector -> versionJson.thenApplyAsync(
+                downloads -> doDownloadVersionDownloadToCache(isOffline, cacheDirectory, downloads, artifact, cacheFileSelector, potentialError),
+                downloadExecutor()
+        ));
+    }
 
-        final File versionManifestFile = this.cacheVersionManifest(minecraftVersion);
+    /**
+     * Gets the download of the given cache file, starting it if it is not running or done yet.
+     * A failed download is forgotten, so that the next request for the file tries again.
+     */
+    private CompletableFuture<File> cacheFile(final CacheFileSelector selector, final Function<CacheFileSelector, CompletableFuture<File>> download) {
+        final CompletableFuture<File> file = this.cacheFiles.computeIfAbsent(selector, download);
+        //Registered outside computeIfAbsent, as the callback runs immediately on a download which already failed.
+        file.whenComplete((result, error) -> {
+            if (error != null) {
+                this.cacheFiles.remove(selector, file);
+            }
+        });
+        return file;
+    }
 
-        try {
-            JsonObject json = SerializationUtils.fromJson(versionManifestFile, JsonObject.class);
+    /**
+     * The version json is parsed once per version, and shared between the downloads of all its artifacts.
+     */
+    private CompletableFuture<VersionDownloads> versionJson(final String minecraftVersion) {
+        final File cacheDirectory = getCacheDirectory().get().getAsFile();
+        final CompletableFuture<File> versionManifest = this.versionManifestDownload(minecraftVersion);
+        final CompletableFuture<VersionDownloads> versionJson = this.versionJsons.computeIfAbsent(minecraftVersion, version -> versionManifest.thenApplyAsync(
+                file -> VersionDownloads.get(cacheDirectory, file),
+                downloadExecutor()
+        ));
+        versionJson.whenComplete((result, error) -> {
+            if (error != null) {
+                this.versionJsons.remove(minecraftVersion, versionJson);
+            }
+        });
+        return versionJson;
+    }
+
+    private static File downloadVersionManifestToCache(final boolean isOffline, final File manifestFile, final File cacheDirectory, final String minecraftVersion) {
+        final String url = LauncherManifest.get(cacheDirectory, manifestFile).getVersionUrl(minecraftVersion);
+        if (url == null) {
+            throw new IllegalStateException("Could not find the correct version json for version: " + minecraftVersion);
+        }
+
+        return downloadJsonToCache(isOffline, url, cacheDirectory, CacheFileSelector.forVersionJson(minecraftVersion));
+    }
 
-            JsonObject artifactInfo = json.getAsJsonObject("downloads").getAsJsonObject(artifact);
-            String url = artifactInfo.get("url").getAsString();
-            String hash = artifactInfo.get("sha1").getAsString();
-            String version = json.getAsJsonObject().get("id").getAsString();
+    private static File doDownloadVersionDownloadToCache(final boolean isOffline, final File cacheDirectory, final VersionDownloads downloads, final String artifact, final CacheFileSelector cacheFileSelector, final String potentialError) {
+        final VersionDownloads.Download download = downloads.getDownload(artifact);
+        if (download == null) {
+            throw new IllegalStateException(potentialError + ": the version json does not contain the download " + artifact);
+        }
 
-            final FileDownloadingUtils.DownloadInfo info = new FileDownloadingUtils.DownloadInfo(url, hash, "jar", version, artifact);
+        try {
+            final String hash = download.getSha1();
+            final FileDownloadingUtils.DownloadInfo info = new FileDownloadingUtils.DownloadInfo(download.getUrl(), hash, "jar", downloads.getId(), artifact);
 
             final File cacheFile = new File(new File(cacheDirectory, cacheFileSelector.getCacheDirectory()), cacheFileSelector.getCacheFileName());
 
-            if (cacheFile.exists()) {
-                final String fileHash = HashFunction.SHA1.hash(cacheFile);
-                if (fileHash.equals(hash)) {
-                    return cacheFile;
-                }
+            if (VerifiedHashIndex.in(cacheDirectory).matches(cacheFile, hash)) {
+                return cacheFile;
             }
 
-            FileDownloadingUtils.downloadTo(project.getGradle().getStartParameter().isOffline(), info, cacheFile);
+            FileDownloadingUtils.downloadTo(isOffline, info, cacheFile);
             return cacheFile;
         } catch (IOException e) {
             throw new RuntimeException(potentialError, e);
         }
     }
 
-    private File downloadJsonToCache(Project project, final String url, final File cacheDirectory, final CacheFileSelector selector) {
+    private static File downloadJsonToCache(final boolean isOffline, final String url, final File cacheDirectory, final CacheFileSelector selector) {
         final File cacheFile = new File(new File(cacheDirectory, selector.getCacheDirectory()), selector.getCacheFileName());
-        downloadJsonTo(project, url, cacheFile);
+        FileDownloadingUtils.downloadThrowing(isOffline, new FileDownloadingUtils.DownloadInfo(url, null, "json", null, null), cacheFile);
         return cacheFile;
     }
 
-    private void downloadJsonTo(Project project, String url, File file) {
-        FileDownloadingUtils.downloadThrowing(project.getGradle().getStartParameter().isOffline(), new FileDownloadingUtils.DownloadInfo(url, null, "json", null, null), file);
+    private Executor downloadExecutor() {
+        return downloadService.get().getExecutor();
+    }
+
+    private boolean isOffline() {
+        return project.getGradle().getStartParameter().isOffline();
+    }
+
+    /**
+     * Waits for the given download to complete, rethrowing its failure on the calling thread.
+     */
+    private static File await(final CompletableFuture<File> download) {
+        try {
+            return download.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+
+            throw new RuntimeException(e.getCause());
+        }
     }
 
     @Override
@@ -263,13 +332,6 @@ public abstract class MinecraftArtifactCacheExtension implements ConfigurableDSL
             return gameVersion;
 
         final File launcherMetadata = this.cacheLauncherMetadata();
-
-        JsonObject json = SerializationUtils.fromJson(launcherMetadata, JsonObject.class);
-
-        for (JsonElement e : json.getAsJsonArray("versions")) {
-            return e.getAsJsonObject().get("id").getAsString();
-        }
-
-        throw new IllegalStateException("Could not find the correct version json.");
+        return LauncherManifest.get(getCacheDirectory().get().getAsFile(), launcherMetadata).getNewestVersion();
     }
 }
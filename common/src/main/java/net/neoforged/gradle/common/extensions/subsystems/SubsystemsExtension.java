@@ -6,6 +6,7 @@ import net.neoforged.gradle.dsl.common.extensions.subsystems.DecompilerLogLevel;
 import net.neoforged.gradle.dsl.common.extensions.subsystems.Parchment;
 import net.neoforged.gradle.dsl.common.extensions.subsystems.Recompiler;
 import net.neoforged.gradle.dsl.common.extensions.subsystems.Subsystems;
+import net.neoforged.gradle.dsl.common.extensions.subsystems.Tools;
 import org.gradle.api.GradleException;
 import org.gradle.api.Project;
 import org.gradle.api.artifacts.repositories.MavenArtifactRepository;
@@ -36,12 +37,14 @@ public abstract class SubsystemsExtension implements ConfigurableDSLElement<Subs
         configureDecompilerDefaults();
         configureRecompilerDefaults();
         configureParchmentDefaults();
+        configureToolsDefaults();
     }
 
     private void configureDecompilerDefaults() {
         Decompiler decompiler = getDecompiler();
         decompiler.getMaxMemory().convention(getStringProperty("decompiler.maxMemory"));
         decompiler.getMaxThreads().convention(getStringProperty("decompiler.maxThreads").map(Integer::parseUnsignedInt));
+        decompiler.getAutoTune().convention(getBooleanProperty("decompiler.autoTune").orElse(false));
         decompiler.getLogLevel().convention(getStringProperty("decompiler.logLevel").map(s -> {
             try {
                 return DecompilerLogLevel.valueOf(s.toUpperCase(Locale.ROOT));
@@ -50,6 +53,7 @@ public abstract class SubsystemsExtension implements ConfigurableDSLElement<Subs
             }
         }));
         decompiler.getJvmArgs().convention(getSpaceSeparatedListProperty("decompiler.jvmArgs").orElse(Collections.emptyList()));
+        decompiler.getIncremental().convention(getBooleanProperty("decompiler.incremental").orElse(false));
     }
 
     private void configureRecompilerDefaults() {
@@ -57,6 +61,8 @@ public abstract class SubsystemsExtension implements ConfigurableDSLElement<Subs
         recompiler.getArgs().convention(getSpaceSeparatedListProperty("recompiler.args").orElse(Collections.emptyList()));
         recompiler.getJvmArgs().convention(getSpaceSeparatedListProperty("recompiler.jvmArgs").orElse(Collections.emptyList()));
         recompiler.getMaxMemory().convention(getStringProperty("recompiler.maxMemory").orElse(DEFAULT_RECOMPILER_MAX_MEMORY));
+        recompiler.getInMemory().convention(getBooleanProperty("recompiler.inMemory").orElse(false));
+        recompiler.getIncremental().convention(getBooleanProperty("recompiler.incremental").orElse(false));
     }
 
     private void configureParchmentDefaults() {
@@ -106,6 +112,11 @@ public abstract class SubsystemsExtension implements ConfigurableDSLElement<Subs
         });
     }
 
+    private void configureToolsDefaults() {
+        Tools tools = getTools();
+        tools.getUseWorkerProcesses().convention(getBooleanProperty("tools.useWorkerProcesses").orElse(false));
+    }
+
     private Provider<String> getStringProperty(String propertyName) {
         return this.project.getProviders().gradleProperty(SUBSYSTEM_PROPERTY_PREFIX + propertyName);
     }
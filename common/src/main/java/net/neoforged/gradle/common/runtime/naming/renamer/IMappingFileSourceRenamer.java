@@ -29,7 +29,7 @@ import java.util.Collections;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
-public class IMappingFileSourceRenamer extends RegexBasedSourceRenamer {
+public class IMappingFileSourceRenamer extends TokenScanningSourceRenamer {
 
     private final Map<String, String> names;
     private final Map<String, String> docs;
@@ -22,6 +22,12 @@ import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+/**
+ * A source renamer which runs a set of regular expressions over every line of a source file.
+ *
+ * @deprecated Use {@link TokenScanningSourceRenamer}, which produces the same output in a single pass over the file.
+ */
+@Deprecated
 public abstract class RegexBasedSourceRenamer implements ISourceRenamer {
     private static final String NEWLINE = System.getProperty("line.separator");
     private static final Pattern SRG_FINDER = Pattern.compile("[fF]unc_\\d+_[a-zA-Z_]+|m_\\d+_|[fF]ield_\\d+_[a-zA-Z_]+|f_\\d+_|p_\\w+_\\d+_|p_\\d+_");
@@ -0,0 +1,332 @@
+package net.neoforged.gradle.common.runtime.naming.renamer;
+
+import javax.annotation.Nullable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable map from SRG names to their mapped names, optimized for the lookups done while renaming sources.
+ * <p>
+ * Names in the form {@code m_<id>_}, {@code f_<id>_} and {@code p_<id>_} are stored in an open addressing table keyed
+ * by their kind and numeric id, so no strings are allocated per key and lookups can be done directly on a region of
+ * a source file. All other names, like legacy {@code func_} names, are kept in a regular map.
+ * Equal mapped names are shared between entries.
+ * <p>
+ * Tables can be written to and read from a compact binary form, see {@link #write(DataOutput)} and
+ * {@link #read(DataInput)}.
+ */
+public final class SrgNameTable extends AbstractMap<String, String> {
+
+    private static final char[] KINDS = {'m', 'f', 'p'};
+    private static final int MAX_ID_DIGITS = 9;
+    private static final long EMPTY = 0;
+
+    private final long[] keys;
+    private final String[] values;
+    private final int mask;
+    private final int compactSize;
+    private final Map<String, String> others;
+    private Set<Entry<String, String>> entrySet;
+
+    private SrgNameTable(long[] keys, String[] values, int compactSize, Map<String, String> others) {
+        this.keys = keys;
+        this.values = values;
+        this.mask = keys.length - 1;
+        this.compactSize = compactSize;
+        this.others = others;
+    }
+
+    /**
+     * @return A builder for a new table.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Looks up the mapped name of the SRG name in the given region of the source.
+     *
+     * @param source The source which contains the name
+     * @param start The start of the name, inclusive
+     * @param end The end of the name, exclusive
+     * @return The mapped name, or null if the name is not mapped
+     */
+    @Nullable
+    public String get(CharSequence source, int start, int end) {
+        final long key = encode(source, start, end);
+        if (key != EMPTY)
+            return lookup(key);
+
+        return others.isEmpty() ? null : others.get(source.subSequence(start, end).toString());
+    }
+
+    @Override
+    public String get(Object key) {
+        if (!(key instanceof String))
+            return null;
+        return get((String) key, 0, ((String) key).length());
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public int size() {
+        return compactSize + others.size();
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    @Nullable
+    private String lookup(long key) {
+        int slot = slot(key, mask);
+        while (true) {
+            final long candidate = keys[slot];
+            if (candidate == key)
+                return values[slot];
+            if (candidate == EMPTY)
+                return null;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Writes the table in its binary form.
+     * Every distinct mapped name is written once, entries refer to it by index.
+     *
+     * @param output The output to write to
+     * @throws IOException If the output could not be written
+     */
+    public void write(DataOutput output) throws IOException {
+        final Map<String, Integer> stringIndices = new HashMap<>();
+        final List<String> strings = new ArrayList<>();
+        for (String value : values) {
+            if (value != null && stringIndices.putIfAbsent(value, strings.size()) == null)
+                strings.add(value);
+        }
+
+        output.writeInt(strings.size());
+        for (String string : strings) {
+            writeString(output, string);
+        }
+
+        output.writeInt(compactSize);
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY) {
+                output.writeLong(keys[slot]);
+                output.writeInt(stringIndices.get(values[slot]));
+            }
+        }
+
+        output.writeInt(others.size());
+        for (Map.Entry<String, String> entry : others.entrySet()) {
+            writeString(output, entry.getKey());
+            writeString(output, entry.getValue());
+        }
+    }
+
+    /**
+     * Reads a table which was written by {@link #write(DataOutput)}.
+     *
+     * @param input The input to read from
+     * @return The table
+     * @throws IOException If the input could not be read
+     */
+    public static SrgNameTable read(DataInput input) throws IOException {
+        final String[] strings = new String[input.readInt()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = readString(input);
+        }
+
+        final Builder builder = new Builder();
+        final int compactSize = input.readInt();
+        for (int i = 0; i < compactSize; i++) {
+            builder.putCompact(input.readLong(), strings[input.readInt()]);
+        }
+
+        final int otherSize = input.readInt();
+        for (int i = 0; i < otherSize; i++) {
+            builder.put(readString(input), readString(input));
+        }
+        return builder.build();
+    }
+
+    private static void writeString(DataOutput output, String string) throws IOException {
+        final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(DataInput input) throws IOException {
+        final byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Encodes a name in the form {@code <kind>_<id>_} into a key of the compact table.
+     *
+     * @return The key, or {@link #EMPTY} if the name does not have that form.
+     */
+    private static long encode(CharSequence source, int start, int end) {
+        final int digits = end - start - 3;
+        if (digits < 1 || digits > MAX_ID_DIGITS || source.charAt(start + 1) != '_' || source.charAt(end - 1) != '_')
+            return EMPTY;
+
+        final int kind = kindOf(source.charAt(start));
+        if (kind == -1)
+            return EMPTY;
+
+        int id = 0;
+        for (int index = start + 2; index < end - 1; index++) {
+            final char c = source.charAt(index);
+            if (c < '0' || c > '9')
+                return EMPTY;
+            id = id * 10 + (c - '0');
+        }
+
+        //Leading zeros would not survive decoding, so keep those names in the regular map.
+        if (digits > 1 && source.charAt(start + 2) == '0')
+            return EMPTY;
+
+        return ((long) (kind + 1) << 32) | id;
+    }
+
+    private static String decode(long key) {
+        return KINDS[(int) (key >>> 32) - 1] + "_" + (int) key + "_";
+    }
+
+    private static int kindOf(char c) {
+        for (int kind = 0; kind < KINDS.length; kind++) {
+            if (KINDS[kind] == c)
+                return kind;
+        }
+        return -1;
+    }
+
+    private static int slot(long key, int mask) {
+        final long mixed = key * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32)) & mask;
+    }
+
+    private final class EntrySet extends AbstractSet<Entry<String, String>> {
+        @Override
+        public Iterator<Entry<String, String>> iterator() {
+            final Iterator<Entry<String, String>> otherEntries = others.entrySet().iterator();
+            return new Iterator<Entry<String, String>>() {
+                private int slot = nextSlot(0);
+
+                private int nextSlot(int from) {
+                    int candidate = from;
+                    while (candidate < keys.length && keys[candidate] == EMPTY)
+                        candidate++;
+                    return candidate;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return slot < keys.length || otherEntries.hasNext();
+                }
+
+                @Override
+                public Entry<String, String> next() {
+                    if (slot < keys.length) {
+                        final Entry<String, String> entry = new SimpleImmutableEntry<>(decode(keys[slot]), values[slot]);
+                        slot = nextSlot(slot + 1);
+                        return entry;
+                    }
+                    if (!otherEntries.hasNext())
+                        throw new NoSuchElementException();
+                    return otherEntries.next();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return SrgNameTable.this.size();
+        }
+    }
+
+    /**
+     * Collects the entries of a new table.
+     * Later entries replace earlier ones with the same name.
+     */
+    public static final class Builder {
+        private final Map<Long, String> compact = new HashMap<>();
+        private final Map<String, String> others = new HashMap<>();
+        private final Map<String, String> interned = new HashMap<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Adds a name to the table.
+         *
+         * @param srg The SRG name
+         * @param mapped The mapped name
+         * @return The builder
+         */
+        public Builder put(String srg, String mapped) {
+            final long key = encode(srg, 0, srg.length());
+            if (key != EMPTY) {
+                putCompact(key, mapped);
+            } else {
+                others.put(srg, intern(mapped));
+            }
+            return this;
+        }
+
+        private void putCompact(long key, String mapped) {
+            compact.put(key, intern(mapped));
+        }
+
+        private String intern(String value) {
+            final String existing = interned.putIfAbsent(value, value);
+            return existing == null ? value : existing;
+        }
+
+        /**
+         * @return The table containing all added names.
+         */
+        public SrgNameTable build() {
+            int capacity = 16;
+            while (capacity < compact.size() * 2)
+                capacity <<= 1;
+
+            final long[] keys = new long[capacity];
+            final String[] values = new String[capacity];
+            final int mask = capacity - 1;
+            for (Map.Entry<Long, String> entry : compact.entrySet()) {
+                final long key = entry.getKey();
+                int slot = slot(key, mask);
+                while (keys[slot] != EMPTY)
+                    slot = (slot + 1) & mask;
+                keys[slot] = key;
+                values[slot] = entry.getValue();
+            }
+
+            return new SrgNameTable(keys, values, compact.size(), others.isEmpty() ? Collections.emptyMap() : new HashMap<>(others));
+        }
+    }
+}
@@ -0,0 +1,447 @@
+package net.neoforged.gradle.common.runtime.naming.renamer;
+
+import net.neoforged.gradle.util.JavadocAdder;
+import org.apache.commons.lang3.tuple.Pair;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.tasks.Nested;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A source renamer which produces the same output as {@link RegexBasedSourceRenamer}, but walks the source file once
+ * instead of splitting it into lines and running a set of regular expressions over every line.
+ * <p>
+ * SRG names are found by a hand written scanner which mirrors the alternatives of the SRG pattern without
+ * backtracking. The javadoc patterns are only evaluated on lines which can possibly match them, and not at all when
+ * there are no docs to inject.
+ */
+public abstract class TokenScanningSourceRenamer implements ISourceRenamer {
+    private static final Logger LOGGER = Logging.getLogger(TokenScanningSourceRenamer.class);
+    private static final String NEWLINE = System.getProperty("line.separator");
+    private static final Pattern CONSTRUCTOR_JAVADOC_PATTERN = Pattern.compile("^(?<indent>(?: {3})+|\\t+)(public |private|protected |)(?<generic><[\\w\\W]*>\\s+)?(?<name>[\\w.]+)\\((?<parameters>.*)\\)\\s+(?:throws[\\w.,\\s]+)?\\{");
+    private static final Pattern METHOD_JAVADOC_PATTERN = Pattern.compile("^(?<indent>(?: {3})+|\\t+)(?!return)(?:\\w+\\s+)*(?<generic><[\\w\\W]*>\\s+)?(?<return>\\w+[\\w$.]*(?:<[\\w\\W]*>)?[\\[\\]]*)\\s+(?<name>(?:func_|m_)[0-9]+_[a-zA-Z_]*)\\(");
+    private static final Pattern FIELD_JAVADOC_PATTERN = Pattern.compile("^(?<indent>(?: {3})+|\\t+)(?!return)(?:\\w+\\s+)*\\w+[\\w$.]*(?:<[\\w\\W]*>)?[\\[\\]]*\\s+(?<name>(?:field_|f_)[0-9]+_[a-zA-Z_]*) *[=;]");
+    private static final Pattern CLASS_JAVADOC_PATTERN = Pattern.compile("^(?<indent> *|\\t*)([\\w|@]*\\s)*(class|interface|@interface|enum) (?<name>[\\w]+)");
+    private static final Pattern CLOSING_CURLY_BRACE = Pattern.compile("^(?<indent> *|\\t*)}");
+    private static final Pattern PACKAGE_DECL = Pattern.compile("^[\\s]*package(\\s)*(?<name>[\\w|.]+);$");
+    private static final Pattern LAMBDA_DECL = Pattern.compile("\\((?<args>(?:(?:, ){0,1}p_[\\w]+_\\d+_\\b)+)\\) ->");
+
+    public byte[] rename(byte[] classFile, boolean javadocs) throws IOException {
+        return rename(classFile, javadocs, true, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public byte[] rename(byte[] classFile, boolean javadocs, boolean lambdas) throws IOException {
+        return rename(classFile, javadocs, lambdas, StandardCharsets.UTF_8);
+    }
+
+    public byte[] rename(byte[] classFile, boolean javadocs, boolean lambdas, Charset sourceFileCharset) throws IOException {
+        if (classFile.length == 0)
+            return new byte[0];
+
+        return rename(new String(classFile, sourceFileCharset), javadocs, lambdas).getBytes(sourceFileCharset);
+    }
+
+    /**
+     * Renames the given source file.
+     * Line terminators are normalized to the line separator of the system, like the regex based renamer does.
+     *
+     * @param source The source file
+     * @param javadocs Whether to inject javadocs
+     * @param lambdas Whether to rename lambda parameters
+     * @return The renamed source file
+     */
+    public String rename(String source, boolean javadocs, boolean lambdas) {
+        final Set<String> blacklist = lambdas ? null : findLambdaParameters(source);
+        final Map<String, String> docs = getDocs();
+        final JavadocState state = javadocs && !docs.isEmpty() ? new JavadocState(docs) : null;
+
+        final StringBuilder output = new StringBuilder(source.length() + (source.length() >> 4));
+        final int length = source.length();
+        int lineStart = 0;
+        while (true) {
+            int lineEnd = lineStart;
+            while (lineEnd < length && !isLineTerminator(source.charAt(lineEnd)))
+                lineEnd++;
+
+            if (state != null) {
+                state.process(output, source.substring(lineStart, lineEnd));
+            }
+
+            final int outputLineStart = output.length();
+            rename(source, lineStart, lineEnd, output, blacklist);
+
+            if (state != null) {
+                state.lineWritten(output, outputLineStart);
+            }
+
+            if (lineEnd == length)
+                break;
+
+            output.append(NEWLINE);
+            lineStart = lineEnd + 1;
+            if (source.charAt(lineEnd) == '\r' && lineStart < length && source.charAt(lineStart) == '\n')
+                lineStart++;
+        }
+
+        return output.toString();
+    }
+
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r';
+    }
+
+    /**
+     * Collects the names of lambda parameters, which are not renamed when lambdas are disabled.
+     * Like the regex based renamer, only the first lambda declaration on each line is considered.
+     */
+    private static Set<String> findLambdaParameters(String source) {
+        final Set<String> blacklist = new HashSet<>();
+        int index = source.indexOf(") ->");
+        while (index != -1) {
+            int lineStart = index;
+            while (lineStart > 0 && !isLineTerminator(source.charAt(lineStart - 1)))
+                lineStart--;
+            int lineEnd = index;
+            while (lineEnd < source.length() && !isLineTerminator(source.charAt(lineEnd)))
+                lineEnd++;
+
+            final Matcher matcher = LAMBDA_DECL.matcher(source.substring(lineStart, lineEnd));
+            if (matcher.find())
+                blacklist.addAll(Arrays.asList(matcher.group("args").split(", ")));
+
+            index = source.indexOf(") ->", lineEnd);
+        }
+        return blacklist;
+    }
+
+    /**
+     * Copies the given region of the source to the output, replacing every SRG name in it.
+     */
+    private void rename(String source, int start, int end, StringBuilder output, @Nullable Set<String> blacklist) {
+        int copied = start;
+        int index = start;
+        while (index < end) {
+            final int match = matchSrgName(source, index, end);
+            if (match == -1) {
+                index++;
+                continue;
+            }
+
+            output.append(source, copied, index);
+            appendMapped(source, index, match, output, blacklist);
+            copied = match;
+            index = match;
+        }
+        output.append(source, copied, end);
+    }
+
+    /**
+     * Attempts to match an SRG name at the given position.
+     * The alternatives are tried in the same order as the regex based renamer tries them:
+     * {@code [fF]unc_\d+_[a-zA-Z_]+}, {@code m_\d+_}, {@code [fF]ield_\d+_[a-zA-Z_]+}, {@code f_\d+_},
+     * {@code p_\w+_\d+_} and {@code p_\d+_}.
+     *
+     * @return The end of the matched name, or -1 if there is no SRG name at the given position.
+     */
+    private static int matchSrgName(String source, int start, int end) {
+        final char c = source.charAt(start);
+        switch (c) {
+            case 'f':
+            case 'F': {
+                final int func = matchLegacyName(source, start, end, "unc_");
+                if (func != -1)
+                    return func;
+                final int field = matchLegacyName(source, start, end, "ield_");
+                if (field != -1)
+                    return field;
+                return c == 'f' ? matchIdName(source, start + 1, end) : -1;
+            }
+            case 'm':
+                return matchIdName(source, start + 1, end);
+            case 'p':
+                if (start + 1 >= end || source.charAt(start + 1) != '_')
+                    return -1;
+                final int parameter = matchParameterName(source, start + 2, end);
+                if (parameter != -1)
+                    return parameter;
+                return matchDigitsAndUnderscore(source, start + 2, end);
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Matches {@code <prefix>\d+_[a-zA-Z_]+} after the first character of a legacy SRG name.
+     */
+    private static int matchLegacyName(String source, int start, int end, String prefix) {
+        if (!source.startsWith(prefix, start + 1) || start + 1 + prefix.length() > end)
+            return -1;
+
+        final int digitsEnd = matchDigitsAndUnderscore(source, start + 1 + prefix.length(), end);
+        if (digitsEnd == -1)
+            return -1;
+
+        int index = digitsEnd;
+        while (index < end && isLetterOrUnderscore(source.charAt(index)))
+            index++;
+        return index == digitsEnd ? -1 : index;
+    }
+
+    /**
+     * Matches {@code _\d+_} at the given position, which follows the single letter prefix of an SRG id name.
+     */
+    private static int matchIdName(String source, int start, int end) {
+        if (start >= end || source.charAt(start) != '_')
+            return -1;
+        return matchDigitsAndUnderscore(source, start + 1, end);
+    }
+
+    /**
+     * Matches {@code \w+_\d+_} at the given position.
+     * The greedy {@code \w+} means that the match ending closest to the end of the word is used.
+     */
+    private static int matchParameterName(String source, int start, int end) {
+        int wordEnd = start;
+        while (wordEnd < end && isWordCharacter(source.charAt(wordEnd)))
+            wordEnd++;
+
+        for (int separator = wordEnd - 1; separator > start; separator--) {
+            if (source.charAt(separator) != '_')
+                continue;
+
+            final int match = matchDigitsAndUnderscore(source, separator + 1, end);
+            if (match != -1)
+                return match;
+        }
+        return -1;
+    }
+
+    /**
+     * Matches {@code \d+_} at the given position.
+     */
+    private static int matchDigitsAndUnderscore(String source, int start, int end) {
+        int index = start;
+        while (index < end && isDigit(source.charAt(index)))
+            index++;
+
+        if (index == start || index >= end || source.charAt(index) != '_')
+            return -1;
+        return index + 1;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isLetterOrUnderscore(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+    }
+
+    private static boolean isWordCharacter(char c) {
+        return isLetterOrUnderscore(c) || isDigit(c);
+    }
+
+    /**
+     * Appends the mapped name of the SRG name in the given region of the source.
+     * Names can be looked up directly on the source if they are stored in a {@link SrgNameTable}.
+     */
+    private void appendMapped(String source, int start, int end, StringBuilder output, @Nullable Set<String> blacklist) {
+        final Map<String, String> names = getNames();
+        if (blacklist == null && names instanceof SrgNameTable && source.charAt(start) != 'F') {
+            final String mapped = ((SrgNameTable) names).get(source, start, end);
+            if (mapped == null) {
+                output.append(source, start, end);
+            } else {
+                output.append(mapped);
+            }
+            return;
+        }
+
+        output.append(getMapped(source.substring(start, end), blacklist));
+    }
+
+    /*
+     * There are certain times, such as Mixin Accessors that we wish to have the name of this method with the first character upper case.
+     */
+    private String getMapped(String srg, @Nullable Set<String> blacklist) {
+        if (blacklist != null && blacklist.contains(srg))
+            return srg;
+
+        boolean cap = srg.charAt(0) == 'F';
+        if (cap)
+            srg = 'f' + srg.substring(1);
+
+        String ret = getNames().getOrDefault(srg, srg);
+        if (cap)
+            ret = ret.substring(0, 1).toUpperCase(Locale.ENGLISH) + ret.substring(1);
+        return ret;
+    }
+
+    @Nested
+    public abstract Map<String, String> getNames();
+
+    @Nested
+    public abstract Map<String, String> getDocs();
+
+    /**
+     * Tracks the state needed to inject javadocs while the file is written.
+     */
+    private static final class JavadocState {
+        private final Map<String, String> docs;
+        private final Deque<Pair<String, Integer>> innerClasses = new ArrayDeque<>(); //pair of inner class name & indentation
+        private String _package = ""; //default package
+        private boolean enabled = true;
+        private int annotationsStart = -1;
+        private int lineCount = 0;
+
+        private JavadocState(Map<String, String> docs) {
+            this.docs = docs;
+        }
+
+        /**
+         * Injects a javadoc into the output, if the given line is a documented declaration.
+         *
+         * @param output The output written so far, ending at the start of the line
+         * @param line The line that is about to be written
+         */
+        private void process(StringBuilder output, String line) {
+            lineCount++;
+            if (line.contains("package")) {
+                Matcher m = PACKAGE_DECL.matcher(line);
+                if (m.find())
+                    _package = m.group("name") + ".";
+            }
+
+            if (!enabled)
+                return;
+
+            final int indentEnd = indentEnd(line);
+            final boolean indented = indentEnd > 0;
+
+            // constructors
+            Matcher matcher = null;
+            boolean isConstructor = false;
+            if (indented && !innerClasses.isEmpty() && line.indexOf('(') != -1 && line.indexOf('{') != -1) {
+                matcher = CONSTRUCTOR_JAVADOC_PATTERN.matcher(line);
+                isConstructor = matcher.find() && innerClasses.peek().getLeft().contains(matcher.group("name"));
+            }
+
+            // methods
+            if (!isConstructor && indented && line.indexOf('(') != -1 && (line.contains("m_") || line.contains("func_"))) {
+                matcher = METHOD_JAVADOC_PATTERN.matcher(line);
+                if (!matcher.find())
+                    matcher = null;
+            } else if (!isConstructor) {
+                matcher = null;
+            }
+
+            if (matcher != null) {
+                String name = isConstructor ? "<init>" : matcher.group("name");
+                String javadoc = docs.get(name);
+                if (javadoc == null && !innerClasses.isEmpty() && !name.startsWith("func_") && !name.startsWith("m_")) {
+                    String currentClass = innerClasses.peek().getLeft();
+                    javadoc = docs.get(currentClass + '#' + name);
+                }
+                if (javadoc != null)
+                    insertAboveAnnotations(output, JavadocAdder.buildJavadoc(matcher.group("indent"), javadoc, true));
+
+                // worked, so return and don't try the fields.
+                return;
+            }
+
+            // fields
+            if (indented && (line.contains("f_") || line.contains("field_"))) {
+                matcher = FIELD_JAVADOC_PATTERN.matcher(line);
+                if (matcher.find()) {
+                    String name = matcher.group("name");
+                    String javadoc = docs.get(name);
+                    if (javadoc == null && !innerClasses.isEmpty() && !name.startsWith("field_") && !name.startsWith("f_")) {
+                        String currentClass = innerClasses.peek().getLeft();
+                        javadoc = docs.get(currentClass + '#' + name);
+                    }
+                    if (javadoc != null)
+                        insertAboveAnnotations(output, JavadocAdder.buildJavadoc(matcher.group("indent"), javadoc, false));
+
+                    return;
+                }
+            }
+
+            //classes
+            if (line.contains("class ") || line.contains("interface ") || line.contains("enum ")) {
+                matcher = CLASS_JAVADOC_PATTERN.matcher(line);
+                if (matcher.find()) {
+                    //we maintain a stack of the current (inner) class in com.example.ClassName$Inner format (along with indentation)
+                    //if the stack is not empty we are entering a new inner class
+                    String currentClass = (innerClasses.isEmpty() ? _package : innerClasses.peek().getLeft() + "$") + matcher.group("name");
+                    innerClasses.push(Pair.of(currentClass, matcher.group("indent").length()));
+                    String javadoc = docs.get(currentClass);
+                    if (javadoc != null) {
+                        insertAboveAnnotations(output, JavadocAdder.buildJavadoc(matcher.group("indent"), javadoc, true));
+                    }
+
+                    return;
+                }
+            }
+
+            //detect curly braces for inner class stacking/end identification
+            if (indentEnd < line.length() && line.charAt(indentEnd) == '}') {
+                matcher = CLOSING_CURLY_BRACE.matcher(line);
+                if (matcher.find() && !innerClasses.isEmpty()) {
+                    int len = matcher.group("indent").length();
+                    if (len == innerClasses.peek().getRight()) {
+                        innerClasses.pop();
+                    } else if (len < innerClasses.peek().getRight()) {
+                        LOGGER.warn("Failed to properly track class blocks around class {}:{}, no further javadocs are added to it", innerClasses.peek().getLeft(), lineCount);
+                        enabled = false;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Remembers whether the line that was just written is part of a block of annotations.
+         */
+        private void lineWritten(StringBuilder output, int lineStart) {
+            int index = lineStart;
+            while (index < output.length() && output.charAt(index) <= ' ')
+                index++;
+
+            if (index < output.length() && output.charAt(index) == '@') {
+                if (annotationsStart == -1)
+                    annotationsStart = lineStart;
+            } else {
+                annotationsStart = -1;
+            }
+        }
+
+        /**
+         * Inserts the given javadoc into the output before any annotations
+         */
+        private void insertAboveAnnotations(StringBuilder output, String javadoc) {
+            final int position = annotationsStart == -1 ? output.length() : annotationsStart;
+            output.insert(position, javadoc + NEWLINE);
+            annotationsStart = -1;
+        }
+
+        private static int indentEnd(String line) {
+            int index = 0;
+            while (index < line.length() && (line.charAt(index) == ' ' || line.charAt(index) == '\t'))
+                index++;
+            return index;
+        }
+    }
+}
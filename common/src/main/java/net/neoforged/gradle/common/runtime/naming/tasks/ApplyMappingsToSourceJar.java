@@ -20,18 +20,26 @@
 
 package net.neoforged.gradle.common.runtime.naming.tasks;
 
+import net.neoforged.gradle.common.CommonProjectPlugin;
+import net.neoforged.gradle.common.caching.MappingFileCacheService;
 import net.neoforged.gradle.util.FileUtils;
 import net.neoforged.gradle.common.runtime.naming.renamer.ISourceRenamer;
 import net.neoforged.gradle.common.runtime.tasks.DefaultRuntime;
-import net.neoforged.gradle.dsl.common.runtime.tasks.Runtime;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.tuple.Pair;
 import org.gradle.api.file.RegularFileProperty;
 import org.gradle.api.provider.Property;
+import org.gradle.api.services.ServiceReference;
 import org.gradle.api.tasks.*;
 
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Enumeration;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
@@ -40,37 +48,72 @@ import java.util.zip.ZipOutputStream;
 @CacheableTask
 public abstract class ApplyMappingsToSourceJar extends DefaultRuntime {
 
+    private static final int PENDING_ENTRIES_PER_THREAD = 4;
+
     public ApplyMappingsToSourceJar() {
         getRemapJavadocs().convention(false);
+        getParallelism().convention(Runtime.getRuntime().availableProcessors());
     }
 
     @TaskAction
     public void apply() throws Exception {
         final ISourceRenamer renamer = getSourceRenamer().get();
+        final boolean remapJavadocs = getRemapJavadocs().getOrElse(false);
+        final boolean remapLambdas = getRemapLambdas().getOrElse(true);
+        final int parallelism = Math.max(1, getParallelism().get());
+
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
         try (ZipFile zin = new ZipFile(getInput().get().getAsFile())) {
             try (FileOutputStream fos = new FileOutputStream(getOutput().get().getAsFile());
                  ZipOutputStream out = new ZipOutputStream(fos)) {
 
+                //Entries are renamed on the pool, but written in the order of the input jar.
+                //The amount of renamed entries waiting to be written is bounded to keep memory usage in check.
+                final Deque<Pair<ZipEntry, ForkJoinTask<byte[]>>> pending = new ArrayDeque<>();
+                final int maxPending = parallelism * PENDING_ENTRIES_PER_THREAD;
+
                 final Enumeration<? extends ZipEntry> entries = zin.entries();
                 while(entries.hasMoreElements()) {
                     final ZipEntry entry = entries.nextElement();
-                    out.putNextEntry(FileUtils.getStableEntry(entry.getName()));
                     if (!entry.getName().endsWith(".java")) {
-                        IOUtils.copy(zin.getInputStream(entry), out);
+                        pending.add(Pair.of(entry, null));
                     } else {
-                        final InputStream inputStream = zin.getInputStream(entry);
-                        final byte[] toRemap = IOUtils.toByteArray(inputStream);
-                        inputStream.close();
-                        out.write(renamer.rename(toRemap, getRemapJavadocs().getOrElse(false), getRemapLambdas().getOrElse(true)));
+                        pending.add(Pair.of(entry, pool.submit(() -> {
+                            try (InputStream inputStream = zin.getInputStream(entry)) {
+                                return renamer.rename(IOUtils.toByteArray(inputStream), remapJavadocs, remapLambdas);
+                            }
+                        })));
                     }
-                    out.closeEntry();
+
+                    while (pending.size() >= maxPending) {
+                        writeEntry(zin, out, pending.poll());
+                    }
+                }
+
+                while (!pending.isEmpty()) {
+                    writeEntry(zin, out, pending.poll());
                 }
             }
+        } finally {
+            pool.shutdownNow();
         }
 
         getLogger().debug("Applying mappings to source jar complete");
     }
 
+    private static void writeEntry(ZipFile zin, ZipOutputStream out, Pair<ZipEntry, ForkJoinTask<byte[]>> pending) throws IOException {
+        final ZipEntry entry = pending.getLeft();
+        out.putNextEntry(FileUtils.getStableEntry(entry.getName()));
+        if (pending.getRight() == null) {
+            try (InputStream inputStream = zin.getInputStream(entry)) {
+                IOUtils.copy(inputStream, out);
+            }
+        } else {
+            out.write(pending.getRight().join());
+        }
+        out.closeEntry();
+    }
+
     @InputFile
     @PathSensitive(PathSensitivity.NONE)
     public abstract RegularFileProperty getInput();
@@ -86,4 +129,16 @@ public abstract class ApplyMappingsToSourceJar extends DefaultRuntime {
 
     @Internal
     public abstract Property<ISourceRenamer> getSourceRenamer();
+
+    /**
+     * @return The amount of source files which are renamed in parallel, defaults to the amount of available processors.
+     */
+    @Internal
+    public abstract Property<Integer> getParallelism();
+
+    /**
+     * @return The service which loads the mapping files the source renamer is created from.
+     */
+    @ServiceReference(CommonProjectPlugin.MAPPING_FILE_CACHE_SERVICE)
+    public abstract Property<MappingFileCacheService> getMappingFileCache();
 }
@@ -19,7 +19,10 @@ public abstract class ApplyOfficialMappingsToSourceJar extends ApplyMappingsToSo
         getSourceRenamer().convention(
                 getClientMappingsFile().flatMap(clientMappings ->
                         getServerMappingsFile().map(TransformerUtils.guard(serverMappings ->
-                                IMappingFileSourceRenamer.from(clientMappings.getAsFile(), serverMappings.getAsFile()))))
+                                IMappingFileSourceRenamer.from(
+                                        getMappingFileCache().get().load(clientMappings.getAsFile()),
+                                        getMappingFileCache().get().load(serverMappings.getAsFile())
+                                ))))
         );
         getRemapLambdas().convention(true);
         getSourceRenamer().finalizeValueOnRead();
@@ -1,5 +1,7 @@
 package net.neoforged.gradle.common.runtime.naming.tasks;
 
+import net.neoforged.gradle.common.CommonProjectPlugin;
+import net.neoforged.gradle.common.caching.MappingFileCacheService;
 import net.neoforged.gradle.dsl.common.util.DistributionType;
 import net.neoforged.gradle.util.FileUtils;
 import net.neoforged.gradle.util.TransformerUtils;
@@ -8,6 +10,7 @@ import net.neoforged.gradle.common.util.CacheableIMappingFile;
 import net.neoforged.gradle.dsl.common.extensions.MinecraftArtifactCache;
 import net.minecraftforge.srgutils.IMappingFile;
 import org.gradle.api.provider.Property;
+import org.gradle.api.services.ServiceReference;
 import org.gradle.api.tasks.Input;
 import org.gradle.api.tasks.TaskAction;
 import org.jetbrains.annotations.NotNull;
@@ -27,7 +30,7 @@ public abstract class GenerateDebuggingMappings extends DefaultRuntime {
         getMappingsFile().convention(getMinecraftVersion()
                 .map(minecraftVersion -> getProject().getExtensions().getByType(MinecraftArtifactCache.class)
                         .cacheVersionMappings(minecraftVersion.getFull(), DistributionType.CLIENT))
-                .map(TransformerUtils.guard(IMappingFile::load))
+                .map(TransformerUtils.guard(file -> getMappingFileCache().get().load(file)))
                 .map(CacheableIMappingFile::new));
 
         getOutputFileName().convention("mappings.zip");
@@ -80,4 +83,7 @@ public abstract class GenerateDebuggingMappings extends DefaultRuntime {
 
     @Input
     public abstract Property<CacheableIMappingFile> getMappingsFile();
+
+    @ServiceReference(CommonProjectPlugin.MAPPING_FILE_CACHE_SERVICE)
+    public abstract Property<MappingFileCacheService> getMappingFileCache();
 }
@@ -0,0 +1,496 @@
+package net.neoforged.gradle.common.runtime.tasks;
+
+import com.google.common.collect.Lists;
+import net.neoforged.gradle.common.CommonProjectPlugin;
+import net.neoforged.gradle.common.caching.CentralCacheService;
+import net.neoforged.gradle.common.caching.VerifiedHashIndex;
+import net.neoforged.gradle.common.util.FileCacheUtils;
+import net.neoforged.gradle.dsl.common.extensions.subsystems.Subsystems;
+import net.neoforged.gradle.dsl.common.util.RegexUtils;
+import net.neoforged.gradle.util.FileUtils;
+import net.neoforged.gradle.util.HashFunction;
+import net.neoforged.gradle.util.RawZipFile;
+import net.neoforged.gradle.util.RawZipOutputStream;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.services.ServiceReference;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.jvm.toolchain.JavaInstallationMetadata;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Runs a decompiler, reusing the decompiled sources of earlier runs on the same input.
+ * <p>
+ * The decompiled sources are stored in a cache in the Gradle user home, which is shared between all projects and
+ * runtimes. Entries are keyed by the content of the input files and libraries, the decompiler jar, its main class,
+ * the JVM it runs on and the program arguments, leaving out the thread count and log level as those do not influence
+ * the output.
+ * The least recently used entries are removed when the cache grows beyond its maximum size.
+ * <p>
+ * In incremental mode a cache miss does not decompile the whole jar, if a different version of the jar was
+ * decompiled with the same decompiler, arguments and libraries before. Only the classes whose bytecode changed,
+ * together with their inner classes, are decompiled and merged into the sources of the previous version.
+ * Merged sources are not necessarily identical to the sources of a full decompilation, so they are stored under a key
+ * of their own, which only incremental mode reads.
+ */
+@CacheableTask
+public abstract class Decompile extends Execute implements net.neoforged.gradle.dsl.common.tasks.Execute {
+
+    private static final String INPUT = "input";
+    private static final String LIBRARIES = "libraries";
+    private static final String INDEX_HEADER = "decompile-index-v1";
+    private static final String INCREMENTAL_SUFFIX = "-incremental";
+
+    //Arguments which are replaced while decompiling only the changed classes.
+    private final Map<String, String> substitutions = new HashMap<>();
+
+    public Decompile() {
+        super();
+
+        getIncremental().convention(getProject().getExtensions().getByType(Subsystems.class).getDecompiler().getIncremental());
+        getHashIndexDirectory().convention(FileCacheUtils.getCacheDirectory(getProject()));
+
+        //The heap size and thread count depend on the machine, they are only passed to the decompiler when it runs.
+        getRuntimeJvmArguments().convention(getJvmArguments().map(arguments -> {
+            final List<String> result = new ArrayList<>(arguments);
+            if (getMaxMemory().isPresent()) {
+                result.add("-Xmx" + getMaxMemory().get());
+            }
+            return result;
+        }));
+        getRuntimeProgramArguments().convention(getProgramArguments().map(arguments -> {
+            final List<String> result = new ArrayList<>(arguments);
+            if (getMaxThreads().getOrElse(0) > 0) {
+                result.add(0, "-thr=" + getMaxThreads().get());
+            }
+            return result;
+        }));
+    }
+
+    @TaskAction
+    @Override
+    public void execute() throws Throwable {
+        final CentralCacheService cache = getDecompiledSourcesCache().get();
+        final String fullKey = cacheKey(null);
+        final File output = getOutput().get().getAsFile();
+
+        //Merged sources of an earlier incremental run are only used in incremental mode, full sources always are.
+        if (restore(cache, cache.getRoot().resolve(fullKey + ".jar"), output)
+                || (getIncremental().get() && restore(cache, cache.getRoot().resolve(fullKey + INCREMENTAL_SUFFIX + ".jar"), output)))
+            return;
+
+        final long start = System.nanoTime();
+        final String settingsKey = cacheKey(INPUT);
+        final Map<String, String> classes = getIncremental().get() && getRuntimeArguments().get().containsKey(INPUT) ? hashEntries(inputFile()) : null;
+        final boolean merged = classes != null && decompileIncrementally(cache, settingsKey, classes);
+        if (!merged) {
+            super.execute();
+        }
+        final long duration = System.nanoTime() - start;
+
+        final String key = merged ? fullKey + INCREMENTAL_SUFFIX : fullKey;
+        final Path cached = cache.getRoot().resolve(key + ".jar");
+        store(cache, output.toPath(), cached);
+        if (classes != null) {
+            store(cache, writeIndex(settingsKey, classes), cache.getRoot().resolve(key + ".index"));
+            cache.withLock(latestOf(cache, settingsKey), () -> {
+                Files.write(latestOf(cache, settingsKey), key.getBytes(StandardCharsets.UTF_8));
+                return null;
+            });
+        }
+        cache.recordMiss(cached, output.length(), duration);
+    }
+
+    /**
+     * Copies the given cached sources to the output, if they exist.
+     *
+     * @return Whether the sources were restored
+     */
+    private boolean restore(CentralCacheService cache, Path cached, File output) throws IOException {
+        final boolean restored = cache.withLock(cached, () -> {
+            if (!Files.isRegularFile(cached))
+                return false;
+
+            Files.createDirectories(output.getParentFile().toPath());
+            Files.copy(cached, output.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        });
+
+        if (restored) {
+            cache.recordHit(cached);
+            writeRestoredLogs(cached);
+        }
+        return restored;
+    }
+
+    @Override
+    public List<String> interpolateVariableSubstitution(String value, String previous) {
+        final Matcher matcher = RegexUtils.REPLACE_PATTERN.matcher(value);
+        if (matcher.find() && substitutions.containsKey(matcher.group(1)))
+            return Lists.newArrayList(substitutions.get(matcher.group(1)));
+
+        return net.neoforged.gradle.dsl.common.tasks.Execute.super.interpolateVariableSubstitution(value, previous);
+    }
+
+    /**
+     * Decompiles only the classes which changed since the last version of the input that was decompiled with the
+     * same settings, and merges them with the cached sources of that version.
+     *
+     * @return False if there is no usable previous version, and the whole jar needs to be decompiled
+     */
+    private boolean decompileIncrementally(CentralCacheService cache, String settingsKey, Map<String, String> classes) throws Throwable {
+        final List<String> programArguments = getRuntimeProgramArguments().get();
+        if (!programArguments.contains("{" + INPUT + "}") || !programArguments.contains("{" + LIBRARIES + "}"))
+            return false;
+
+        final Path latest = latestOf(cache, settingsKey);
+        final String previousKey = cache.withLock(latest, () -> Files.isRegularFile(latest) ? new String(Files.readAllBytes(latest), StandardCharsets.UTF_8).trim() : null);
+        if (previousKey == null)
+            return false;
+
+        final File output = getOutput().get().getAsFile();
+        Files.createDirectories(output.getParentFile().toPath());
+        final Path workspace = Files.createTempDirectory(output.getParentFile().toPath(), ".decompile");
+        try {
+            final Path previousOutput = workspace.resolve("previous.jar");
+            final Path previousIndex = workspace.resolve("previous.index");
+            final Path cachedOutput = cache.getRoot().resolve(previousKey + ".jar");
+            final Path cachedIndex = cache.getRoot().resolve(previousKey + ".index");
+            final boolean found = cache.withLock(cachedOutput, () -> {
+                if (!Files.isRegularFile(cachedOutput) || !Files.isRegularFile(cachedIndex))
+                    return false;
+
+                Files.copy(cachedOutput, previousOutput);
+                Files.copy(cachedIndex, previousIndex);
+                return true;
+            });
+            if (!found)
+                return false;
+
+            final Map<String, String> previousClasses = readIndex(previousIndex, settingsKey);
+            if (previousClasses == null)
+                return false;
+            cache.recordHit(cachedOutput);
+
+            final Set<String> changed = changedGroups(classes, previousClasses);
+            final Set<String> groups = new HashSet<>();
+            for (String name : classes.keySet()) {
+                groups.add(groupOf(name));
+            }
+            if (changed.size() * 2 > groups.size()) {
+                getLogger().info("{} of {} classes changed since the previous version, decompiling all classes", changed.size(), groups.size());
+                return false;
+            }
+
+            getLogger().lifecycle("Decompiling {} changed classes, reusing the sources of {} unchanged classes", changed.size(), groups.size() - changed.size());
+            final Path changedInput = workspace.resolve("changed.jar");
+            final boolean hasChangedEntries = writeChangedInput(changed, changedInput);
+
+            Path changedOutput = null;
+            if (hasChangedEntries) {
+                //The whole new jar is passed as a library, so that the changed classes are decompiled with all references resolved.
+                final Path libraries = workspace.resolve("libraries.cfg");
+                final List<String> lines = new ArrayList<>(Files.readAllLines(new File(getRuntimeArguments().get().get(LIBRARIES).get()).toPath(), StandardCharsets.UTF_8));
+                lines.add("-e=" + inputFile().getAbsolutePath());
+                Files.write(libraries, lines, StandardCharsets.UTF_8);
+
+                substitutions.put(INPUT, changedInput.toAbsolutePath().toString());
+                substitutions.put(LIBRARIES, libraries.toAbsolutePath().toString());
+                try {
+                    super.execute();
+                } finally {
+                    substitutions.clear();
+                }
+
+                changedOutput = workspace.resolve("changed-output.jar");
+                Files.move(output.toPath(), changedOutput);
+            }
+
+            merge(changed, previousOutput, changedOutput, output.toPath());
+            return true;
+        } finally {
+            FileUtils.delete(workspace);
+        }
+    }
+
+    /**
+     * Writes the entries of the input which belong to the changed groups.
+     *
+     * @return Whether the written jar has any entries
+     */
+    private boolean writeChangedInput(Set<String> changed, Path target) throws IOException {
+        boolean hasEntries = false;
+        try (RawZipFile input = RawZipFile.open(inputFile());
+             RawZipOutputStream out = new RawZipOutputStream(Files.newOutputStream(target))) {
+            for (RawZipFile.Entry entry : input.getEntries()) {
+                if (changed.contains(groupOf(entry.getName()))) {
+                    out.copyEntry(input, entry);
+                    hasEntries = true;
+                }
+            }
+        }
+        return hasEntries;
+    }
+
+    /**
+     * Writes the sources of the unchanged groups from the previous output and the sources of the changed groups from
+     * the new output, in the order of the previous output followed by the sources of new classes.
+     */
+    private static void merge(Set<String> changed, Path previousOutput, Path changedOutput, Path output) throws IOException {
+        final Path temporary = FileUtils.temporaryPath(output.getParent(), output.getFileName().toString());
+        try (RawZipFile previous = RawZipFile.open(previousOutput.toFile());
+             RawZipFile decompiled = changedOutput != null ? RawZipFile.open(changedOutput.toFile()) : null;
+             RawZipOutputStream out = new RawZipOutputStream(Files.newOutputStream(temporary))) {
+            final Map<String, RawZipFile.Entry> decompiledEntries = new LinkedHashMap<>();
+            if (decompiled != null) {
+                for (RawZipFile.Entry entry : decompiled.getEntries()) {
+                    decompiledEntries.put(entry.getName(), entry);
+                }
+            }
+
+            for (RawZipFile.Entry entry : previous.getEntries()) {
+                if (!changed.contains(groupOf(entry.getName()))) {
+                    //Directories can be part of both outputs, the previous entry is kept.
+                    decompiledEntries.remove(entry.getName());
+                    out.copyEntry(previous, entry);
+                    continue;
+                }
+
+                final RawZipFile.Entry decompiledEntry = decompiledEntries.remove(entry.getName());
+                if (decompiledEntry != null) {
+                    out.copyEntry(decompiled, decompiledEntry);
+                }
+            }
+
+            for (RawZipFile.Entry entry : decompiledEntries.values()) {
+                out.copyEntry(decompiled, entry);
+            }
+        }
+        FileUtils.atomicMove(temporary, output);
+    }
+
+    /**
+     * @return The groups which have an entry that was added, removed or changed.
+     */
+    private static Set<String> changedGroups(Map<String, String> current, Map<String, String> previous) {
+        final Set<String> changed = new HashSet<>();
+        for (Map.Entry<String, String> entry : current.entrySet()) {
+            if (!entry.getValue().equals(previous.get(entry.getKey()))) {
+                changed.add(groupOf(entry.getKey()));
+            }
+        }
+        for (String name : previous.keySet()) {
+            if (!current.containsKey(name)) {
+                changed.add(groupOf(name));
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Determines the group of an entry of the input or output jar. Classes are grouped with their inner and nest
+     * member classes under the name of their top level class, which is also the name of their source file.
+     * Other files form a group of their own.
+     */
+    private static String groupOf(String name) {
+        final String withoutExtension;
+        if (name.endsWith(".class")) {
+            withoutExtension = name.substring(0, name.length() - ".class".length());
+        } else if (name.endsWith(".java")) {
+            withoutExtension = name.substring(0, name.length() - ".java".length());
+        } else {
+            return name;
+        }
+
+        final int inner = withoutExtension.indexOf('$', withoutExtension.lastIndexOf('/') + 1);
+        return inner > 0 ? withoutExtension.substring(0, inner) : withoutExtension;
+    }
+
+    private static Map<String, String> hashEntries(File jar) throws IOException {
+        final Map<String, String> hashes = new TreeMap<>();
+        try (ZipInputStream input = new ZipInputStream(Files.newInputStream(jar.toPath()))) {
+            ZipEntry entry;
+            while ((entry = input.getNextEntry()) != null) {
+                hashes.put(entry.getName(), HashFunction.SHA1.hash(input));
+            }
+        }
+        return hashes;
+    }
+
+    private Path writeIndex(String settingsKey, Map<String, String> classes) throws IOException {
+        final Path index = getFileInOutputDirectory("decompile.index").get().toPath();
+        try (BufferedWriter writer = Files.newBufferedWriter(index, StandardCharsets.UTF_8)) {
+            writer.write(INDEX_HEADER);
+            writer.newLine();
+            writer.write(settingsKey);
+            writer.newLine();
+            for (Map.Entry<String, String> entry : classes.entrySet()) {
+                writer.write(entry.getValue() + "\t" + entry.getKey());
+                writer.newLine();
+            }
+        }
+        return index;
+    }
+
+    private static Map<String, String> readIndex(Path index, String settingsKey) throws IOException {
+        final Map<String, String> classes = new HashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(index, StandardCharsets.UTF_8)) {
+            if (!INDEX_HEADER.equals(reader.readLine()) || !settingsKey.equals(reader.readLine()))
+                return null;
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String[] parts = line.split("\t", 2);
+                if (parts.length != 2)
+                    return null;
+
+                classes.put(parts[1], parts[0]);
+            }
+        }
+        return classes;
+    }
+
+    private static Path latestOf(CentralCacheService cache, String settingsKey) {
+        return cache.getRoot().resolve(settingsKey + ".latest");
+    }
+
+    private static void store(CentralCacheService cache, Path file, Path cached) throws IOException {
+        cache.withLock(cached, () -> {
+            Files.createDirectories(cached.getParent());
+            final Path temporary = FileUtils.temporaryPath(cached.getParent(), cached.getFileName().toString());
+            Files.copy(file, temporary, StandardCopyOption.REPLACE_EXISTING);
+            FileUtils.atomicMove(temporary, cached);
+            return null;
+        });
+    }
+
+    private File inputFile() {
+        return new File(getRuntimeArguments().get().get(INPUT).get());
+    }
+
+    /**
+     * Computes the key of the decompiled sources in the cache.
+     * Arguments which point to files outside of the output directory of this task are replaced by the hash of the
+     * file, and the libraries file by the hashes of the libraries it lists, so that the key does not depend on where
+     * the project, runtime or machine stores its files.
+     *
+     * @param excludedArgument The name of an argument whose file is not part of the key, or null
+     */
+    private String cacheKey(String excludedArgument) throws IOException {
+        final Path outputDirectory = getOutputDirectory().get().getAsFile().toPath().toAbsolutePath().normalize();
+        final Map<String, Provider<String>> runtimeArguments = getRuntimeArguments().get();
+        final JavaInstallationMetadata jvm = getJavaLauncher().get().getMetadata();
+
+        final List<String> parts = new ArrayList<>();
+        parts.add("decompiler=" + HashFunction.SHA256.hash(getExecutingJar().get().getAsFile()));
+        parts.add("mainClass=" + getMainClass().get());
+        parts.add("jvm=" + jvm.getVendor() + " " + jvm.getJavaRuntimeVersion());
+        for (String argument : getRuntimeProgramArguments().get()) {
+            if (argument.startsWith("-thr=") || argument.startsWith("-log="))
+                continue;
+
+            final Matcher matcher = RegexUtils.REPLACE_PATTERN.matcher(argument);
+            if (!matcher.find() || !runtimeArguments.containsKey(matcher.group(1)) || matcher.group(1).equals(excludedArgument)) {
+                parts.add(argument);
+                continue;
+            }
+
+            final File file = new File(runtimeArguments.get(matcher.group(1)).get());
+            if (file.toPath().toAbsolutePath().normalize().startsWith(outputDirectory) || !file.isFile()) {
+                parts.add(argument);
+            } else if (matcher.group(1).equals(LIBRARIES)) {
+                parts.add(argument + "=" + librariesKey(file));
+            } else {
+                parts.add(argument + "=" + HashFunction.SHA256.hash(file));
+            }
+        }
+
+        return HashFunction.SHA256.hash(String.join("\n", parts));
+    }
+
+    /**
+     * Computes the key of a libraries file, which lists the libraries by their absolute path. Every line which points
+     * to a file is replaced by the hash of that file, keeping the order of the libraries.
+     */
+    private String librariesKey(File librariesFile) throws IOException {
+        final VerifiedHashIndex hashIndex = VerifiedHashIndex.in(getHashIndexDirectory().get().getAsFile());
+        final List<String> lines = new ArrayList<>();
+        for (String line : Files.readAllLines(librariesFile.toPath(), StandardCharsets.UTF_8)) {
+            final int separator = line.indexOf('=');
+            final File library = new File(line.substring(separator + 1));
+            lines.add(library.isFile() ? line.substring(0, separator + 1) + hashIndex.hash(library) : line);
+        }
+        return HashFunction.SHA256.hash(String.join("\n", lines));
+    }
+
+    private void writeRestoredLogs(Path cached) throws IOException {
+        final File logFile = ensureFileWorkspaceReady(getLogFile());
+        final File consoleLogFile = ensureFileWorkspaceReady(getConsoleLogFile().get());
+
+        Files.createFile(logFile.toPath());
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(consoleLogFile.toPath(), StandardCharsets.UTF_8))) {
+            writer.println("Restored decompiled sources from: " + cached);
+        }
+    }
+
+    /**
+     * @return The cache which holds the decompiled sources of earlier runs.
+     */
+    @ServiceReference(CommonProjectPlugin.DECOMPILED_SOURCES_SERVICE)
+    public abstract Property<CentralCacheService> getDecompiledSourcesCache();
+
+    /**
+     * Whether only the classes which changed since a previously decompiled version of the input are decompiled.
+     *
+     * @return True to decompile incrementally.
+     */
+    @Internal
+    public abstract Property<Boolean> getIncremental();
+
+    /**
+     * @return The directory of the index which caches the hashes of the libraries.
+     */
+    @Internal
+    public abstract DirectoryProperty getHashIndexDirectory();
+
+    /**
+     * The maximum heap size of the decompiler, in the form accepted by {@code -Xmx}.
+     * Does not influence the output of the step.
+     *
+     * @return The maximum heap size, or absent to use the default of the JVM.
+     */
+    @Internal
+    public abstract Property<String> getMaxMemory();
+
+    /**
+     * The amount of threads the decompiler uses.
+     * Does not influence the output of the step.
+     *
+     * @return The thread count, or absent or zero to let the decompiler decide.
+     */
+    @Internal
+    public abstract Property<Integer> getMaxThreads();
+}
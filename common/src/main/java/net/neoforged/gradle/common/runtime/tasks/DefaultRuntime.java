@@ -51,7 +51,7 @@ public abstract class DefaultRuntime extends JavaRuntimeTask implements Runtime
             final Directory unpackedMcpDirectory = getUnpackedMcpZipDirectory().get();
             return dataSources.entrySet().stream().collect(Collectors.toMap(
                     Map.Entry::getKey,
-                    entry -> getProject().provider(() -> unpackedMcpDirectory.file(entry.getValue()).getAsFile())
+                    entry -> getProviderFactory().provider(() -> unpackedMcpDirectory.file(entry.getValue()).getAsFile())
             ));
         }));
         
@@ -1,44 +1,69 @@
 package net.neoforged.gradle.common.runtime.tasks;
 
-import com.google.common.collect.Maps;
 import net.neoforged.gradle.common.CommonProjectPlugin;
+import net.neoforged.gradle.common.caching.AssetDownloadService;
 import net.neoforged.gradle.common.caching.CentralCacheService;
+import net.neoforged.gradle.common.caching.ContentAddressedStore;
+import net.neoforged.gradle.common.caching.VerifiedHashIndex;
+import net.neoforged.gradle.common.util.AssetIndex;
 import net.neoforged.gradle.common.util.FileCacheUtils;
+import net.neoforged.gradle.util.GradleInternalUtils;
 import net.neoforged.gradle.util.TransformerUtils;
 import net.neoforged.gradle.common.runtime.tasks.action.DownloadFileAction;
-import net.neoforged.gradle.common.util.SerializationUtils;
 import net.neoforged.gradle.common.util.VersionJson;
 import org.gradle.api.file.DirectoryProperty;
 import org.gradle.api.file.RegularFileProperty;
 import org.gradle.api.provider.Property;
-import org.gradle.api.provider.Provider;
 import org.gradle.api.services.ServiceReference;
 import org.gradle.api.tasks.*;
+import org.gradle.work.DisableCachingByDefault;
 import org.gradle.workers.WorkQueue;
 import org.gradle.workers.WorkerExecutor;
 
 import javax.inject.Inject;
-import java.io.File;
-import java.util.Map;
-
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+
+/**
+ * Downloads the asset index and its assets into the shared assets store in the Gradle user home.
+ * <p>
+ * The output of this task is a copy of the asset index in the output directory of the step, which holds on to the
+ * assets in the shared store, so that they are only evicted once the project is cleaned. The shared store itself is
+ * not an output, the task is therefore not cacheable, as restoring its output would not restore the assets.
+ */
 @SuppressWarnings({"UnstableApiUsage", "ResultOfMethodCallIgnored"})
-@CacheableTask
+@DisableCachingByDefault(because = "The assets are downloaded into the shared assets store, which a cached output can not restore.")
 public abstract class DownloadAssets extends DefaultRuntime {
 
     public DownloadAssets() {
-        getAssetsDirectory().convention(FileCacheUtils.getAssetsCacheDirectory(getProject()).flatMap(assetsDir -> assetsDir.dir(getVersionJson().map(VersionJson::getId))).map(TransformerUtils.ensureExists()));
-        getOutputDirectory().convention(getAssetsDirectory());
-        getAssetIndex().convention("asset-index");
+        getHashIndexDirectory().convention(FileCacheUtils.getCacheDirectory(getProject()));
+        getAssetsDirectory().convention(FileCacheUtils.getAssetsCacheDirectory(getProject()).map(TransformerUtils.ensureExists()));
+        getAssetIndex().convention(getVersionJson().map(json -> json.getAssetIndex().getId()).orElse("asset-index"));
         getAssetIndexFileName().convention(getAssetIndex().map(index -> index + ".json"));
-        getAssetIndexFile().convention(getRegularFileInOutputDirectory(getAssetIndexFileName().map(name -> "indexes/" + name)));
+        getAssetIndexFile().convention(getAssetsDirectory().flatMap(directory -> getAssetIndexFileName().map(name -> directory.file("indexes/" + name))));
+        getOutputFileName().convention(getAssetIndexFileName());
         getVersionJson().convention(getVersionJsonFile().map(TransformerUtils.guard(file -> VersionJson.get(file.getAsFile()))));
         getAssetRepository().convention("https://resources.download.minecraft.net/");
         getIsOffline().convention(getProject().getGradle().getStartParameter().isOffline());
+
+        //The run configurations read the asset index from the shared store, so it has to be downloaded again when it is gone.
+        getOutputs().upToDateWhen(task -> ((DownloadAssets) task).getAssetIndexFile().get().getAsFile().isFile());
     }
     
     @ServiceReference(CommonProjectPlugin.ASSETS_SERVICE)
     public abstract Property<CentralCacheService> getAssetsCache();
 
+    @ServiceReference(CommonProjectPlugin.ASSET_DOWNLOAD_SERVICE)
+    public abstract Property<AssetDownloadService> getAssetDownloader();
+
     @TaskAction
     public void run() {
         downloadAssetIndex();
@@ -56,32 +81,61 @@ public abstract class DownloadAssets extends DefaultRuntime {
             params.getSha1().set(assetIndexData.getSha1());
             params.getOutputFile().set(getAssetIndexFile());
             params.getIsOffline().set(getIsOffline());
+            params.getHashIndexDirectory().set(getHashIndexDirectory());
+            params.getCache().set(getAssetsCache());
         });
 
         executor.await();
     }
 
     private void downloadAssets() {
-        final AssetIndex assetIndex = SerializationUtils.fromJson(getAssetIndexFile().getAsFile().get(), AssetIndex.class);
-
-        final WorkQueue executor = getWorkerExecutor().noIsolation();
+        final AssetIndex assetIndex = AssetIndex.read(getAssetIndexFile().getAsFile().get());
+
+        final AssetDownloadService downloader = getAssetDownloader().get();
+        final CentralCacheService cache = getAssetsCache().get();
+        final ContentAddressedStore store = downloader.getStore(getAssetsDirectory().get().getAsFile(), VerifiedHashIndex.in(getHashIndexDirectory().get().getAsFile()));
+        final String repository = getAssetRepository().map(repo -> repo.endsWith("/") ? repo : repo + "/").get();
+        final boolean isOffline = getIsOffline().get();
+
+        final List<AssetIndex.Asset> assets = assetIndex.getObjects().values().stream().distinct().collect(Collectors.toList());
+
+        final GradleInternalUtils.ProgressLoggerWrapper progress = GradleInternalUtils.getProgressLogger(getLogger(), this, "Assets for: " + getAssetIndex().get());
+        progress.setSize(assets.size());
+        progress.started();
+
+        final CompletableFuture<?>[] downloads = assets.stream()
+                .map(asset -> downloader.fetch(store, cache, asset.getHash(), repository + asset.getPath(), isOffline)
+                        .whenComplete((path, throwable) -> {
+                            synchronized (progress) {
+                                progress.incrementProcessedFileCount();
+                            }
+                        }))
+                .toArray(CompletableFuture[]::new);
+
+        try {
+            CompletableFuture.allOf(downloads).join();
+        } catch (CompletionException e) {
+            throw new RuntimeException("Failed to download the assets for: " + getAssetIndex().get(), e.getCause());
+        } finally {
+            progress.completed();
+        }
 
-        assetIndex.getObjects().values().stream().distinct().forEach((asset) -> {
-            final Provider<File> assetFile = getFileInOutputDirectory(String.format("objects%s%s", File.separator, asset.getPath()));
-            final Provider<String> assetUrl = getAssetRepository()
-                    .map(repo -> repo.endsWith("/") ? repo : repo + "/")
-                    .map(TransformerUtils.guard(repository -> repository + asset.getPath()));
-
-            executor.submit(DownloadFileAction.class, params -> {
-                params.getIsOffline().set(getIsOffline());
-                params.getShouldValidateHash().set(true);
-                params.getOutputFile().fileProvider(assetFile);
-                params.getUrl().set(assetUrl);
-                params.getSha1().set(asset.getHash());
-            });
-        });
+        //The run configurations read the assets through the asset index, so they stay in the cache for as long as the
+        //copy of the asset index in the output of this task exists.
+        final Path assetIndexFile = getAssetIndexFile().get().getAsFile().toPath();
+        final Path output = ensureFileWorkspaceReady(getOutput()).toPath();
+        try {
+            Files.copy(assetIndexFile, output, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to copy the asset index to: " + output, e);
+        }
 
-        executor.await();
+        final List<Path> referenced = new ArrayList<>();
+        referenced.add(assetIndexFile);
+        for (CompletableFuture<?> download : downloads) {
+            referenced.add((Path) download.join());
+        }
+        cache.recordReferences(output, referenced);
     }
 
     @Inject
@@ -104,56 +158,18 @@ public abstract class DownloadAssets extends DefaultRuntime {
     @Input
     public abstract Property<String> getAssetRepository();
 
-    @OutputFile
+    /**
+     * @return The asset index in the shared assets store, which the run configurations read.
+     */
+    @Internal
     public abstract RegularFileProperty getAssetIndexFile();
 
     @Input
     public abstract Property<Boolean> getIsOffline();
     
-    @InputDirectory
-    @PathSensitive(PathSensitivity.NONE)
+    @Internal
     public abstract DirectoryProperty getAssetsDirectory();
-    
-    private static class AssetIndex {
-        private Map<String, Asset> objects = Maps.newHashMap();
-
-        public Map<String, Asset> getObjects() {
-            return objects;
-        }
-
-        public void setObjects(Map<String, Asset> objects) {
-            this.objects = objects;
-        }
-    }
-
-    private static class Asset {
-        private String hash;
-
-        public String getHash() {
-            return hash;
-        }
-
-        public void setHash(String hash) {
-            this.hash = hash;
-        }
 
-        public String getPath() {
-            return hash.substring(0, 2) + '/' + hash;
-        }
-
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (!(o instanceof Asset)) return false;
-
-            Asset asset = (Asset) o;
-
-            return getHash().equals(asset.getHash());
-        }
-
-        @Override
-        public int hashCode() {
-            return getHash().hashCode();
-        }
-    }
+    @Internal
+    public abstract DirectoryProperty getHashIndexDirectory();
 }
@@ -1,16 +1,33 @@
 package net.neoforged.gradle.common.runtime.tasks;
 
+import net.neoforged.gradle.common.runtime.tasks.action.ExecuteToolAction;
+import net.neoforged.gradle.common.runtime.tasks.action.ToolRunner;
+import net.neoforged.gradle.dsl.common.extensions.subsystems.Subsystems;
 import net.neoforged.gradle.util.TransformerUtils;
 import org.gradle.api.provider.ListProperty;
 import org.gradle.api.provider.Property;
 import org.gradle.api.provider.Provider;
 import org.gradle.api.tasks.CacheableTask;
 import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.TaskAction;
+import org.gradle.workers.WorkQueue;
+import org.gradle.workers.WorkerExecutor;
 
+import javax.inject.Inject;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 import java.util.jar.Attributes;
 import java.util.jar.JarFile;
+import java.util.stream.Collectors;
 
 @CacheableTask
 public abstract class Execute extends DefaultRuntime implements net.neoforged.gradle.dsl.common.tasks.Execute {
@@ -29,16 +46,92 @@ public abstract class Execute extends DefaultRuntime implements net.neoforged.gr
                 f -> new JarFile(f.getAsFile())
         )));
 
+        getRuntimeJvmArguments().convention(getJvmArguments());
         getRuntimeProgramArguments().convention(getProgramArguments());
         getMultiRuntimeArguments().convention(getMultiArguments().AsMap());
+
+        getUseWorkerProcess().convention(getProject().getExtensions().getByType(Subsystems.class).getTools().getUseWorkerProcesses());
     }
 
     @TaskAction
     @Override
     public void execute() throws Throwable {
+        if (getUseWorkerProcess().getOrElse(false)) {
+            final int javaVersion = getJavaLauncher().get().getMetadata().getLanguageVersion().asInt();
+            if (ToolRunner.canGuardExit(javaVersion)) {
+                executeInWorkerProcess(javaVersion);
+                return;
+            }
+
+            getLogger().info("Forking a new JVM for {}, as tools can not run in a worker process on java {}", getName(), javaVersion);
+        }
+
         net.neoforged.gradle.dsl.common.tasks.Execute.super.execute();
     }
 
+    /**
+     * Runs the tool in a Gradle worker process instead of forking a new JVM.
+     * Gradle reuses the worker process for all steps which run the same tool jar with the same executable and JVM
+     * arguments. The working directory of a worker process can not be changed, so the relative paths in the arguments
+     * are resolved against the output directory of this step, which is the working directory of a forked JVM.
+     */
+    private void executeInWorkerProcess(int javaVersion) throws IOException {
+        final File workingDirectory = getOutputDirectory().get().getAsFile();
+        final List<String> jvmArgs = new ArrayList<>(applyVariableSubstitutions(getRuntimeJvmArguments()).get());
+        final List<String> programArgs = ToolRunner.resolveArguments(workingDirectory, applyVariableSubstitutions(getRuntimeProgramArguments()).get());
+        if (javaVersion >= 18) {
+            //The tool runner installs a security manager, which java 18 and later only allow with this flag.
+            //It is part of the fork options, so Gradle never reuses a worker process which was started without it.
+            jvmArgs.add(ToolRunner.ALLOW_SECURITY_MANAGER);
+        }
+
+        final File outputFile = ensureFileWorkspaceReady(getOutput());
+        final File logFile = ensureFileWorkspaceReady(getLogFile());
+        final File consoleLogFile = ensureFileWorkspaceReady(getConsoleLogFile().get());
+
+        final String mainClass = getMainClass().get();
+        final String executable = getExecutablePath().get();
+        final File executingJar = getExecutingJar().get().getAsFile();
+
+        try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(consoleLogFile), StandardCharsets.UTF_8))) {
+            final Function<String, CharSequence> quote = s -> '"' + s + '"';
+            writer.println("JVM Args:          " + jvmArgs.stream().map(quote).collect(Collectors.joining(", ")));
+            writer.println("Run Args:          " + programArgs.stream().map(quote).collect(Collectors.joining(", ")));
+            writer.println("JVM:               " + executable);
+            writer.println("Classpath:         " + executingJar.getAbsolutePath());
+            writer.println("Working Dir:       " + workingDirectory.getAbsolutePath() + " (worker process, relative arguments resolved)");
+            writer.println("Main Class:        " + mainClass);
+            writer.println("Program log file:  " + logFile.getAbsolutePath());
+            writer.println("Output file:       " + outputFile.getAbsolutePath());
+        }
+
+        final WorkQueue queue = getWorkerExecutor().processIsolation(spec -> {
+            spec.getClasspath().from(executingJar);
+            spec.forkOptions(options -> {
+                options.setExecutable(executable);
+                options.setJvmArgs(jvmArgs);
+            });
+        });
+        queue.submit(ExecuteToolAction.class, params -> {
+            params.getMainClass().set(mainClass);
+            params.getArguments().set(programArgs);
+            params.getConsoleLogFile().set(consoleLogFile);
+        });
+        queue.await();
+    }
+
+    /**
+     * Whether the tool is run in a pooled Gradle worker process instead of a freshly forked JVM.
+     * Does not influence the output of the step.
+     *
+     * @return True to use a worker process.
+     */
+    @Internal
+    public abstract Property<Boolean> getUseWorkerProcess();
+
+    @Inject
+    protected abstract WorkerExecutor getWorkerExecutor();
+
     @Input
     public abstract Property<String> getConsoleLogFileName();
 
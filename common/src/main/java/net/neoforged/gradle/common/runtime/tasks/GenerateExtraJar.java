@@ -3,8 +3,8 @@ package net.neoforged.gradle.common.runtime.tasks;
 import net.neoforged.gradle.dsl.common.tasks.NeoGradleBase;
 import net.neoforged.gradle.dsl.common.tasks.WithOutput;
 import net.neoforged.gradle.dsl.common.tasks.WithWorkspace;
-import net.neoforged.gradle.util.ZipBuildingFileTreeVisitor;
-import org.gradle.api.file.FileTree;
+import net.neoforged.gradle.util.RawZipFile;
+import net.neoforged.gradle.util.RawZipOutputStream;
 import org.gradle.api.file.RegularFileProperty;
 import org.gradle.api.tasks.CacheableTask;
 import org.gradle.api.tasks.InputFile;
@@ -14,7 +14,6 @@ import org.gradle.api.tasks.TaskAction;
 
 import java.io.File;
 import java.io.FileOutputStream;
-import java.util.zip.ZipOutputStream;
 
 @CacheableTask
 public abstract class GenerateExtraJar extends NeoGradleBase implements WithOutput, WithWorkspace {
@@ -29,14 +28,14 @@ public abstract class GenerateExtraJar extends NeoGradleBase implements WithOutp
         final File originalJar = getOriginalJar().get().getAsFile();
         final File outputJar = ensureFileWorkspaceReady(getOutput());
 
-
-        final FileTree inputTree = getArchiveOperations().zipTree(originalJar);
-        final FileTree filteredInput = inputTree.matching(filter -> {
-            filter.exclude("**/*.class");
-        });
-
-        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(outputJar))) {
-            filteredInput.visit(new ZipBuildingFileTreeVisitor(zos));
+        // Copy all resources of the original jar, without recompressing them
+        try (RawZipFile input = RawZipFile.open(originalJar);
+             RawZipOutputStream zos = new RawZipOutputStream(new FileOutputStream(outputJar))) {
+            for (RawZipFile.Entry entry : input.getEntries()) {
+                if (!entry.getName().endsWith(".class")) {
+                    zos.copyEntry(input, entry);
+                }
+            }
         }
     }
 
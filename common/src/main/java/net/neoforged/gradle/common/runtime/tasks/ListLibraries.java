@@ -1,13 +1,12 @@
 package net.neoforged.gradle.common.runtime.tasks;
 
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
 import net.neoforged.gradle.common.CommonProjectPlugin;
 import net.neoforged.gradle.common.caching.CentralCacheService;
 import net.neoforged.gradle.common.runtime.tasks.action.DownloadFileAction;
+import net.neoforged.gradle.common.runtime.tasks.action.ExtractBundledLibraryAction;
 import net.neoforged.gradle.common.util.FileCacheUtils;
 import net.neoforged.gradle.common.util.SerializationUtils;
-import net.neoforged.gradle.util.HashFunction;
 import net.neoforged.gradle.util.TransformerUtils;
 import org.gradle.api.file.DirectoryProperty;
 import org.gradle.api.file.RegularFileProperty;
@@ -18,6 +17,7 @@ import org.gradle.api.tasks.*;
 import org.gradle.workers.WorkQueue;
 import org.gradle.workers.WorkerExecutor;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
@@ -28,7 +28,6 @@ import java.nio.file.Path;
 import java.util.*;
 import java.util.jar.Attributes;
 import java.util.jar.Manifest;
-import java.util.stream.Collectors;
 
 @SuppressWarnings("UnstableApiUsage")
 @CacheableTask
@@ -40,6 +39,7 @@ public abstract class ListLibraries extends DefaultRuntime {
         super();
         
         getLibrariesDirectory().convention(FileCacheUtils.getLibrariesCacheDirectory(getProject()).map(TransformerUtils.ensureExists()));
+        getHashIndexDirectory().convention(FileCacheUtils.getCacheDirectory(getProject()));
         getServerBundleFile().fileProvider(getRuntimeArguments().map(arguments -> {
             if (!arguments.containsKey("bundle"))
                 return null;
@@ -70,6 +70,13 @@ public abstract class ListLibraries extends DefaultRuntime {
             }
             writer.flush();
             writer.close();
+
+            //The list is what the IDE and the run configurations are built from, so the libraries have to stay in the cache.
+            final List<Path> referenced = new ArrayList<>();
+            for (File file : libraries) {
+                referenced.add(file.toPath());
+            }
+            getLibrariesCache().get().recordReferences(output.toPath(), referenced);
         }
     }
     
@@ -95,29 +102,77 @@ public abstract class ListLibraries extends DefaultRuntime {
     }
     
     private Set<PathAndUrl> listDownloadJsonLibraries() {
-        JsonObject json = SerializationUtils.fromJson(getDownloadedVersionJsonFile().getAsFile().get(), JsonObject.class);
+        // Gather all the libraries, only the artifacts of the libraries are read from the version json
+        return SerializationUtils.read(getDownloadedVersionJsonFile().getAsFile().get(), reader -> {
+            final Set<PathAndUrl> artifacts = new HashSet<>();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!reader.nextName().equals("libraries")) {
+                    reader.skipValue();
+                    continue;
+                }
 
-        // Gather all the libraries
-        Set<PathAndUrl> artifacts = new HashSet<>();
-        for (JsonElement libElement : json.getAsJsonArray("libraries")) {
-            JsonObject library = libElement.getAsJsonObject();
-            
-            if (library.has("downloads")) {
-                JsonObject downloads = library.get("downloads").getAsJsonObject();
-                if (downloads.has("artifact")) {
-                    final JsonObject artifact = downloads.getAsJsonObject("artifact");
-                    artifacts.add(
-                            new PathAndUrl(
-                                    artifact.get("path").getAsString(),
-                                    artifact.get("url").getAsString(),
-                                    artifact.get("sha1").getAsString()
-                            )
-                    );
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    final PathAndUrl artifact = readLibraryArtifact(reader);
+                    if (artifact != null) {
+                        artifacts.add(artifact);
+                    }
                 }
+                reader.endArray();
             }
+            reader.endObject();
+            return artifacts;
+        });
+    }
+
+    @Nullable
+    private static PathAndUrl readLibraryArtifact(JsonReader reader) throws IOException {
+        PathAndUrl artifact = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!reader.nextName().equals("downloads")) {
+                reader.skipValue();
+                continue;
+            }
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!reader.nextName().equals("artifact")) {
+                    reader.skipValue();
+                    continue;
+                }
+
+                String path = null;
+                String url = null;
+                String hash = null;
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    switch (reader.nextName()) {
+                        case "path":
+                            path = reader.nextString();
+                            break;
+                        case "url":
+                            url = reader.nextString();
+                            break;
+                        case "sha1":
+                            hash = reader.nextString();
+                            break;
+                        default:
+                            reader.skipValue();
+                    }
+                }
+                reader.endObject();
+
+                if (path == null || url == null || hash == null)
+                    throw new IOException("Library artifact without a path, url or sha1 in the version json");
+
+                artifact = new PathAndUrl(path, url, hash);
+            }
+            reader.endObject();
         }
-        
-        return artifacts;
+        reader.endObject();
+        return artifact;
     }
     
     private Set<File> unpackAndListBundleLibraries(FileSystem bundleFs) throws IOException {
@@ -125,19 +180,26 @@ public abstract class ListLibraries extends DefaultRuntime {
         
         final List<FileList.Entry> libraryPaths = listBundleLibraries(bundleFs);
         
-        return libraryPaths.stream()
-                       .map(entry -> {
-                           final String path = String.format("META-INF/libraries/%s", entry.path);
-                           final File output = new File(outputDir, path);
-                           try {
-                               if (!output.exists() || !HashFunction.SHA1.hash(output).equalsIgnoreCase(entry.hash)) {
-                                   Files.copy(bundleFs.getPath(path), output.toPath());
-                               }
-                           } catch (IOException e) {
-                               throw new UncheckedIOException(e);
-                           }
-                           return output;
-                       }).collect(Collectors.toSet());
+        final Set<File> result = new HashSet<>();
+
+        // Every library is extracted by its own work item, so that a cold setup extracts them on all workers
+        final WorkQueue executor = getWorkerExecutor().noIsolation();
+        for (FileList.Entry entry : libraryPaths) {
+            final String path = String.format("META-INF/libraries/%s", entry.path);
+            final File output = new File(outputDir, path);
+            executor.submit(ExtractBundledLibraryAction.class, params -> {
+                params.getBundleFile().set(getServerBundleFile());
+                params.getEntryPath().set(path);
+                params.getSha1().set(entry.hash);
+                params.getOutputFile().set(output);
+                params.getHashIndexDirectory().set(getHashIndexDirectory());
+                params.getCache().set(getLibrariesCache());
+            });
+            result.add(output);
+        }
+        executor.await();
+        
+        return result;
     }
     
     private Set<File> downloadAndListJsonLibraries() throws IOException {
@@ -155,6 +217,8 @@ public abstract class ListLibraries extends DefaultRuntime {
                 params.getSha1().set(libraryCoordinate.hash);
                 params.getOutputFile().set(outputFile);
                 params.getIsOffline().set(getProject().getGradle().getStartParameter().isOffline());
+                params.getHashIndexDirectory().set(getHashIndexDirectory());
+                params.getCache().set(getLibrariesCache());
             });
             result.add(outputFile);
         }
@@ -180,6 +244,9 @@ public abstract class ListLibraries extends DefaultRuntime {
     @PathSensitive(PathSensitivity.NONE)
     public abstract DirectoryProperty getLibrariesDirectory();
     
+    @Internal
+    public abstract DirectoryProperty getHashIndexDirectory();
+    
     private static class FileList {
         
         private final List<FileList.Entry> entries;
@@ -1,5 +1,7 @@
 package net.neoforged.gradle.common.runtime.tasks.action;
 
+import net.neoforged.gradle.common.caching.CentralCacheService;
+import net.neoforged.gradle.common.caching.VerifiedHashIndex;
 import net.neoforged.gradle.util.FileUtils;
 import net.neoforged.gradle.util.GradleInternalUtils;
 import net.neoforged.gradle.util.HashFunction;
@@ -8,6 +10,7 @@ import org.apache.ivy.core.settings.TimeoutConstraint;
 import org.apache.ivy.util.CopyProgressEvent;
 import org.apache.ivy.util.CopyProgressListener;
 import org.apache.ivy.util.FileUtil;
+import org.gradle.api.file.DirectoryProperty;
 import org.gradle.api.file.RegularFileProperty;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
@@ -18,6 +21,7 @@ import org.gradle.workers.WorkParameters;
 
 import javax.inject.Inject;
 import java.io.File;
+import java.io.IOException;
 import java.net.URL;
 
 public abstract class DownloadFileAction implements WorkAction<DownloadFileAction.Params> {
@@ -34,76 +38,112 @@ public abstract class DownloadFileAction implements WorkAction<DownloadFileActio
             final Params params = getParameters();
             final File output = params.getOutputFile().get().getAsFile();
 
-            if (output.exists()) {
-                if (params.getShouldValidateHash().get()) {
-                    final String hash = HashFunction.SHA1.hash(output);
-                    if (hash.equals(params.getSha1().get())) {
-                        return;
-                    }
-                }
+            if (!params.getCache().isPresent()) {
+                download(params, output);
+                return;
             }
 
-            final GradleInternalUtils.ProgressLoggerWrapper progress = GradleInternalUtils.getProgressLogger(LOGGER, getBuildServiceRegistry(), "Downloading file: " + params.getUrl().get());
-            progress.setDestFileName(params.getOutputFile().getAsFile().get().getName());
-
-            if (params.getIsOffline().get()) {
-                if (!output.exists()) {
-                    throw new IllegalStateException("Cannot download asset " + params.getUrl().get() + " as Gradle is running in offline mode and the file does not exist");
+            final CentralCacheService cache = params.getCache().get();
+            cache.withLock(output.toPath(), () -> {
+                final long start = System.nanoTime();
+                if (download(params, output)) {
+                    cache.recordMiss(output.toPath(), output.length(), System.nanoTime() - start);
+                } else {
+                    cache.recordHit(output.toPath());
                 }
+                return null;
+            });
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
 
-                final int size = FileUtils.getFileSize(output);
-                progress.setSize(size);
-                progress.started();
-
-                if (params.getShouldValidateHash().get()) {
-                    final String hash = HashFunction.SHA1.hash(output);
-                    if (!hash.equals(params.getSha1().get())) {
-                        throw new IllegalStateException(String.format("Cannot validate asset %s as Gradle is running in offline mode and the file does not match the expected hash. Expected: %s Actual: %s", params.getUrl().get(), params.getSha1().get(), hash));
-                    }
+    /**
+     * Downloads the file, unless it already exists and matches the expected hash.
+     *
+     * @return True if the file was downloaded.
+     */
+    private boolean download(Params params, File output) throws IOException {
+        if (output.exists()) {
+            if (params.getShouldValidateHash().get()) {
+                final String hash = hash(output);
+                if (hash.equals(params.getSha1().get())) {
+                    return false;
                 }
-
-                progress.incrementDownloadProgress(size);
-                progress.completed();
-                return;
             }
+        }
 
-            final URL url = new URL(params.getUrl().get());
+        final GradleInternalUtils.ProgressLoggerWrapper progress = GradleInternalUtils.getProgressLogger(LOGGER, getBuildServiceRegistry(), "Downloading file: " + params.getUrl().get());
+        progress.setDestFileName(params.getOutputFile().getAsFile().get().getName());
 
-            // Try downloading multiple times with a small delay in case of blocked connections
-            for (int attempt = 0; attempt < MAX_ATTEMPTS; ++attempt) {
-                try {
-                    progress.setSize(UrlUtils.getFileSize(url));
-
-                    FileUtil.copy(
-                            url,
-                            output,
-                            new Monitor(progress),
-                            Timeout.NONE
-                    );
-
-                    break; // Success
-                } catch (Exception e) {
-                    if (attempt == MAX_ATTEMPTS - 1) {
-                        throw e;
-                    }
-
-                    try {
-                        Thread.sleep(ATTEMPT_DELAY);
-                    } catch (InterruptedException interruptedException) {
-                        throw new RuntimeException(interruptedException);
-                    }
-                }
+        if (params.getIsOffline().get()) {
+            if (!output.exists()) {
+                throw new IllegalStateException("Cannot download asset " + params.getUrl().get() + " as Gradle is running in offline mode and the file does not exist");
             }
 
+            final int size = FileUtils.getFileSize(output);
+            progress.setSize(size);
+            progress.started();
+
             if (params.getShouldValidateHash().get()) {
-                final String hash = HashFunction.SHA1.hash(output);
+                final String hash = hash(output);
                 if (!hash.equals(params.getSha1().get())) {
                     throw new IllegalStateException(String.format("Cannot validate asset %s as Gradle is running in offline mode and the file does not match the expected hash. Expected: %s Actual: %s", params.getUrl().get(), params.getSha1().get(), hash));
                 }
             }
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+
+            progress.incrementDownloadProgress(size);
+            progress.completed();
+            return false;
         }
+
+        final URL url = new URL(params.getUrl().get());
+
+        // Try downloading multiple times with a small delay in case of blocked connections
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; ++attempt) {
+            try {
+                progress.setSize(UrlUtils.getFileSize(url));
+
+                FileUtil.copy(
+                        url,
+                        output,
+                        new Monitor(progress),
+                        Timeout.NONE
+                );
+
+                break; // Success
+            } catch (Exception e) {
+                if (attempt == MAX_ATTEMPTS - 1) {
+                    throw e;
+                }
+
+                try {
+                    Thread.sleep(ATTEMPT_DELAY);
+                } catch (InterruptedException interruptedException) {
+                    throw new RuntimeException(interruptedException);
+                }
+            }
+        }
+
+        if (params.getShouldValidateHash().get()) {
+            final String hash = hash(output);
+            if (!hash.equals(params.getSha1().get())) {
+                throw new IllegalStateException(String.format("Cannot validate asset %s as Gradle is running in offline mode and the file does not match the expected hash. Expected: %s Actual: %s", params.getUrl().get(), params.getSha1().get(), hash));
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Hashes the given file, through the verified hash index if one is configured.
+     */
+    private String hash(File file) throws IOException {
+        if (getParameters().getHashIndexDirectory().isPresent()) {
+            return VerifiedHashIndex.in(getParameters().getHashIndexDirectory().get().getAsFile()).hash(file);
+        }
+
+        return HashFunction.SHA1.hash(file);
     }
 
     private static final class Monitor implements CopyProgressListener {
@@ -152,5 +192,7 @@ public abstract class DownloadFileAction implements WorkAction<DownloadFileActio
         Property<Boolean> getShouldValidateHash();
         RegularFileProperty getOutputFile();
         Property<Boolean> getIsOffline();
+        DirectoryProperty getHashIndexDirectory();
+        Property<CentralCacheService> getCache();
     }
 }
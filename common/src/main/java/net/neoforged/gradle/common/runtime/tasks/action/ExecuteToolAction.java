@@ -0,0 +1,43 @@
+package net.neoforged.gradle.common.runtime.tasks.action;
+
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Runs the main class of a tool inside a Gradle worker process, whose classpath contains the tool jar.
+ * <p>
+ * Worker processes are reused between actions, so the tool is run through the {@link ToolRunner}, which keeps the
+ * output, the exit code and a call to {@link System#exit(int)} of the tool confined to this action.
+ */
+public abstract class ExecuteToolAction implements WorkAction<ExecuteToolAction.Params> {
+
+    @Override
+    public void execute() {
+        final Params params = getParameters();
+        final String mainClass = params.getMainClass().get();
+
+        final int exit;
+        try (OutputStream log = new BufferedOutputStream(new FileOutputStream(params.getConsoleLogFile().get().getAsFile(), true))) {
+            exit = ToolRunner.run(getClass().getClassLoader(), mainClass, params.getArguments().get().toArray(new String[0]), log);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write the console log of: " + mainClass, e);
+        }
+
+        if (exit != 0)
+            throw new RuntimeException(String.format("%s finished with non-zero exit value %d", mainClass, exit));
+    }
+
+    public interface Params extends WorkParameters {
+        Property<String> getMainClass();
+        ListProperty<String> getArguments();
+        RegularFileProperty getConsoleLogFile();
+    }
+}
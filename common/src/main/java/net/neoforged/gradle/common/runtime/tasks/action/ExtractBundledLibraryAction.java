@@ -0,0 +1,100 @@
+package net.neoforged.gradle.common.runtime.tasks.action;
+
+import net.neoforged.gradle.common.caching.CentralCacheService;
+import net.neoforged.gradle.common.caching.VerifiedHashIndex;
+import net.neoforged.gradle.util.FileUtils;
+import net.neoforged.gradle.util.HashFunction;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Extracts a single library out of a bundled server jar.
+ * <p>
+ * The library is only extracted if the existing file does not match the hash listed in the bundle, which is checked
+ * through the verified hash index. A stale file is replaced atomically, after the extracted content has been verified,
+ * so that a failed or concurrent extraction never leaves a partial library behind.
+ */
+public abstract class ExtractBundledLibraryAction implements WorkAction<ExtractBundledLibraryAction.Params> {
+
+    @Override
+    public void execute() {
+        try {
+            final Params params = getParameters();
+            final File output = params.getOutputFile().get().getAsFile();
+            final CentralCacheService cache = params.getCache().get();
+            final VerifiedHashIndex hashIndex = VerifiedHashIndex.in(params.getHashIndexDirectory().get().getAsFile());
+
+            cache.withLock(output.toPath(), () -> {
+                if (hashIndex.matches(output, params.getSha1().get())) {
+                    cache.recordHit(output.toPath());
+                    return null;
+                }
+
+                final long start = System.nanoTime();
+                extract(params, output.toPath(), hashIndex);
+                cache.recordMiss(output.toPath(), output.length(), System.nanoTime() - start);
+                return null;
+            });
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void extract(Params params, Path output, VerifiedHashIndex hashIndex) throws IOException {
+        final File bundle = params.getBundleFile().get().getAsFile();
+        final String entryName = params.getEntryPath().get();
+
+        Files.createDirectories(output.getParent());
+        final Path temporary = FileUtils.temporaryPath(output.getParent(), output.getFileName().toString());
+        try {
+            final MessageDigest digest = HashFunction.SHA1.get();
+            try (ZipFile zip = new ZipFile(bundle)) {
+                final ZipEntry entry = zip.getEntry(entryName);
+                if (entry == null)
+                    throw new IllegalStateException(String.format("The bundle %s does not contain the library %s", bundle, entryName));
+
+                try (InputStream input = new DigestInputStream(zip.getInputStream(entry), digest);
+                     OutputStream out = Files.newOutputStream(temporary)) {
+                    final byte[] buffer = new byte[64 * 1024];
+                    int read;
+                    while ((read = input.read(buffer)) != -1) {
+                        out.write(buffer, 0, read);
+                    }
+                }
+            }
+
+            final String hash = HashFunction.toHex(digest.digest());
+            if (!hash.equalsIgnoreCase(params.getSha1().get()))
+                throw new IllegalStateException(String.format("The library %s in the bundle %s does not match the expected hash. Expected: %s Actual: %s", entryName, bundle, params.getSha1().get(), hash));
+
+            hashIndex.invalidate(output);
+            FileUtils.atomicMove(temporary, output);
+            hashIndex.record(output, hash);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    public interface Params extends WorkParameters {
+        RegularFileProperty getBundleFile();
+        Property<String> getEntryPath();
+        Property<String> getSha1();
+        RegularFileProperty getOutputFile();
+        DirectoryProperty getHashIndexDirectory();
+        Property<CentralCacheService> getCache();
+    }
+}
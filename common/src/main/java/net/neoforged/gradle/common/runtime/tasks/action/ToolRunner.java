@@ -0,0 +1,295 @@
+package net.neoforged.gradle.common.runtime.tasks.action;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.security.Permission;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs the main method of a tool inside a JVM which is shared with other runs, like a pooled Gradle worker process.
+ * <p>
+ * A shared JVM differs from a freshly forked one in three ways, which are handled here:
+ * <ul>
+ *     <li>The standard output and error streams are replaced once by streams which write into the console log of the
+ *     run the writing thread belongs to, so that runs in parallel threads do not write into each others logs.</li>
+ *     <li>A call to {@link System#exit(int)} from a thread of a run does not stop the JVM, but ends the run with the
+ *     given exit code. This needs a security manager, see {@link #canGuardExit(int)}.</li>
+ *     <li>The working directory can not be changed, so relative paths in the arguments are resolved against the
+ *     working directory the tool would have been started in, see {@link #resolveArguments(File, List)}.</li>
+ * </ul>
+ * Threads started by a run belong to it, even after the run finished.
+ */
+public final class ToolRunner {
+
+    /**
+     * The JVM argument which allows installing the security manager on java 18 to 23.
+     */
+    public static final String ALLOW_SECURITY_MANAGER = "-Djava.security.manager=allow";
+
+    private static final InheritableThreadLocal<Run> CURRENT = new InheritableThreadLocal<>();
+    private static boolean installed = false;
+
+    private ToolRunner() {
+        throw new IllegalStateException("Can not instantiate an instance of: ToolRunner. This is a utility class");
+    }
+
+    /**
+     * Checks whether tools can be run on the given java version without a call to {@link System#exit(int)} stopping
+     * the JVM. From java 18 on the JVM needs to be started with {@link #ALLOW_SECURITY_MANAGER}, from java 24 on it is
+     * not possible anymore.
+     *
+     * @param javaVersion The major version of the JVM the tool runs in
+     * @return True if {@link #run(ClassLoader, String, String[], OutputStream)} can guard against the tool exiting
+     */
+    public static boolean canGuardExit(int javaVersion) {
+        return javaVersion < 24;
+    }
+
+    /**
+     * Runs the main method of the given tool.
+     *
+     * @param classLoader The class loader which contains the tool
+     * @param mainClass The main class of the tool
+     * @param arguments The program arguments
+     * @param log The stream the standard output and error of the tool are written to
+     * @return The exit code the tool passed to {@link System#exit(int)}, or 0 if its main method returned normally
+     * @throws RuntimeException If the main method threw an exception
+     */
+    public static int run(ClassLoader classLoader, String mainClass, String[] arguments, OutputStream log) {
+        install();
+
+        final Method main;
+        try {
+            main = Class.forName(mainClass, true, classLoader).getMethod("main", String[].class);
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            throw new IllegalStateException("Could not find the main method of: " + mainClass, e);
+        }
+
+        if (!Modifier.isStatic(main.getModifiers()))
+            throw new IllegalStateException("The main method of " + mainClass + " is not static");
+
+        final Run run = new Run(log);
+        final Run previous = CURRENT.get();
+        final Thread thread = Thread.currentThread();
+        final ClassLoader originalContextClassLoader = thread.getContextClassLoader();
+        CURRENT.set(run);
+        thread.setContextClassLoader(classLoader);
+        try {
+            main.invoke(null, (Object) arguments);
+            return run.exitCode;
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Could not access the main method of: " + mainClass, e);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof ExitException)
+                return ((ExitException) e.getCause()).status;
+            //A thread of the tool exited, and the main method failed as a consequence.
+            if (run.exitCode != 0)
+                return run.exitCode;
+
+            throw new RuntimeException("Failed to execute: " + mainClass, e.getCause());
+        } finally {
+            synchronized (run) {
+                run.finished = true;
+                try {
+                    log.flush();
+                } catch (IOException ignored) {
+                    //The log is closed by the caller, which reports the failure.
+                }
+            }
+            thread.setContextClassLoader(originalContextClassLoader);
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * Resolves the relative paths in the given arguments against the given working directory, so that a tool which
+     * runs in a shared JVM finds the same files as when it is started in the working directory.
+     * <p>
+     * An argument is a relative path if it is not an option, is not absolute and either names an existing file in the
+     * working directory, or contains a path separator and names a file in an existing directory of the working
+     * directory, like an output which is yet to be written. Other values which merely contain a separator, like class
+     * names or patterns, are left as they are. The value of an option in the form {@code -name=value} is resolved the
+     * same way.
+     *
+     * @param workingDirectory The working directory the tool would run in
+     * @param arguments The arguments
+     * @return The arguments with resolved paths
+     */
+    public static List<String> resolveArguments(File workingDirectory, List<String> arguments) {
+        final List<String> resolved = new ArrayList<>(arguments.size());
+        for (String argument : arguments) {
+            String prefix = "";
+            String value = argument;
+            if (argument.startsWith("-")) {
+                final int separator = argument.indexOf('=');
+                if (separator < 0) {
+                    resolved.add(argument);
+                    continue;
+                }
+
+                prefix = argument.substring(0, separator + 1);
+                value = argument.substring(separator + 1);
+            }
+
+            resolved.add(isRelativePath(workingDirectory, value) ? prefix + new File(workingDirectory, value).getAbsolutePath() : argument);
+        }
+        return resolved;
+    }
+
+    private static boolean isRelativePath(File workingDirectory, String value) {
+        if (value.isEmpty() || value.startsWith("-") || value.contains("://") || new File(value).isAbsolute())
+            return false;
+
+        final File file = new File(workingDirectory, value);
+        if (file.exists())
+            return true;
+
+        return (value.indexOf('/') >= 0 || value.indexOf(File.separatorChar) >= 0) && file.getParentFile().isDirectory();
+    }
+
+    /**
+     * Replaces the standard streams and installs the exit guard, once per JVM.
+     *
+     * @throws IllegalStateException If the JVM does not allow installing a security manager, because it was not
+     * started with {@link #ALLOW_SECURITY_MANAGER}
+     */
+    private static synchronized void install() {
+        if (installed)
+            return;
+
+        try {
+            System.setSecurityManager(new ExitGuard(System.getSecurityManager()));
+        } catch (UnsupportedOperationException e) {
+            throw new IllegalStateException("Tools can only be run in a JVM which allows a security manager, start it with: " + ALLOW_SECURITY_MANAGER, e);
+        }
+        System.setOut(new PrintStream(new RoutingOutputStream(System.out), true));
+        System.setErr(new PrintStream(new RoutingOutputStream(System.err), true));
+        installed = true;
+    }
+
+    /**
+     * The state of a single run, which is shared by all threads of the run.
+     */
+    private static final class Run {
+        private final OutputStream log;
+        private volatile int exitCode = 0;
+        private boolean finished = false;
+
+        private Run(OutputStream log) {
+            this.log = log;
+        }
+    }
+
+    /**
+     * Thrown in place of stopping the JVM, ends the thread which called {@link System#exit(int)}.
+     */
+    private static final class ExitException extends SecurityException {
+        private final int status;
+
+        private ExitException(int status) {
+            super("The tool called System.exit(" + status + "), which ends the tool instead of the shared JVM");
+            this.status = status;
+        }
+    }
+
+    /**
+     * A security manager which only prevents threads of a run from stopping the JVM, everything else is delegated to
+     * the security manager which was installed before, if any.
+     */
+    private static final class ExitGuard extends SecurityManager {
+        private final SecurityManager delegate;
+
+        private ExitGuard(SecurityManager delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void checkExit(int status) {
+            final Run run = CURRENT.get();
+            if (run != null) {
+                if (run.exitCode == 0) {
+                    run.exitCode = status;
+                }
+                throw new ExitException(status);
+            }
+
+            if (delegate != null) {
+                delegate.checkExit(status);
+            }
+        }
+
+        @Override
+        public void checkPermission(Permission permission) {
+            if (delegate != null) {
+                delegate.checkPermission(permission);
+            }
+        }
+
+        @Override
+        public void checkPermission(Permission permission, Object context) {
+            if (delegate != null) {
+                delegate.checkPermission(permission, context);
+            }
+        }
+    }
+
+    /**
+     * An output stream which writes to the log of the run of the current thread, or the original stream when the
+     * thread does not belong to a running run.
+     */
+    private static final class RoutingOutputStream extends OutputStream {
+        private final OutputStream fallback;
+
+        private RoutingOutputStream(OutputStream fallback) {
+            this.fallback = fallback;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            final Run run = CURRENT.get();
+            if (run != null) {
+                synchronized (run) {
+                    if (!run.finished) {
+                        run.log.write(b);
+                        return;
+                    }
+                }
+            }
+            fallback.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            final Run run = CURRENT.get();
+            if (run != null) {
+                synchronized (run) {
+                    if (!run.finished) {
+                        run.log.write(b, off, len);
+                        return;
+                    }
+                }
+            }
+            fallback.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            final Run run = CURRENT.get();
+            if (run != null) {
+                synchronized (run) {
+                    if (!run.finished) {
+                        run.log.flush();
+                        return;
+                    }
+                }
+            }
+            fallback.flush();
+        }
+    }
+}
@@ -1,8 +1,7 @@
 package net.neoforged.gradle.common.tasks;
 
-import com.google.gson.JsonObject;
 import net.neoforged.gradle.common.util.FileDownloadingUtils;
-import net.neoforged.gradle.common.util.SerializationUtils;
+import net.neoforged.gradle.common.util.VersionDownloads;
 import net.neoforged.gradle.dsl.common.tasks.NeoGradleBase;
 import net.neoforged.gradle.dsl.common.tasks.WithOutput;
 import net.neoforged.gradle.dsl.common.tasks.WithWorkspace;
@@ -58,14 +57,14 @@ public abstract class FileCacheProviding extends NeoGradleBase implements WithOu
     }
     
     protected void doDownloadVersionDownloadToCache(final String artifact, final String potentialError, File versionManifest) {
-        JsonObject json = SerializationUtils.fromJson(versionManifest, JsonObject.class);
+        final VersionDownloads downloads = VersionDownloads.read(versionManifest);
 
-        final JsonObject artifactInfo = json.getAsJsonObject("downloads").getAsJsonObject(artifact);
-        final String url = artifactInfo.get("url").getAsString();
-        final String hash = artifactInfo.get("sha1").getAsString();
-        final String version = json.getAsJsonObject().get("id").getAsString();
+        final VersionDownloads.Download download = downloads.getDownload(artifact);
+        if (download == null)
+            throw new IllegalStateException(potentialError + ": the version json does not contain the download " + artifact);
 
-        final FileDownloadingUtils.DownloadInfo info = new FileDownloadingUtils.DownloadInfo(url, hash, "jar", version, artifact);
+        final String hash = download.getSha1();
+        final FileDownloadingUtils.DownloadInfo info = new FileDownloadingUtils.DownloadInfo(download.getUrl(), hash, "jar", downloads.getId(), artifact);
 
         final File output = getOutput().get().getAsFile();
         try {
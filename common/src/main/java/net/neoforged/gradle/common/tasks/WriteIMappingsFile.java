@@ -1,11 +1,14 @@
 package net.neoforged.gradle.common.tasks;
 
+import net.neoforged.gradle.common.CommonProjectPlugin;
+import net.neoforged.gradle.common.caching.MappingFileCacheService;
 import net.neoforged.gradle.common.runtime.tasks.DefaultRuntime;
 import net.neoforged.gradle.dsl.common.tasks.WithOutput;
 import net.neoforged.gradle.common.util.CacheableIMappingFile;
 import net.minecraftforge.srgutils.IMappingFile;
 import org.gradle.api.provider.Property;
 import org.gradle.api.provider.Provider;
+import org.gradle.api.services.ServiceReference;
 import org.gradle.api.tasks.CacheableTask;
 import org.gradle.api.tasks.Input;
 import org.gradle.api.tasks.TaskAction;
@@ -45,4 +48,10 @@ public abstract class WriteIMappingsFile extends DefaultRuntime implements WithO
 
     @Input
     public abstract Property<IMappingFile.Format> getFormat();
+
+    /**
+     * @return The service which loads the mapping files the written mappings are created from.
+     */
+    @ServiceReference(CommonProjectPlugin.MAPPING_FILE_CACHE_SERVICE)
+    public abstract Property<MappingFileCacheService> getMappingFileCache();
 }
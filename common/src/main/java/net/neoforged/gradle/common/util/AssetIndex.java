@@ -0,0 +1,125 @@
+package net.neoforged.gradle.common.util;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.stream.JsonReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * An immutable model of an asset index, which maps the name of every asset of a game version to its content hash.
+ */
+public final class AssetIndex {
+
+    private final ImmutableMap<String, Asset> objects;
+
+    private AssetIndex(ImmutableMap<String, Asset> objects) {
+        this.objects = objects;
+    }
+
+    /**
+     * Parses the given asset index file.
+     *
+     * @param file The asset index file
+     * @return The model
+     */
+    public static AssetIndex read(File file) {
+        return SerializationUtils.read(file, reader -> {
+            final ImmutableMap.Builder<String, Asset> objects = ImmutableMap.builder();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!reader.nextName().equals("objects")) {
+                    reader.skipValue();
+                    continue;
+                }
+
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    objects.put(reader.nextName(), readAsset(reader));
+                }
+                reader.endObject();
+            }
+            reader.endObject();
+            return new AssetIndex(objects.build());
+        });
+    }
+
+    private static Asset readAsset(JsonReader reader) throws IOException {
+        String hash = null;
+        long size = -1;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "hash":
+                    hash = reader.nextString();
+                    break;
+                case "size":
+                    size = reader.nextLong();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (hash == null)
+            throw new IOException("Asset without a hash in the asset index");
+
+        return new Asset(hash, size);
+    }
+
+    /**
+     * @return The assets, by their name.
+     */
+    public Map<String, Asset> getObjects() {
+        return objects;
+    }
+
+    /**
+     * A single asset, which is identified by its content hash.
+     * Assets are equal if they have the same hash, as they are stored by their hash.
+     */
+    public static final class Asset {
+        private final String hash;
+        private final long size;
+
+        private Asset(String hash, long size) {
+            this.hash = hash;
+            this.size = size;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        /**
+         * @return The size of the asset in bytes, or -1 if the index does not specify it.
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * @return The path of the asset in the asset repository and the objects directory.
+         */
+        public String getPath() {
+            return hash.substring(0, 2) + '/' + hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Asset)) return false;
+
+            Asset asset = (Asset) o;
+
+            return getHash().equals(asset.getHash());
+        }
+
+        @Override
+        public int hashCode() {
+            return getHash().hashCode();
+        }
+    }
+}
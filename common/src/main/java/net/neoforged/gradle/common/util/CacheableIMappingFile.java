@@ -1,21 +1,39 @@
 package net.neoforged.gradle.common.util;
 
+import net.neoforged.gradle.common.caching.ParsedFileCache;
+import net.neoforged.gradle.util.HashFunction;
 import net.neoforged.gradle.util.IMappingFileUtils;
 import net.minecraftforge.srgutils.IMappingFile;
 import net.minecraftforge.srgutils.IRenamer;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.InvalidObjectException;
 import java.io.ObjectStreamException;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.Collection;
-import java.util.List;
 
+/**
+ * A mapping file which can be used as the value of task inputs.
+ * <p>
+ * Mapping files are serialized as uncompressed TSRG2 together with the hash of their content, so the serialized form,
+ * which Gradle fingerprints, only depends on the mappings and not on the compressor of the JVM. The serialized form is
+ * computed only once per instance, and deserializing a mapping file whose content was already parsed in this daemon
+ * reuses the parsed mappings of the {@link ParsedFileCache} instead of parsing them again.
+ */
 public class CacheableIMappingFile implements IMappingFile, Serializable {
 
+    /**
+     * The name of parsed mapping files in the {@link ParsedFileCache}.
+     */
+    public static final String MODEL_NAME = "mapping-file";
+
+    private static final int FORMAT_VERSION = 2;
+
     private IMappingFile delegate;
+    private transient volatile SerializedForm serializedForm;
 
     public CacheableIMappingFile(IMappingFile delegate) {
         this.delegate = delegate;
@@ -76,22 +94,68 @@ public class CacheableIMappingFile implements IMappingFile, Serializable {
         return new CacheableIMappingFile(this.delegate.chain(other));
     }
 
+    /**
+     * @return The SHA-1 hash of the content of this mapping file.
+     */
+    public String getContentHash() {
+        return getSerializedForm().hash;
+    }
+
+    private SerializedForm getSerializedForm() {
+        SerializedForm form = serializedForm;
+        if (form == null) {
+            synchronized (this) {
+                form = serializedForm;
+                if (form == null) {
+                    form = SerializedForm.of(delegate);
+                    ParsedFileCache.put(form.hash, MODEL_NAME, delegate);
+                    serializedForm = form;
+                }
+            }
+        }
+        return form;
+    }
+
     private void writeObject(java.io.ObjectOutputStream out) throws IOException {
-        final List<String> clientLines = IMappingFileUtils.writeMappingFile(delegate, IMappingFile.Format.TSRG2, false);
+        final SerializedForm form = getSerializedForm();
 
-        out.writeObject(clientLines);
+        out.writeInt(FORMAT_VERSION);
+        out.writeUTF(form.hash);
+        out.writeInt(form.content.length);
+        out.write(form.content);
     }
 
-    @SuppressWarnings("unchecked")
-    private void readObject(java.io.ObjectInputStream in) throws IOException, ClassNotFoundException {
-        final List<String> clientLines = (List<String>) in.readObject();
+    private void readObject(java.io.ObjectInputStream in) throws IOException {
+        final int version = in.readInt();
+        if (version != FORMAT_VERSION)
+            throw new InvalidObjectException("Unsupported mapping file format version: " + version);
 
-        InputStream clientStream = new ByteArrayInputStream(String.join("\n", clientLines).getBytes());
+        final String hash = in.readUTF();
+        final byte[] content = new byte[in.readInt()];
+        in.readFully(content);
 
-        delegate = IMappingFile.load(clientStream);
+        serializedForm = new SerializedForm(hash, content);
+
+        //The mappings are immutable, so a file with the same content which was already parsed by this daemon can be reused.
+        delegate = ParsedFileCache.get(hash, MODEL_NAME, () -> IMappingFile.load(new ByteArrayInputStream(content)));
     }
 
     private void readObjectNoData() throws ObjectStreamException {
         throw new UnsupportedOperationException();
     }
+
+    private static final class SerializedForm {
+        private final String hash;
+        private final byte[] content;
+
+        private SerializedForm(String hash, byte[] content) {
+            this.hash = hash;
+            this.content = content;
+        }
+
+        private static SerializedForm of(IMappingFile file) {
+            final byte[] content = String.join("\n", IMappingFileUtils.writeMappingFile(file, Format.TSRG2, false)).getBytes(StandardCharsets.UTF_8);
+            return new SerializedForm(HashFunction.SHA1.hash(content), content);
+        }
+    }
 }
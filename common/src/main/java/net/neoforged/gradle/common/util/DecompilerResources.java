@@ -0,0 +1,82 @@
+package net.neoforged.gradle.common.util;
+
+import org.gradle.StartParameter;
+import org.gradle.api.Project;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+
+/**
+ * Sizes the heap and thread count of the decompiler from the resources of the machine.
+ * <p>
+ * The physical memory which is not used by the Gradle daemon and the operating system, and the available processors,
+ * are divided evenly between all decompile steps which can run at the same time. Without parallel project execution
+ * only one step runs at a time, otherwise at most one per project, limited by the amount of Gradle workers.
+ */
+public final class DecompilerResources {
+
+    private static final long MEGABYTE = 1024L * 1024L;
+    private static final long SYSTEM_RESERVE = 2048 * MEGABYTE;
+    private static final long MIN_MEMORY = 1024 * MEGABYTE;
+    private static final long BASE_MEMORY = 2048 * MEGABYTE;
+    private static final long MEMORY_PER_THREAD = 256 * MEGABYTE;
+
+    private final int threads;
+    private final long memory;
+
+    private DecompilerResources(int threads, long memory) {
+        this.threads = threads;
+        this.memory = memory;
+    }
+
+    /**
+     * Determines the resources for a decompile step of the given project.
+     *
+     * @param project The project the step belongs to
+     * @return The resources, or null if the physical memory of the machine could not be determined
+     */
+    public static DecompilerResources forProject(Project project) {
+        final long physicalMemory = getTotalPhysicalMemory();
+        if (physicalMemory <= 0)
+            return null;
+
+        final StartParameter startParameter = project.getGradle().getStartParameter();
+        final int concurrentSteps = startParameter.isParallelProjectExecutionEnabled() ?
+                Math.max(1, Math.min(startParameter.getMaxWorkerCount(), project.getRootProject().getAllprojects().size())) :
+                1;
+
+        return compute(physicalMemory, Runtime.getRuntime().maxMemory(), Runtime.getRuntime().availableProcessors(), concurrentSteps);
+    }
+
+    static DecompilerResources compute(long physicalMemory, long daemonMemory, int processors, int concurrentSteps) {
+        final long available = Math.max(0, physicalMemory - daemonMemory - SYSTEM_RESERVE) / concurrentSteps;
+        int threads = Math.max(1, processors / concurrentSteps);
+
+        //Every thread needs room for the classes it is decompiling, use fewer threads if the memory is tight.
+        threads = (int) Math.max(1, Math.min(threads, (available - BASE_MEMORY) / MEMORY_PER_THREAD));
+        final long memory = Math.max(MIN_MEMORY, Math.min(available, BASE_MEMORY + threads * MEMORY_PER_THREAD));
+        return new DecompilerResources(threads, memory);
+    }
+
+    private static long getTotalPhysicalMemory() {
+        final OperatingSystemMXBean bean = ManagementFactory.getOperatingSystemMXBean();
+        if (bean instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) bean).getTotalPhysicalMemorySize();
+        }
+        return -1;
+    }
+
+    /**
+     * @return The amount of threads the decompiler should use.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * @return The maximum heap size of the decompiler, in the form accepted by {@code -Xmx}.
+     */
+    public String getMaxMemory() {
+        return (memory / MEGABYTE) + "m";
+    }
+}
@@ -77,6 +77,11 @@ public final class FileCacheUtils {
         });
     }
     
+    @NotNull
+    public static DirectoryProperty getCacheDirectory(Project project) {
+        return project.getObjects().directoryProperty().fileValue(new File(project.getGradle().getGradleUserHomeDir(), "caches/minecraft"));
+    }
+    
     @NotNull
     public static DirectoryProperty getAssetsCacheDirectory(Project project) {
         return project.getObjects().directoryProperty().fileValue(new File(project.getGradle().getGradleUserHomeDir(), "caches/minecraft/assets"));
@@ -86,4 +91,9 @@ public final class FileCacheUtils {
     public static DirectoryProperty getLibrariesCacheDirectory(Project project) {
         return project.getObjects().directoryProperty().fileValue(new File(project.getGradle().getGradleUserHomeDir(), "caches/minecraft/libraries"));
     }
+    
+    @NotNull
+    public static DirectoryProperty getDecompiledSourcesCacheDirectory(Project project) {
+        return project.getObjects().directoryProperty().fileValue(new File(project.getGradle().getGradleUserHomeDir(), "caches/minecraft/decompiled"));
+    }
 }
@@ -8,17 +8,43 @@ import javax.annotation.Nullable;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
 
 public final class FileDownloadingUtils {
 
+    private static final String PARTIAL_SUFFIX = ".download";
+    private static final String STATE_DIRECTORY = ".download-state";
+    private static final String ETAG_SUFFIX = ".etag";
+    private static final String LOCK_SUFFIX = ".lock";
+    private static final long PARALLEL_CHUNK_THRESHOLD = 16L * 1024 * 1024;
+    private static final int DEFAULT_PARALLEL_CHUNKS = 4;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    //File locks are held per JVM, so concurrent downloads of the same file within this process need their own lock.
+    private static final Map<Path, ReentrantLock> LOCKS = new ConcurrentHashMap<>();
+
     private FileDownloadingUtils() {
         throw new IllegalStateException("Can not instantiate an instance of: FileDownloadingUtils. This is a utility class");
     }
@@ -59,62 +85,296 @@ public final class FileDownloadingUtils {
      * changed on the remote-server.
      */
     private static boolean copyURLToFileIfNewer(URL url, Path target) throws IOException {
-        HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
+        return copyURLToFileIfNewer(url, target, DEFAULT_PARALLEL_CHUNKS, PARALLEL_CHUNK_THRESHOLD);
+    }
+
+    /**
+     * Downloads a file, but attempts to make a conditional request to only re-download if the file has been
+     * changed on the remote-server.
+     * <p>
+     * The file is downloaded into a partial {@code .download} file next to the target. If a previous download was
+     * interrupted, the partial file is resumed using a HTTP range request, as long as the remote file did not change.
+     * Large files, on servers which support range requests, are downloaded in multiple chunks in parallel.
+     * <p>
+     * The validators of the target and the partial file, and the lock file, are kept in the {@value #STATE_DIRECTORY}
+     * directory next to the target, which can be removed as a whole while no download is running. The partial and
+     * validator files are shared by everyone downloading the same file, so the download holds a lock on the target,
+     * both in this process and across processes.
+     *
+     * @param url The url to download from
+     * @param target The file to download to
+     * @param parallelChunks The maximum amount of chunks to download in parallel, 1 disables chunked downloads
+     * @param parallelThreshold The minimal size of a file, in bytes, before it is downloaded in chunks
+     * @return True if a file was downloaded, false if the file was already up-to-date.
+     */
+    static boolean copyURLToFileIfNewer(URL url, Path target, int parallelChunks, long parallelThreshold) throws IOException {
+        // Resolve a relative path to get a proper parent directory
+        final Path absoluteTarget = target.toAbsolutePath().normalize();
+        Files.createDirectories(absoluteTarget.resolveSibling(STATE_DIRECTORY));
+
+        final ReentrantLock lock = LOCKS.computeIfAbsent(absoluteTarget, path -> new ReentrantLock());
+        lock.lock();
+        try (FileChannel channel = FileChannel.open(stateOf(absoluteTarget, LOCK_SUFFIX), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock ignored = channel.lock()) {
+            return copyURLToFileIfNewerLocked(url, absoluteTarget, parallelChunks, parallelThreshold);
+        } finally {
+            lock.unlock();
+        }
+    }
 
+    private static boolean copyURLToFileIfNewerLocked(URL url, Path target, int parallelChunks, long parallelThreshold) throws IOException {
+        final Path partial = sibling(target, PARTIAL_SUFFIX);
+        final Path partialValidatorFile = stateOf(target, PARTIAL_SUFFIX + ETAG_SUFFIX);
         try {
-            // Do a Conditional If-Modified-Since request
+            return download(url, target, partial, partialValidatorFile, true, parallelChunks, parallelThreshold);
+        } catch (ResumeFailedException e) {
+            // A partial file which can not be resumed, for example because it is already complete, is downloaded again.
+            deletePartial(partial, partialValidatorFile);
+            return download(url, target, partial, partialValidatorFile, false, parallelChunks, parallelThreshold);
+        }
+    }
+
+    private static boolean download(URL url, Path target, Path partial, Path partialValidatorFile, boolean resume, int parallelChunks, long parallelThreshold) throws IOException {
+        final Path etagFile = stateOf(target, ETAG_SUFFIX);
+
+        // Resume a previously interrupted download, if the remote file is still the same one.
+        // The range is requested up front: servers evaluate the conditional headers before the range, so a single
+        // request covers both an up-to-date target and a resumable partial file.
+        final long resumeFrom = resume && Files.isRegularFile(partial) ? Files.size(partial) : 0;
+        final String partialValidator = resume ? readValidator(partialValidatorFile) : null;
+        final boolean canResume = resumeFrom > 0 && partialValidator != null;
+
+        HttpURLConnection urlConnection = openConnection(url, canResume ? resumeFrom : 0, partialValidator);
+
+        try {
+            // Do a Conditional If-Modified-Since / If-None-Match request
             if (Files.isRegularFile(target)) {
                 FileTime lastModified = Files.getLastModifiedTime(target);
                 urlConnection.setIfModifiedSince(lastModified.toMillis());
 
+                final String etag = readValidator(etagFile);
+                if (etag != null) {
+                    urlConnection.setRequestProperty("If-None-Match", etag);
+                }
+
                 // Accessing the response code will cause the request to be sent
                 if (urlConnection.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
                     // Double-Check here -> If the server also returns a last-modified date,
                     // and that is different from our local date, re-download!
                     // This could occur if the local file was modified and is now newer than the original.
-                    if (urlConnection.getLastModified() != 0 && urlConnection.getLastModified() != urlConnection.getIfModifiedSince()) {
+                    // A matching ETag is authoritative, so it does not need this check.
+                    if (etag == null && urlConnection.getLastModified() != 0 && urlConnection.getLastModified() != urlConnection.getIfModifiedSince()) {
                         urlConnection.disconnect();
-                        urlConnection = (HttpURLConnection) url.openConnection();
+                        urlConnection = openConnection(url, canResume ? resumeFrom : 0, partialValidator);
                     } else {
                         return false;
                     }
                 }
             }
 
-            if (urlConnection.getResponseCode() != 200) {
+            final int responseCode = urlConnection.getResponseCode();
+            if (responseCode == HttpURLConnection.HTTP_PARTIAL && canResume) {
+                if (getRangeStart(urlConnection) != resumeFrom) {
+                    throw new ResumeFailedException("Failed to resume " + url + ", the server returned an unexpected range: " + urlConnection.getHeaderField("Content-Range"));
+                }
+
+                try (InputStream stream = urlConnection.getInputStream();
+                     OutputStream output = Files.newOutputStream(partial, StandardOpenOption.APPEND)) {
+                    copy(stream, output);
+                }
+            } else if (responseCode == HttpURLConnection.HTTP_OK) {
+                final long contentLength = urlConnection.getContentLengthLong();
+                final String validator = getValidator(urlConnection);
+
+                if (parallelChunks > 1 && contentLength >= parallelThreshold && "bytes".equalsIgnoreCase(urlConnection.getHeaderField("Accept-Ranges"))) {
+                    urlConnection.disconnect();
+                    downloadChunked(url, partial, partialValidatorFile, contentLength, validator, parallelChunks);
+                } else {
+                    // Always download to a partial file to avoid partially downloaded files persisting a VM crash/shutdown
+                    writeValidator(partialValidatorFile, validator);
+                    try (InputStream stream = urlConnection.getInputStream()) {
+                        Files.copy(stream, partial, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                }
+            } else if (canResume) {
+                throw new ResumeFailedException("Failed to resume " + url + ", HTTP-Status: " + responseCode);
+            } else {
                 throw new IOException("Failed to download " + url + ", HTTP-Status: "
-                        + urlConnection.getResponseCode());
+                        + responseCode);
             }
 
-            // Resolve a relative path to get a proper parent directory
-            if (target.getParent() == null) {
-                target = target.toAbsolutePath();
+            move(target, partial);
+            Files.deleteIfExists(partialValidatorFile);
+
+            writeValidator(etagFile, urlConnection.getHeaderField("ETag"));
+            if (urlConnection.getLastModified() != 0) {
+                Files.setLastModifiedTime(target, FileTime.fromMillis(urlConnection.getLastModified()));
             }
 
-            // Always download to a temp-file to avoid partially downloaded files persisting a VM crash/shutdown
-            Files.createDirectories(target.getParent());
-            Path tempFile = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".download");
+            return true;
+        } finally {
+            urlConnection.disconnect();
+        }
+    }
 
-            try {
-                try (InputStream stream = urlConnection.getInputStream()) {
-                    Files.copy(stream, tempFile, StandardCopyOption.REPLACE_EXISTING);
-                }
+    /**
+     * Opens a connection to the given url, which requests the remainder of the file from the given position on, if the
+     * remote file still matches the given validator.
+     */
+    private static HttpURLConnection openConnection(URL url, long resumeFrom, @Nullable String validator) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        if (resumeFrom > 0 && validator != null) {
+            connection.setRequestProperty("Range", "bytes=" + resumeFrom + "-");
+            connection.setRequestProperty("If-Range", validator);
+        }
+        return connection;
+    }
+
+    /**
+     * Downloads the file in the given amount of chunks, which are fetched in parallel using range requests,
+     * and written to their position in the preallocated partial file.
+     * A failed chunked download can not be resumed, so the partial file is removed on failure.
+     */
+    private static void downloadChunked(URL url, Path partial, Path partialValidatorFile, long contentLength, @Nullable String validator, int parallelChunks) throws IOException {
+        deletePartial(partial, partialValidatorFile);
+
+        final long chunkSize = (contentLength + parallelChunks - 1) / parallelChunks;
+        final ExecutorService executor = Executors.newFixedThreadPool(parallelChunks);
+        try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.READ)) {
+            final List<Future<?>> chunks = new ArrayList<>();
+            for (long start = 0; start < contentLength; start += chunkSize) {
+                final long chunkStart = start;
+                final long chunkEnd = Math.min(contentLength, start + chunkSize) - 1;
+                chunks.add(executor.submit(() -> {
+                    downloadChunk(url, channel, chunkStart, chunkEnd, validator);
+                    return null;
+                }));
+            }
+
+            for (Future<?> chunk : chunks) {
+                chunk.get();
+            }
+        } catch (IOException e) {
+            deletePartial(partial, partialValidatorFile);
+            throw e;
+        } catch (ExecutionException e) {
+            deletePartial(partial, partialValidatorFile);
+            throw new IOException("Failed to download a chunk of " + url, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            deletePartial(partial, partialValidatorFile);
+            throw new IOException("Interrupted while downloading " + url, e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void downloadChunk(URL url, FileChannel channel, long start, long end, @Nullable String validator) throws IOException {
+        final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        try {
+            connection.setRequestProperty("Range", "bytes=" + start + "-" + end);
+            if (validator != null) {
+                connection.setRequestProperty("If-Range", validator);
+            }
 
-                move(target, tempFile);
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_PARTIAL || getRangeStart(connection) != start) {
+                throw new IOException("Failed to download the range " + start + "-" + end + " of " + url + ", HTTP-Status: " + connection.getResponseCode());
+            }
 
-                if (urlConnection.getLastModified() != 0) {
-                    Files.setLastModifiedTime(target, FileTime.fromMillis(urlConnection.getLastModified()));
+            long position = start;
+            try (InputStream stream = connection.getInputStream()) {
+                final byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = stream.read(buffer)) != -1) {
+                    final ByteBuffer data = ByteBuffer.wrap(buffer, 0, read);
+                    while (data.hasRemaining()) {
+                        position += channel.write(data, position);
+                    }
                 }
+            }
 
-                return true;
-            } finally {
-                Files.deleteIfExists(tempFile);
+            if (position != end + 1) {
+                throw new IOException("Incomplete range " + start + "-" + end + " of " + url + ", received " + (position - start) + " bytes");
             }
         } finally {
-            urlConnection.disconnect();
+            connection.disconnect();
+        }
+    }
+
+    private static void copy(InputStream stream, OutputStream output) throws IOException {
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = stream.read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+        }
+    }
+
+    /**
+     * Gets the first byte position of the Content-Range returned by the server, or -1 if it is missing or invalid.
+     */
+    private static long getRangeStart(HttpURLConnection connection) {
+        final String contentRange = connection.getHeaderField("Content-Range");
+        if (contentRange == null || !contentRange.startsWith("bytes "))
+            return -1;
+
+        final int dash = contentRange.indexOf('-');
+        if (dash == -1)
+            return -1;
+
+        try {
+            return Long.parseLong(contentRange.substring("bytes ".length(), dash).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Gets a validator which identifies the exact version of the remote file, usable in an If-Range header.
+     * Weak ETags can not be used for range requests, in which case the last modified date is used.
+     */
+    @Nullable
+    private static String getValidator(HttpURLConnection connection) {
+        final String etag = connection.getHeaderField("ETag");
+        if (etag != null && !etag.startsWith("W/")) {
+            return etag;
+        }
+
+        return connection.getHeaderField("Last-Modified");
+    }
+
+    @Nullable
+    private static String readValidator(Path file) throws IOException {
+        if (!Files.isRegularFile(file))
+            return null;
+
+        final String validator = new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim();
+        return validator.isEmpty() ? null : validator;
+    }
+
+    private static void writeValidator(Path file, @Nullable String validator) throws IOException {
+        if (validator == null) {
+            Files.deleteIfExists(file);
+        } else {
+            Files.write(file, validator.getBytes(StandardCharsets.UTF_8));
         }
     }
 
+    private static void deletePartial(Path partial, Path partialValidatorFile) throws IOException {
+        Files.deleteIfExists(partial);
+        Files.deleteIfExists(partialValidatorFile);
+    }
+
+    private static Path sibling(Path file, String suffix) {
+        return file.resolveSibling(file.getFileName().toString() + suffix);
+    }
+
+    /**
+     * Gets the file in the state directory next to the given target, which holds the given kind of state of the download.
+     */
+    private static Path stateOf(Path target, String suffix) {
+        return target.resolveSibling(STATE_DIRECTORY).resolve(target.getFileName().toString() + suffix);
+    }
+
     private static void move(Path target, Path tempFile) throws IOException {
         int tries = 0;
         while (true) {
@@ -142,6 +402,15 @@ public final class FileDownloadingUtils {
         }
     }
 
+    /**
+     * Thrown when a partial file could not be resumed, and has to be downloaded from the start again.
+     */
+    private static final class ResumeFailedException extends IOException {
+        private ResumeFailedException(String message) {
+            super(message);
+        }
+    }
+
     public static File getMCDir() {
         switch (VersionJson.OS.getCurrent()) {
             case OSX:
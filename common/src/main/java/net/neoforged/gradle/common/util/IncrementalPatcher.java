@@ -0,0 +1,689 @@
+package net.neoforged.gradle.common.util;
+
+import codechicken.diffpatch.util.archiver.ArchiveFormat;
+import net.neoforged.gradle.util.FileUtils;
+import net.neoforged.gradle.util.HashFunction;
+import net.neoforged.gradle.util.RawZipFile;
+import net.neoforged.gradle.util.RawZipOutputStream;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Applies a set of patches to a source jar, only re-applying the patches whose base file or patch changed since the
+ * previous run.
+ * <p>
+ * After every run without failures the hashes of all base files and patches are stored in a state file, together with
+ * the hash of the produced output. On the next run the changed files are patched on their own, all other files are
+ * copied from the previous output without recompressing them, and their rejects are kept. The previous output is only
+ * reused when it still has the recorded hash and the patch settings did not change, otherwise all patches are applied
+ * again.
+ * <p>
+ * The patches of independent files are applied in parallel: the files to patch are split into shards of consecutive
+ * paths, which are patched on their own and merged afterwards. Every run, clean or incremental, goes through this merge,
+ * which writes the entries in a fixed order and the patched entries with stable timestamps and compression. The output
+ * therefore only depends on the base jar and the patches, not on the parallelism or on the previous runs.
+ */
+public final class IncrementalPatcher {
+
+    private static final Logger LOGGER = Logging.getLogger(IncrementalPatcher.class);
+    private static final String STATE_HEADER = "incremental-patch-state-v1";
+    private static final String PATCH_SUFFIX = ".patch";
+    private static final String REJECT_SUFFIX = ".rej";
+    private static final int MIN_FILES_PER_SHARD = 64;
+
+    private final File base;
+    private final Path patches;
+    private final String patchesPrefix;
+    private final File output;
+    private final Path rejects;
+    private final File stateFile;
+    private final String settings;
+    private final int parallelism;
+
+    /**
+     * @param base The jar with the files to patch
+     * @param patches The patches, either a zip file or a directory
+     * @param patchesPrefix The path of the patches in the zip file or directory
+     * @param output The patched jar
+     * @param rejects The rejects, either a zip file or a directory
+     * @param stateFile The file the state of the last run is stored in
+     * @param settings The settings the patches are applied with, a change causes all patches to be applied again
+     * @param parallelism The maximal amount of shards which are patched at the same time
+     */
+    public IncrementalPatcher(File base, Path patches, String patchesPrefix, File output, Path rejects, File stateFile, String settings, int parallelism) {
+        this.base = base;
+        this.patches = patches;
+        this.patchesPrefix = patchesPrefix;
+        this.output = output;
+        this.rejects = rejects;
+        this.stateFile = stateFile;
+        this.settings = settings;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Applies the patches, incrementally if possible.
+     *
+     * @param action Applies patches to a base jar, writing the patched jar. Called with the full inputs, or with
+     *               reduced inputs which only contain a part of the files. May be called from several threads at once
+     * @return The exit code of the patch action, or 0 if no patch action was needed
+     * @throws IOException If the files could not be read or written
+     */
+    public int apply(PatchAction action) throws IOException {
+        final State current = new State(settings, hashBase(), hashPatches());
+        final State previous = readState();
+
+        final Set<String> files;
+        if (previous == null) {
+            Files.deleteIfExists(output.toPath());
+            Files.deleteIfExists(stateFile.toPath());
+            Files.createDirectories(output.getParentFile().toPath());
+            if (canMergeRejects()) {
+                FileUtils.delete(rejects);
+            }
+
+            //Files without a patch are copied from the base jar, only the patched files are split into shards.
+            files = new HashSet<>(current.patchTargets.values());
+        } else {
+            files = current.changedFiles(previous);
+            LOGGER.info("Re-applying patches to {} changed files of {}", files.size(), base.getName());
+        }
+
+        final Path workspace = Files.createTempDirectory(stateFile.getParentFile().toPath(), ".patch");
+        try {
+            final Path source;
+            if (previous == null) {
+                source = base.toPath();
+            } else {
+                source = workspace.resolve("previous.jar");
+                Files.move(output.toPath(), source);
+                Files.deleteIfExists(stateFile.toPath());
+            }
+
+            //Clean and incremental runs, with any amount of shards, go through the same merge, so they produce the same output.
+            final List<Shard> shards = createShards(files, workspace);
+            int exit = applyShards(shards, current, action);
+
+            merge(files, current.patchTargets, source, shards);
+            //The rejects of files which were not patched again still apply to the output.
+            if (canMergeRejects() && mergeRejects(files, shards) && !isFailure(exit)) {
+                exit = 1;
+            }
+            writeState(exit, current);
+            return exit;
+        } finally {
+            FileUtils.delete(workspace);
+        }
+    }
+
+    /**
+     * @return Whether the rejects of several shards can be merged, which is only possible for a directory or a zip.
+     */
+    private boolean canMergeRejects() {
+        final ArchiveFormat rejectsFormat = ArchiveFormat.findFormat(rejects.getFileName());
+        return rejectsFormat == null || rejectsFormat == ArchiveFormat.ZIP;
+    }
+
+    /**
+     * @return The amount of shards to split the given amount of files into.
+     */
+    private int shardCount(int files) {
+        if (!canMergeRejects())
+            return 1;
+
+        return Math.max(1, Math.min(parallelism, (files + MIN_FILES_PER_SHARD - 1) / MIN_FILES_PER_SHARD));
+    }
+
+    /**
+     * Splits the files into shards of consecutive paths, so that the rejects of the shards can be merged in order.
+     */
+    private List<Shard> createShards(Set<String> files, Path workspace) {
+        final List<String> sorted = new ArrayList<>(files);
+        Collections.sort(sorted);
+
+        final int count = shardCount(sorted.size());
+        final List<Shard> shards = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final List<String> part = sorted.subList(i * sorted.size() / count, (i + 1) * sorted.size() / count);
+            final Path directory = workspace.resolve("shard-" + i);
+            //Rejects which can not be merged are written directly, which is only done with a single shard.
+            final Path shardRejects = canMergeRejects() ? directory.resolve(rejects.getFileName().toString()) : rejects;
+            shards.add(new Shard(directory, new HashSet<>(part), shardRejects));
+        }
+        return shards;
+    }
+
+    /**
+     * Patches all shards, on a pool with at most {@link #parallelism} threads.
+     *
+     * @return The first exit code which indicates an error, or otherwise the highest exit code of all shards
+     */
+    private int applyShards(List<Shard> shards, State current, PatchAction action) throws IOException {
+        for (Shard shard : shards) {
+            if (shard.files.isEmpty())
+                continue;
+
+            Files.createDirectories(shard.directory);
+            writeChangedBase(shard.files, shard.base());
+            writeChangedPatches(shard.files, current.patchTargets, shard.patches());
+        }
+
+        final ForkJoinPool pool = new ForkJoinPool(Math.min(parallelism, shards.size()));
+        try {
+            final List<Future<Integer>> results = new ArrayList<>(shards.size());
+            for (Shard shard : shards) {
+                if (shard.files.isEmpty()) {
+                    results.add(null);
+                } else {
+                    results.add(pool.submit(() -> action.apply(shard.base(), shard.patches(), shard.output(), shard.rejects())));
+                }
+            }
+
+            int exit = 0;
+            for (Future<Integer> result : results) {
+                if (result == null)
+                    continue;
+
+                final int shardExit = await(result);
+                if (isFailure(exit))
+                    continue;
+
+                exit = isFailure(shardExit) ? shardExit : Math.max(exit, shardExit);
+            }
+            return exit;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * @return Whether the exit code indicates an error, instead of success or rejected hunks.
+     */
+    private static boolean isFailure(int exit) {
+        return exit != 0 && exit != 1;
+    }
+
+    private static int await(Future<Integer> result) throws IOException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while applying patches");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IOException("Failed to apply patches", e.getCause());
+        }
+    }
+
+    /**
+     * Writes the output, taking the patched files from the outputs of the shards, the unchanged files from the source,
+     * which is either the previous output or the base jar, and the files whose patch was removed from the base jar.
+     * <p>
+     * The entries are written in the order of the base jar, followed by the files which only exist through a patch in
+     * the order of their path. Unchanged entries are copied without recompressing them, patched entries are first
+     * rewritten as stable entries, so the output neither depends on the shards nor on the zip settings of the patch action.
+     */
+    private void merge(Set<String> files, Map<String, String> patchTargets, Path source, List<Shard> shards) throws IOException {
+        final Set<String> patched = new HashSet<>(patchTargets.values());
+        final Path temporary = FileUtils.temporaryPath(output.getParentFile().toPath(), output.getName());
+        final List<RawZipFile> shardOutputs = new ArrayList<>();
+        try (RawZipFile baseJar = RawZipFile.open(base);
+             RawZipFile previous = source.equals(base.toPath()) ? null : RawZipFile.open(source.toFile());
+             RawZipOutputStream out = new RawZipOutputStream(Files.newOutputStream(temporary))) {
+            final Map<String, RawZipFile> patchedFiles = new HashMap<>();
+            final Map<String, RawZipFile.Entry> patchedEntries = new HashMap<>();
+            for (Shard shard : shards) {
+                if (!Files.exists(shard.output()))
+                    continue;
+
+                final RawZipFile file = RawZipFile.open(normalize(shard.output(), shard.directory.resolve("normalized.jar")).toFile());
+                shardOutputs.add(file);
+                for (RawZipFile.Entry entry : file.getEntries()) {
+                    patchedFiles.put(entry.getName(), file);
+                    patchedEntries.put(entry.getName(), entry);
+                }
+            }
+
+            final Map<String, RawZipFile.Entry> baseEntries = entriesByName(baseJar);
+            final RawZipFile unchangedSource = previous != null ? previous : baseJar;
+            final Map<String, RawZipFile.Entry> unchangedEntries = previous != null ? entriesByName(previous) : baseEntries;
+
+            final Set<String> names = new LinkedHashSet<>(baseEntries.keySet());
+            final Set<String> added = new TreeSet<>(patched);
+            added.removeAll(baseEntries.keySet());
+            names.addAll(added);
+
+            for (String name : names) {
+                if (!files.contains(name)) {
+                    final RawZipFile.Entry entry = unchangedEntries.get(name);
+                    if (entry != null) {
+                        out.copyEntry(unchangedSource, entry);
+                    }
+                } else if (patched.contains(name)) {
+                    //A file which is missing in the output of its shard was deleted by its patch.
+                    final RawZipFile.Entry entry = patchedEntries.get(name);
+                    if (entry != null) {
+                        out.copyEntry(patchedFiles.get(name), entry);
+                    }
+                } else {
+                    final RawZipFile.Entry entry = baseEntries.get(name);
+                    if (entry != null) {
+                        out.copyEntry(baseJar, entry);
+                    }
+                }
+            }
+        } finally {
+            for (RawZipFile file : shardOutputs) {
+                file.close();
+            }
+        }
+        FileUtils.atomicMove(temporary, output.toPath());
+    }
+
+    /**
+     * Combines the rejects of all shards with the rejects of the previous run, dropping the previous rejects of the
+     * files which were patched again. The rejects of a zip are written in the order of their path, so an incremental
+     * run writes the same rejects as a clean run.
+     *
+     * @return Whether rejects of the previous run were kept
+     */
+    private boolean mergeRejects(Set<String> files, List<Shard> shards) throws IOException {
+        boolean kept = false;
+        if (ArchiveFormat.findFormat(rejects.getFileName()) == null) {
+            if (Files.isDirectory(rejects)) {
+                try (Stream<Path> previous = Files.walk(rejects)) {
+                    for (Path file : previous.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                        if (files.contains(rejectTarget(rejects.relativize(file).toString().replace('\\', '/')))) {
+                            Files.delete(file);
+                        } else {
+                            kept = true;
+                        }
+                    }
+                }
+            }
+
+            for (Shard shard : shards) {
+                if (!Files.isDirectory(shard.rejects()))
+                    continue;
+
+                try (Stream<Path> shardRejects = Files.walk(shard.rejects())) {
+                    for (Path file : shardRejects.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                        final Path destination = rejects.resolve(shard.rejects().relativize(file).toString());
+                        Files.createDirectories(destination.getParent());
+                        Files.copy(file, destination, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                }
+            }
+            return kept;
+        }
+
+        final List<RawZipFile> inputs = new ArrayList<>();
+        try {
+            final Map<String, RawZipFile> rejectFiles = new TreeMap<>();
+            final Map<String, RawZipFile.Entry> rejectEntries = new HashMap<>();
+            if (Files.isRegularFile(rejects)) {
+                final RawZipFile previous = RawZipFile.open(rejects.toFile());
+                inputs.add(previous);
+                for (RawZipFile.Entry entry : previous.getEntries()) {
+                    if (!files.contains(rejectTarget(entry.getName()))) {
+                        rejectFiles.put(entry.getName(), previous);
+                        rejectEntries.put(entry.getName(), entry);
+                        kept = true;
+                    }
+                }
+            }
+
+            for (Shard shard : shards) {
+                if (!Files.isRegularFile(shard.rejects()))
+                    continue;
+
+                final RawZipFile input = RawZipFile.open(normalize(shard.rejects(), shard.directory.resolve("normalized-" + rejects.getFileName())).toFile());
+                inputs.add(input);
+                for (RawZipFile.Entry entry : input.getEntries()) {
+                    rejectFiles.put(entry.getName(), input);
+                    rejectEntries.put(entry.getName(), entry);
+                }
+            }
+
+            if (rejectFiles.isEmpty()) {
+                Files.deleteIfExists(rejects);
+                return false;
+            }
+
+            Files.createDirectories(rejects.getParent());
+            final Path temporary = FileUtils.temporaryPath(rejects.getParent(), rejects.getFileName().toString());
+            try (RawZipOutputStream out = new RawZipOutputStream(Files.newOutputStream(temporary))) {
+                for (Map.Entry<String, RawZipFile> file : rejectFiles.entrySet()) {
+                    out.copyEntry(file.getValue(), rejectEntries.get(file.getKey()));
+                }
+            }
+            FileUtils.atomicMove(temporary, rejects);
+            return kept;
+        } finally {
+            for (RawZipFile input : inputs) {
+                input.close();
+            }
+        }
+    }
+
+    /**
+     * @return The path of the file in the base jar the given reject belongs to. Rejects are named after the file or
+     *         the patch they belong to, followed by {@code .rej}.
+     */
+    private String rejectTarget(String reject) {
+        String target = reject.endsWith(REJECT_SUFFIX) ? reject.substring(0, reject.length() - REJECT_SUFFIX.length()) : reject;
+        if (target.endsWith(PATCH_SUFFIX) && target.startsWith(patchesPrefix))
+            return targetOf(target);
+
+        return target;
+    }
+
+    private static Map<String, RawZipFile.Entry> entriesByName(RawZipFile file) {
+        final Map<String, RawZipFile.Entry> entries = new LinkedHashMap<>();
+        for (RawZipFile.Entry entry : file.getEntries()) {
+            entries.putIfAbsent(entry.getName(), entry);
+        }
+        return entries;
+    }
+
+    /**
+     * Rewrites a zip written by the patch action with stable entries. The entries are copied from the rewritten zip,
+     * which stores them the same way as the entries copied from a previous output.
+     *
+     * @return The rewritten zip
+     */
+    private static Path normalize(Path zip, Path target) throws IOException {
+        try (ZipFile input = new ZipFile(zip.toFile());
+             RawZipOutputStream out = new RawZipOutputStream(Files.newOutputStream(target))) {
+            final byte[] buffer = new byte[64 * 1024];
+            for (ZipEntry entry : Collections.list(input.entries())) {
+                out.putNextEntry(FileUtils.getStableEntry(entry.getName()));
+                if (!entry.isDirectory()) {
+                    try (InputStream stream = input.getInputStream(entry)) {
+                        int read;
+                        while ((read = stream.read(buffer)) != -1) {
+                            out.write(buffer, 0, read);
+                        }
+                    }
+                }
+                out.closeEntry();
+            }
+        }
+        return target;
+    }
+
+    private void writeChangedBase(Set<String> changed, Path target) throws IOException {
+        try (RawZipFile input = RawZipFile.open(base);
+             RawZipOutputStream out = new RawZipOutputStream(Files.newOutputStream(target))) {
+            for (RawZipFile.Entry entry : input.getEntries()) {
+                if (changed.contains(entry.getName())) {
+                    out.copyEntry(input, entry);
+                }
+            }
+        }
+    }
+
+    private void writeChangedPatches(Set<String> changed, Map<String, String> patchTargets, Path target) throws IOException {
+        final Set<String> changedPatches = patchTargets.entrySet().stream()
+                .filter(entry -> changed.contains(entry.getValue()))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+
+        if (Files.isDirectory(patches)) {
+            for (String patch : changedPatches) {
+                final Path destination = target.resolve(patch);
+                Files.createDirectories(destination.getParent());
+                Files.copy(patches.resolve(patch), destination);
+            }
+            return;
+        }
+
+        try (RawZipFile input = RawZipFile.open(patches.toFile());
+             RawZipOutputStream out = new RawZipOutputStream(Files.newOutputStream(target))) {
+            for (RawZipFile.Entry entry : input.getEntries()) {
+                if (changedPatches.contains(entry.getName())) {
+                    out.copyEntry(input, entry);
+                }
+            }
+        }
+    }
+
+    private Map<String, String> hashBase() throws IOException {
+        final Map<String, String> hashes = new TreeMap<>();
+        try (ZipInputStream input = new ZipInputStream(Files.newInputStream(base.toPath()))) {
+            ZipEntry entry;
+            while ((entry = input.getNextEntry()) != null) {
+                hashes.put(entry.getName(), HashFunction.SHA1.hash(input));
+            }
+        }
+        return hashes;
+    }
+
+    /**
+     * Hashes all patches, keyed by their path in the zip file or directory.
+     */
+    private Map<String, String> hashPatches() throws IOException {
+        final Map<String, String> hashes = new TreeMap<>();
+        if (Files.isDirectory(patches)) {
+            try (Stream<Path> files = Files.walk(patches)) {
+                for (Path file : files.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                    final String name = patches.relativize(file).toString().replace('\\', '/');
+                    if (isPatch(name)) {
+                        hashes.put(name, HashFunction.SHA1.hash(file));
+                    }
+                }
+            }
+            return hashes;
+        }
+
+        try (ZipFile zip = new ZipFile(patches.toFile())) {
+            for (ZipEntry entry : Collections.list(zip.entries())) {
+                if (!entry.isDirectory() && isPatch(entry.getName())) {
+                    try (InputStream stream = zip.getInputStream(entry)) {
+                        hashes.put(entry.getName(), HashFunction.SHA1.hash(stream));
+                    }
+                }
+            }
+        }
+        return hashes;
+    }
+
+    private boolean isPatch(String name) {
+        return name.startsWith(patchesPrefix) && name.endsWith(PATCH_SUFFIX);
+    }
+
+    /**
+     * @return The path of the file in the base jar which is patched by the given patch.
+     */
+    private String targetOf(String patch) {
+        String target = patch.substring(patchesPrefix.length(), patch.length() - PATCH_SUFFIX.length());
+        while (target.startsWith("/")) {
+            target = target.substring(1);
+        }
+        return target;
+    }
+
+    /**
+     * Reads the state of the previous run, if the previous output can be reused.
+     */
+    private State readState() throws IOException {
+        if (!stateFile.isFile() || !output.isFile())
+            return null;
+
+        final Map<String, String> baseHashes = new HashMap<>();
+        final Map<String, String> patchHashes = new HashMap<>();
+        final String outputHash;
+        try (BufferedReader reader = Files.newBufferedReader(stateFile.toPath(), StandardCharsets.UTF_8)) {
+            if (!STATE_HEADER.equals(reader.readLine()) || !settings.equals(reader.readLine()))
+                return null;
+
+            outputHash = reader.readLine();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String[] parts = line.split("\t", 3);
+                if (parts.length != 3)
+                    return null;
+
+                if (parts[0].equals("b")) {
+                    baseHashes.put(parts[1], parts[2]);
+                } else if (parts[0].equals("p")) {
+                    patchHashes.put(parts[1], parts[2]);
+                } else {
+                    return null;
+                }
+            }
+        }
+
+        //The output might have been replaced, for example by an output loaded from the build cache.
+        if (outputHash == null || !outputHash.equals(HashFunction.SHA1.hash(output)))
+            return null;
+
+        return new State(settings, baseHashes, patchHashes);
+    }
+
+    /**
+     * Records the state of a run. Runs with rejected hunks are recorded as well, as the rejects of the files which are
+     * not patched again are kept by the next run. Failed runs, and runs with rejects which can not be merged, are not
+     * recorded, so that the next run applies all patches again.
+     */
+    private void writeState(int exit, State state) throws IOException {
+        if (isFailure(exit) || (exit != 0 && !canMergeRejects()) || !output.isFile())
+            return;
+
+        try (BufferedWriter writer = Files.newBufferedWriter(stateFile.toPath(), StandardCharsets.UTF_8)) {
+            writer.write(STATE_HEADER);
+            writer.newLine();
+            writer.write(state.settings);
+            writer.newLine();
+            writer.write(HashFunction.SHA1.hash(output));
+            writer.newLine();
+            for (Map.Entry<String, String> entry : state.baseHashes.entrySet()) {
+                writer.write("b\t" + entry.getKey() + "\t" + entry.getValue());
+                writer.newLine();
+            }
+            for (Map.Entry<String, String> entry : state.patchHashes.entrySet()) {
+                writer.write("p\t" + entry.getKey() + "\t" + entry.getValue());
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Applies patches to a base jar.
+     */
+    @FunctionalInterface
+    public interface PatchAction {
+        /**
+         * @param base The jar with the files to patch
+         * @param patches The patches, in the same form as the patches given to the patcher
+         * @param output The jar to write
+         * @param rejects Where to write the rejects, in the same form as the rejects given to the patcher
+         * @return The exit code of the patch operation
+         */
+        int apply(Path base, Path patches, Path output, Path rejects) throws IOException;
+    }
+
+    /**
+     * A part of the files to patch, with its own inputs and outputs in the workspace.
+     */
+    private final class Shard {
+        private final Path directory;
+        private final Set<String> files;
+        private final Path rejects;
+
+        private Shard(Path directory, Set<String> files, Path rejects) {
+            this.directory = directory;
+            this.files = files;
+            this.rejects = rejects;
+        }
+
+        private Path base() {
+            return directory.resolve("base.jar");
+        }
+
+        private Path patches() {
+            return directory.resolve(Files.isDirectory(IncrementalPatcher.this.patches) ? "patches" : "patches.zip");
+        }
+
+        private Path output() {
+            return directory.resolve("output.jar");
+        }
+
+        private Path rejects() {
+            return rejects;
+        }
+    }
+
+    private final class State {
+        private final String settings;
+        private final Map<String, String> baseHashes;
+        private final Map<String, String> patchHashes;
+        private final Map<String, String> patchTargets = new HashMap<>();
+
+        private State(String settings, Map<String, String> baseHashes, Map<String, String> patchHashes) {
+            this.settings = settings;
+            this.baseHashes = baseHashes;
+            this.patchHashes = patchHashes;
+            for (String patch : patchHashes.keySet()) {
+                patchTargets.put(patch, targetOf(patch));
+            }
+        }
+
+        /**
+         * @return The files whose content or patch differs from the given previous state.
+         */
+        private Set<String> changedFiles(State previous) {
+            final Set<String> changed = new HashSet<>();
+            collectChanged(baseHashes, previous.baseHashes, changed, name -> name);
+            collectChanged(patchHashes, previous.patchHashes, changed, IncrementalPatcher.this::targetOf);
+            return changed;
+        }
+
+        private void collectChanged(Map<String, String> current, Map<String, String> previous, Set<String> changed, Function<String, String> target) {
+            for (Map.Entry<String, String> entry : current.entrySet()) {
+                if (!entry.getValue().equals(previous.get(entry.getKey()))) {
+                    changed.add(target.apply(entry.getKey()));
+                }
+            }
+            for (String name : previous.keySet()) {
+                if (!current.containsKey(name)) {
+                    changed.add(target.apply(name));
+                }
+            }
+        }
+    }
+}
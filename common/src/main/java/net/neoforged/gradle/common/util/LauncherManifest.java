@@ -0,0 +1,155 @@
+package net.neoforged.gradle.common.util;
+
+import com.google.common.collect.ImmutableMap;
+import net.neoforged.gradle.common.caching.ParsedFileCache;
+
+import javax.annotation.Nullable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable model of the launcher manifest, which lists all released game versions and the url of their version json,
+ * indexed by the version id.
+ */
+public final class LauncherManifest {
+
+    /**
+     * The format of the model in a {@link ParsedFileCache}.
+     */
+    public static final ParsedFileCache.Format<LauncherManifest> FORMAT = new ParsedFileCache.Format<LauncherManifest>() {
+        @Override
+        public String getName() {
+            return "launcher-manifest-v1";
+        }
+
+        @Override
+        public LauncherManifest parse(File file) {
+            return LauncherManifest.read(file);
+        }
+
+        @Override
+        public LauncherManifest read(DataInputStream input) throws IOException {
+            final int count = input.readInt();
+            final ImmutableMap.Builder<String, String> urls = ImmutableMap.builder();
+            for (int i = 0; i < count; i++) {
+                urls.put(input.readUTF(), input.readUTF());
+            }
+            return new LauncherManifest(urls.build());
+        }
+
+        @Override
+        public void write(DataOutputStream output, LauncherManifest model) throws IOException {
+            output.writeInt(model.urls.size());
+            for (Map.Entry<String, String> entry : model.urls.entrySet()) {
+                output.writeUTF(entry.getKey());
+                output.writeUTF(entry.getValue());
+            }
+        }
+    };
+
+    private final ImmutableMap<String, String> urls;
+
+    private LauncherManifest(ImmutableMap<String, String> urls) {
+        this.urls = urls;
+    }
+
+    /**
+     * Gets the model of the given launcher manifest file.
+     *
+     * @param cacheDirectory The cache directory which holds the file
+     * @param file The launcher manifest file
+     * @return The model
+     */
+    public static LauncherManifest get(File cacheDirectory, File file) {
+        try {
+            return ParsedFileCache.in(cacheDirectory).get(file, FORMAT);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read the launcher manifest: " + file, e);
+        }
+    }
+
+    /**
+     * Parses the given launcher manifest file, without caching the result.
+     *
+     * @param file The launcher manifest file
+     * @return The model
+     */
+    public static LauncherManifest read(File file) {
+        return SerializationUtils.read(file, reader -> {
+            //Duplicate ids keep the url of their first occurrence, matching a linear scan of the versions.
+            final Map<String, String> urls = new LinkedHashMap<>();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!reader.nextName().equals("versions")) {
+                    reader.skipValue();
+                    continue;
+                }
+
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    String id = null;
+                    String url = null;
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        switch (reader.nextName()) {
+                            case "id":
+                                id = reader.nextString();
+                                break;
+                            case "url":
+                                url = reader.nextString();
+                                break;
+                            default:
+                                reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+
+                    if (id == null || url == null)
+                        throw new IOException("Version entry without an id or url in the launcher manifest");
+
+                    urls.putIfAbsent(id, url);
+                }
+                reader.endArray();
+            }
+            reader.endObject();
+            return new LauncherManifest(ImmutableMap.copyOf(urls));
+        });
+    }
+
+    /**
+     * @return The ids of all versions, in the order of the manifest, which lists the newest version first.
+     */
+    public List<String> getVersions() {
+        return urls.keySet().asList();
+    }
+
+    /**
+     * @return The id of the first, and thus newest, version in the manifest.
+     * @throws IllegalStateException If the manifest does not contain any version
+     */
+    public String getNewestVersion() {
+        if (urls.isEmpty())
+            throw new IllegalStateException("Could not find the correct version json.");
+
+        return urls.keySet().iterator().next();
+    }
+
+    /**
+     * Gets the url of the version json of the given version.
+     *
+     * @param version The version id, or {@code +} for the newest version
+     * @return The url, or null if the manifest does not contain the version
+     */
+    @Nullable
+    public String getVersionUrl(String version) {
+        if (version.equals("+"))
+            return urls.isEmpty() ? null : urls.values().iterator().next();
+
+        return urls.get(version);
+    }
+}
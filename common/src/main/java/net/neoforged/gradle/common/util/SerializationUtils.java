@@ -21,8 +21,12 @@
 package net.neoforged.gradle.common.util;
 
 import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 
 /**
  * Utility class for serializing and deserializing objects to and from JSON.
@@ -39,22 +43,44 @@ public class SerializationUtils {
      * @param <T> The type of the object to load.
      */
     public static <T> T fromJson(File file, Class<T> assetIndexClass) {
-        InputStream fileInputStream = null;
-        try {
-            fileInputStream = new FileInputStream(file);
-            return GSON.fromJson(new InputStreamReader(fileInputStream), assetIndexClass);
-        } catch (FileNotFoundException e) {
+        return read(file, reader -> GSON.fromJson(reader, assetIndexClass));
+    }
+
+    /**
+     * Loads an object from a JSON file, by streaming over its tokens.
+     * Use this over {@link #fromJson(File, Class)} when only a part of a large file is needed, as no intermediate
+     * tree of the file is built.
+     *
+     * @param file The file to load from.
+     * @param function The function which reads the object from the tokens of the file.
+     * @return The loaded object.
+     * @param <T> The type of the object to load.
+     */
+    public static <T> T read(File file, JsonStreamReader<T> function) {
+        try (JsonReader reader = new JsonReader(Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8))) {
+            return function.read(reader);
+        } catch (NoSuchFileException e) {
             throw new RuntimeException("Could not find the file!", e);
+        } catch (IOException | IllegalStateException e) {
+            throw new JsonParseException("Failed to read the JSON file: " + file, e);
         }
-        finally {
-            if (fileInputStream != null) {
-                try {
-                    fileInputStream.close();
-                } catch (IOException e) {
-                    //noinspection ThrowFromFinallyBlock
-                    throw new RuntimeException("Failed to close file stream!", e);
-                }
-            }
-        }
+    }
+
+    /**
+     * Reads an object from the tokens of a JSON document.
+     *
+     * @param <T> The type of the object to read.
+     */
+    @FunctionalInterface
+    public interface JsonStreamReader<T> {
+
+        /**
+         * Reads the object from the given reader.
+         *
+         * @param reader The reader, positioned at the start of the document.
+         * @return The object.
+         * @throws IOException If the document could not be read, or is malformed.
+         */
+        T read(JsonReader reader) throws IOException;
     }
 }
@@ -0,0 +1,182 @@
+package net.neoforged.gradle.common.util;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.stream.JsonReader;
+import net.neoforged.gradle.common.caching.ParsedFileCache;
+
+import javax.annotation.Nullable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * An immutable model of the downloads of a version json, like the client and server jars and their mappings, indexed by
+ * the name of the download.
+ * <p>
+ * This only covers the part of the version json which is needed to download the game artifacts, see {@link VersionJson}
+ * for the full model.
+ */
+public final class VersionDownloads {
+
+    /**
+     * The format of the model in a {@link ParsedFileCache}.
+     */
+    public static final ParsedFileCache.Format<VersionDownloads> FORMAT = new ParsedFileCache.Format<VersionDownloads>() {
+        @Override
+        public String getName() {
+            return "version-downloads-v1";
+        }
+
+        @Override
+        public VersionDownloads parse(File file) {
+            return VersionDownloads.read(file);
+        }
+
+        @Override
+        public VersionDownloads read(DataInputStream input) throws IOException {
+            final String id = input.readUTF();
+            final int count = input.readInt();
+            final ImmutableMap.Builder<String, Download> downloads = ImmutableMap.builder();
+            for (int i = 0; i < count; i++) {
+                downloads.put(input.readUTF(), new Download(input.readUTF(), input.readUTF()));
+            }
+            return new VersionDownloads(id, downloads.build());
+        }
+
+        @Override
+        public void write(DataOutputStream output, VersionDownloads model) throws IOException {
+            output.writeUTF(model.id);
+            output.writeInt(model.downloads.size());
+            for (Map.Entry<String, Download> entry : model.downloads.entrySet()) {
+                output.writeUTF(entry.getKey());
+                output.writeUTF(entry.getValue().url);
+                output.writeUTF(entry.getValue().sha1);
+            }
+        }
+    };
+
+    private final String id;
+    private final ImmutableMap<String, Download> downloads;
+
+    private VersionDownloads(String id, ImmutableMap<String, Download> downloads) {
+        this.id = id;
+        this.downloads = downloads;
+    }
+
+    /**
+     * Gets the model of the given version json file.
+     *
+     * @param cacheDirectory The cache directory which holds the file
+     * @param file The version json file
+     * @return The model
+     */
+    public static VersionDownloads get(File cacheDirectory, File file) {
+        try {
+            return ParsedFileCache.in(cacheDirectory).get(file, FORMAT);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read the version json: " + file, e);
+        }
+    }
+
+    /**
+     * Parses the given version json file, without caching the result.
+     * Only the id and the downloads are read, everything else, like the libraries, is skipped.
+     *
+     * @param file The version json file
+     * @return The model
+     */
+    public static VersionDownloads read(File file) {
+        return SerializationUtils.read(file, reader -> {
+            String id = null;
+            final ImmutableMap.Builder<String, Download> downloads = ImmutableMap.builder();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "id":
+                        id = reader.nextString();
+                        break;
+                    case "downloads":
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            downloads.put(reader.nextName(), readDownload(reader));
+                        }
+                        reader.endObject();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            if (id == null)
+                throw new IOException("The version json does not contain an id");
+
+            return new VersionDownloads(id, downloads.build());
+        });
+    }
+
+    private static Download readDownload(JsonReader reader) throws IOException {
+        String url = null;
+        String sha1 = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "url":
+                    url = reader.nextString();
+                    break;
+                case "sha1":
+                    sha1 = reader.nextString();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (url == null || sha1 == null)
+            throw new IOException("Download without a url or sha1 in the version json");
+
+        return new Download(url, sha1);
+    }
+
+    /**
+     * @return The id of the version.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Gets the download with the given name, for example {@code client} or {@code server_mappings}.
+     *
+     * @param name The name of the download
+     * @return The download, or null if the version does not have a download with the given name
+     */
+    @Nullable
+    public Download getDownload(String name) {
+        return downloads.get(name);
+    }
+
+    /**
+     * A single download of a version.
+     */
+    public static final class Download {
+        private final String url;
+        private final String sha1;
+
+        private Download(String url, String sha1) {
+            this.url = url;
+            this.sha1 = sha1;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public String getSha1() {
+            return sha1;
+        }
+    }
+}
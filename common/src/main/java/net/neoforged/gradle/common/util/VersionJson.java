@@ -57,7 +57,7 @@ public class VersionJson implements Serializable {
     }
 
     public static VersionJson get(InputStream stream) {
-        return GSON.fromJson(new InputStreamReader(stream, StandardCharsets.UTF_8), VersionJson.class);
+        return GSON.fromJson(new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8)), VersionJson.class);
     }
 
     private String id;
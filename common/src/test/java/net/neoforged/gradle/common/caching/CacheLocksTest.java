@@ -0,0 +1,59 @@
+package net.neoforged.gradle.common.caching;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class CacheLocksTest {
+
+    @TempDir
+    public Path tempDir;
+
+    @Test
+    public void nestedLocksOfTheSameStripeReenter() throws IOException {
+        final CacheLocks locks = CacheLocks.in(tempDir, 4);
+
+        //Two files which share a stripe, like an object and the file it is verified against.
+        final String result = locks.withLock(1, "stripe-1.lock", () -> locks.withLock(1, "stripe-1.lock", () -> "nested"));
+
+        assertEquals("nested", result);
+        //The file lock was released by the outermost acquisition, so it can be taken again.
+        assertEquals("again", locks.withLock(1, "stripe-1.lock", () -> "again"));
+    }
+
+    @Test
+    public void waitsForOverlappingLockOfTheSameJvm() throws Exception {
+        final CacheLocks locks = CacheLocks.in(tempDir, 4);
+        final Path lockFile = tempDir.resolve("stripe-2.lock");
+        Files.createDirectories(lockFile.getParent());
+
+        //A lock held through another channel, like the copy of the service in another class loader.
+        final CompletableFuture<String> locked;
+        try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock ignored = channel.lock()) {
+            locked = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return locks.withLock(2, "stripe-2.lock", () -> "locked");
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+
+            Thread.sleep(100);
+            assertFalse(locked.isDone());
+        }
+
+        assertEquals("locked", locked.get(10, TimeUnit.SECONDS));
+    }
+}
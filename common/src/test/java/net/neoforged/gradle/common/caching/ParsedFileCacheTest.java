@@ -0,0 +1,109 @@
+package net.neoforged.gradle.common.caching;
+
+import net.neoforged.gradle.util.HashFunction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ParsedFileCacheTest {
+
+    @TempDir
+    public Path tempDir;
+
+    private final AtomicInteger parses = new AtomicInteger();
+
+    private final ParsedFileCache.Format<String> format = new ParsedFileCache.Format<String>() {
+        @Override
+        public String getName() {
+            return "test-v1";
+        }
+
+        @Override
+        public String parse(File file) throws IOException {
+            parses.incrementAndGet();
+            return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).trim();
+        }
+
+        @Override
+        public String read(DataInputStream input) throws IOException {
+            return input.readUTF();
+        }
+
+        @Override
+        public void write(DataOutputStream output, String model) throws IOException {
+            output.writeUTF(model);
+        }
+    };
+
+    @BeforeEach
+    public void forgetParsedModels() {
+        ParsedFileCache.clear();
+    }
+
+    @Test
+    public void parsesFileOnlyOnce() throws IOException {
+        final File file = write("manifest.json", "first");
+        final ParsedFileCache cache = new ParsedFileCache(tempDir.toFile());
+
+        assertEquals("first", cache.get(file, format));
+        assertEquals("first", cache.get(file, format));
+        assertEquals(1, parses.get());
+        assertTrue(Files.isRegularFile(tempDir.resolve(ParsedFileCache.DIRECTORY).resolve(HashFunction.SHA1.hash(file) + ".test-v1.bin")));
+        assertFalse(Files.exists(tempDir.resolve("manifest.json.test-v1.bin")));
+    }
+
+    @Test
+    public void laterBuildsReadTheStoredModel() throws IOException {
+        final File file = write("manifest.json", "first");
+        new ParsedFileCache(tempDir.toFile()).get(file, format);
+        ParsedFileCache.clear();
+
+        assertEquals("first", new ParsedFileCache(tempDir.toFile()).get(file, format));
+        assertEquals(1, parses.get());
+    }
+
+    @Test
+    public void changedFileIsParsedAgain() throws IOException {
+        final File file = write("manifest.json", "first");
+        final ParsedFileCache cache = new ParsedFileCache(tempDir.toFile());
+        cache.get(file, format);
+
+        write("manifest.json", "second version");
+        assertEquals("second version", cache.get(file, format));
+        ParsedFileCache.clear();
+        assertEquals("second version", new ParsedFileCache(tempDir.toFile()).get(file, format));
+        assertEquals(2, parses.get());
+    }
+
+    @Test
+    public void modelsAreSharedByContentHash() throws IOException {
+        final File file = write("mappings.tsrg", "mappings");
+        final Object model = new Object();
+        ParsedFileCache.put(HashFunction.SHA1.hash(file), "model", model);
+
+        assertSame(model, new ParsedFileCache(tempDir.toFile()).get(file, "model", () -> {
+            throw new AssertionError("The model should not be parsed again");
+        }));
+        assertEquals("other", ParsedFileCache.get(HashFunction.SHA1.hash(file), "other-model", () -> "other"));
+    }
+
+    private File write(String name, String content) throws IOException {
+        final Path path = tempDir.resolve(name);
+        Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+        return path.toFile();
+    }
+}
@@ -0,0 +1,73 @@
+package net.neoforged.gradle.common.caching;
+
+import net.neoforged.gradle.util.HashFunction;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class VerifiedHashIndexTest {
+
+    @TempDir
+    public Path tempDir;
+
+    @AfterEach
+    public void closeLogs() {
+        VerifiedHashIndex.closeAll();
+    }
+
+    @Test
+    public void recordsHashesInTheLog() throws IOException {
+        final Path file = write("file.txt", "content");
+        final VerifiedHashIndex index = VerifiedHashIndex.in(tempDir.toFile());
+
+        assertEquals(HashFunction.SHA1.hash(file), index.hash(file));
+
+        final List<String> lines = Files.readAllLines(tempDir.resolve(VerifiedHashIndex.INDEX_FILE), StandardCharsets.UTF_8);
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0).endsWith(file.toAbsolutePath().normalize().toString()));
+    }
+
+    @Test
+    public void appendsToTheLogWhichReplacedTheOpenOne() throws IOException {
+        final VerifiedHashIndex index = VerifiedHashIndex.in(tempDir.toFile());
+        index.hash(write("first.txt", "first"));
+
+        //Replace the log, like a compaction in another build does.
+        final Path replacement = write("replacement", "");
+        Files.move(replacement, tempDir.resolve(VerifiedHashIndex.INDEX_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        final Path second = write("second.txt", "second");
+        index.hash(second);
+
+        final List<String> lines = Files.readAllLines(tempDir.resolve(VerifiedHashIndex.INDEX_FILE), StandardCharsets.UTF_8);
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0).endsWith(second.toAbsolutePath().normalize().toString()));
+    }
+
+    @Test
+    public void reopensTheLogAfterItWasClosed() throws IOException {
+        final VerifiedHashIndex index = VerifiedHashIndex.in(tempDir.toFile());
+        index.hash(write("first.txt", "first"));
+
+        VerifiedHashIndex.closeAll();
+        index.hash(write("second.txt", "second"));
+
+        assertEquals(2, Files.readAllLines(tempDir.resolve(VerifiedHashIndex.INDEX_FILE), StandardCharsets.UTF_8).size());
+    }
+
+    private Path write(String name, String content) throws IOException {
+        final Path file = tempDir.resolve(name);
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
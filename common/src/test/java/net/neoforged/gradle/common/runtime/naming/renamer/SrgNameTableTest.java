@@ -0,0 +1,71 @@
+package net.neoforged.gradle.common.runtime.naming.renamer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class SrgNameTableTest {
+
+    @Test
+    public void behavesLikeTheMapItWasBuiltFrom() {
+        final Map<String, String> expected = createNames();
+        final SrgNameTable table = build(expected);
+
+        assertEquals(expected, table);
+        assertEquals(expected.size(), table.size());
+        assertNull(table.get("m_99_"));
+        assertNull(table.get("F_1_"));
+    }
+
+    @Test
+    public void looksUpNamesInRegions() {
+        final SrgNameTable table = build(createNames());
+        final String source = "return this.m_1_(p_123456789_) + f_007_;";
+
+        assertEquals("getValue", table.get(source, 12, 16));
+        assertEquals("input", table.get(source, 17, 29));
+        assertEquals("legacy", table.get(source, 33, 39));
+        assertNull(table.get(source, 0, 6));
+    }
+
+    @Test
+    public void survivesBinaryRoundTrip() throws IOException {
+        final Map<String, String> expected = createNames();
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        build(expected).write(new DataOutputStream(bytes));
+        final SrgNameTable read = SrgNameTable.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(expected, read);
+    }
+
+    private static Map<String, String> createNames() {
+        final Map<String, String> names = new HashMap<>();
+        names.put("m_1_", "getValue");
+        names.put("f_2_", "value");
+        names.put("p_123456789_", "input");
+        names.put("f_007_", "legacy");
+        names.put("func_71410_x", "getInstance");
+        names.put("p_1234567890_", "tooLong");
+        names.put("p_12345_1_", "lambda");
+        for (int i = 1000; i < 3000; i++) {
+            names.put("m_" + i + "_", "method" + (i % 10));
+        }
+        return names;
+    }
+
+    private static SrgNameTable build(Map<String, String> names) {
+        final SrgNameTable.Builder builder = SrgNameTable.builder();
+        names.forEach(builder::put);
+        return builder.build();
+    }
+}
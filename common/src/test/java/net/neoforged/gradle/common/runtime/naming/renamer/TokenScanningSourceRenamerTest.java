@@ -0,0 +1,117 @@
+package net.neoforged.gradle.common.runtime.naming.renamer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SuppressWarnings("deprecation")
+public class TokenScanningSourceRenamerTest {
+
+    private static final String SOURCE = String.join("\n",
+            "package net.minecraft.world;",
+            "",
+            "import java.util.function.Function;",
+            "",
+            "public class Example {",
+            "   private static final int f_12345_ = 1;",
+            "   public String field_70170_p;",
+            "   public Function<Integer, Integer> f_23456_ = (p_34567_1_, p_34568_2_) -> p_34567_1_;",
+            "",
+            "   public Example(int p_12347_) {",
+            "      this.f_23456_ = null;",
+            "   }",
+            "",
+            "   @Override",
+            "   @Deprecated",
+            "   public int m_12346_(int p_12348_) {",
+            "      String s = \"m_12346_\" + getF_12345_() + lambda$m_12346_$0 + item_12345_ + p_ab_cd_1_2_x;",
+            "      return func_71410_x() + f_12345_;",
+            "   }",
+            "",
+            "   static class Inner {",
+            "      int f_99999_;",
+            "",
+            "      Inner() {",
+            "      }",
+            "   }",
+            "}",
+            "");
+
+    @Test
+    public void producesSameOutputAsRegexBasedRenamer() throws IOException {
+        final Map<String, String> names = new HashMap<>();
+        names.put("f_12345_", "VALUE");
+        names.put("field_70170_p", "world");
+        names.put("f_23456_", "function");
+        names.put("m_12346_", "compute");
+        names.put("p_12347_", "initial");
+        names.put("p_12348_", "input");
+        names.put("p_34567_1_", "first");
+        names.put("p_34568_2_", "second");
+        names.put("func_71410_x", "getInstance");
+        names.put("p_ab_cd_1_", "unused");
+
+        final Map<String, String> docs = new HashMap<>();
+        docs.put("f_12345_", "The value");
+        docs.put("m_12346_", "Computes the value.\\nOn multiple lines.");
+        docs.put("net.minecraft.world.Example", "An example class");
+        docs.put("net.minecraft.world.Example$Inner", "An inner class");
+        docs.put("net.minecraft.world.Example$Inner#f_99999_", "An inner field");
+
+        for (String source : new String[]{SOURCE, SOURCE.replace("\n", "\r\n"), SOURCE.trim(), ""}) {
+            for (boolean javadocs : new boolean[]{true, false}) {
+                for (boolean lambdas : new boolean[]{true, false}) {
+                    final byte[] input = source.getBytes(StandardCharsets.UTF_8);
+                    final String expected = new String(new RegexRenamer(names, docs).rename(input, javadocs, lambdas), StandardCharsets.UTF_8);
+                    final String actual = new String(new ScanningRenamer(names, docs).rename(input, javadocs, lambdas), StandardCharsets.UTF_8);
+                    assertEquals(expected, actual);
+                }
+            }
+        }
+    }
+
+    private static final class RegexRenamer extends RegexBasedSourceRenamer {
+        private final Map<String, String> names;
+        private final Map<String, String> docs;
+
+        private RegexRenamer(Map<String, String> names, Map<String, String> docs) {
+            this.names = names;
+            this.docs = docs;
+        }
+
+        @Override
+        public Map<String, String> getNames() {
+            return names;
+        }
+
+        @Override
+        public Map<String, String> getDocs() {
+            return docs;
+        }
+    }
+
+    private static final class ScanningRenamer extends TokenScanningSourceRenamer {
+        private final Map<String, String> names;
+        private final Map<String, String> docs;
+
+        private ScanningRenamer(Map<String, String> names, Map<String, String> docs) {
+            this.names = names;
+            this.docs = docs;
+        }
+
+        @Override
+        public Map<String, String> getNames() {
+            return names;
+        }
+
+        @Override
+        public Map<String, String> getDocs() {
+            return docs;
+        }
+    }
+}
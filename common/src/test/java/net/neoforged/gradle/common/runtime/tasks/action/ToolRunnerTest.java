@@ -0,0 +1,136 @@
+package net.neoforged.gradle.common.runtime.tasks.action;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ToolRunnerTest {
+
+    @TempDir
+    public Path tempDir;
+
+    @Test
+    public void toolWhichReturnsHasExitCodeZero() {
+        final ByteArrayOutputStream log = new ByteArrayOutputStream();
+        assertEquals(0, run(PrintingTool.class, log, "done"));
+        assertTrue(log.toString().contains("done"));
+    }
+
+    @Test
+    public void exitOfToolEndsOnlyTheTool() {
+        final ByteArrayOutputStream log = new ByteArrayOutputStream();
+        assertEquals(3, run(ExitingTool.class, log, "3"));
+        assertTrue(log.toString().contains("exiting with 3"));
+        assertFalse(log.toString().contains("after exit"));
+    }
+
+    @Test
+    public void exitOfToolThreadIsTheExitCode() {
+        assertEquals(5, run(ExitingThreadTool.class, new ByteArrayOutputStream(), "5"));
+    }
+
+    @Test
+    public void concurrentRunsWriteIntoTheirOwnLogs() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final ByteArrayOutputStream first = new ByteArrayOutputStream();
+            final ByteArrayOutputStream second = new ByteArrayOutputStream();
+            final Future<Integer> firstRun = executor.submit(() -> run(RepeatingTool.class, first, "first"));
+            final Future<Integer> secondRun = executor.submit(() -> run(RepeatingTool.class, second, "second"));
+            assertEquals(0, (int) firstRun.get());
+            assertEquals(0, (int) secondRun.get());
+
+            assertTrue(first.toString().contains("first"));
+            assertFalse(first.toString().contains("second"));
+            assertTrue(second.toString().contains("second"));
+            assertFalse(second.toString().contains("first"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void relativeArgumentsAreResolvedAgainstTheWorkingDirectory() throws IOException {
+        final File workingDirectory = tempDir.toFile();
+        Files.write(tempDir.resolve("existing.txt"), "content".getBytes(StandardCharsets.UTF_8));
+        Files.createDirectories(tempDir.resolve("in"));
+        Files.write(tempDir.resolve("in/file.jar"), new byte[0]);
+        Files.createDirectories(tempDir.resolve("out"));
+        final String absolute = tempDir.resolve("absolute.jar").toAbsolutePath().toString();
+
+        final List<String> resolved = ToolRunner.resolveArguments(workingDirectory, Arrays.asList(
+                "--input", "in/file.jar",
+                "--output=out/file.jar",
+                "--flag",
+                "-ann", "1",
+                absolute,
+                "existing.txt",
+                "https://example.com/file.jar",
+                "net/minecraft/client/Main",
+                "-exclude=com/mojang/**"
+        ));
+
+        assertEquals(Arrays.asList(
+                "--input", new File(workingDirectory, "in/file.jar").getAbsolutePath(),
+                "--output=" + new File(workingDirectory, "out/file.jar").getAbsolutePath(),
+                "--flag",
+                "-ann", "1",
+                absolute,
+                new File(workingDirectory, "existing.txt").getAbsolutePath(),
+                "https://example.com/file.jar",
+                "net/minecraft/client/Main",
+                "-exclude=com/mojang/**"
+        ), resolved);
+    }
+
+    private static int run(Class<?> tool, ByteArrayOutputStream log, String... arguments) {
+        return ToolRunner.run(ToolRunnerTest.class.getClassLoader(), tool.getName(), arguments, log);
+    }
+
+    public static final class PrintingTool {
+        public static void main(String[] args) {
+            System.out.println(args[0]);
+        }
+    }
+
+    public static final class RepeatingTool {
+        public static void main(String[] args) throws InterruptedException {
+            for (int i = 0; i < 50; i++) {
+                System.out.println(args[0]);
+                System.err.println(args[0]);
+                Thread.sleep(1);
+            }
+        }
+    }
+
+    public static final class ExitingTool {
+        public static void main(String[] args) {
+            System.out.println("exiting with " + args[0]);
+            System.exit(Integer.parseInt(args[0]));
+            System.out.println("after exit");
+        }
+    }
+
+    public static final class ExitingThreadTool {
+        public static void main(String[] args) throws InterruptedException {
+            final Thread thread = new Thread(() -> System.exit(Integer.parseInt(args[0])));
+            thread.start();
+            thread.join();
+        }
+    }
+}
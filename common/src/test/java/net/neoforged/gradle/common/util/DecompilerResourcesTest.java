@@ -0,0 +1,31 @@
+package net.neoforged.gradle.common.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class DecompilerResourcesTest {
+
+    private static final long GIGABYTE = 1024L * 1024L * 1024L;
+
+    @Test
+    public void laptopUsesAllCoresWithBoundedHeap() {
+        final DecompilerResources resources = DecompilerResources.compute(8 * GIGABYTE, GIGABYTE / 2, 8, 1);
+        assertEquals(8, resources.getThreads());
+        assertEquals("4096m", resources.getMaxMemory());
+    }
+
+    @Test
+    public void buildAgentSplitsResourcesBetweenParallelSteps() {
+        final DecompilerResources resources = DecompilerResources.compute(256 * GIGABYTE, 4 * GIGABYTE, 64, 4);
+        assertEquals(16, resources.getThreads());
+        assertEquals("6144m", resources.getMaxMemory());
+    }
+
+    @Test
+    public void lowMemoryMachineFallsBackToASingleThread() {
+        final DecompilerResources resources = DecompilerResources.compute(4 * GIGABYTE, GIGABYTE / 2, 4, 1);
+        assertEquals(1, resources.getThreads());
+        assertEquals("1536m", resources.getMaxMemory());
+    }
+}
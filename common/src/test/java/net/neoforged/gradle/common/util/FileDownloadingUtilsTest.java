@@ -0,0 +1,201 @@
+package net.neoforged.gradle.common.util;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FileDownloadingUtilsTest {
+
+    private static final String ETAG = "\"test-etag\"";
+
+    @TempDir
+    public Path tempDir;
+
+    private final byte[] content = new byte[256 * 1024];
+    private final AtomicInteger partialResponses = new AtomicInteger();
+    private final AtomicInteger fullResponses = new AtomicInteger();
+    private HttpServer server;
+    private URL url;
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        new Random(42).nextBytes(content);
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/file", this::handle);
+        server.start();
+
+        url = new URL("http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/file");
+    }
+
+    @AfterEach
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void downloadsFileAndSkipsUnchangedFile() throws IOException {
+        final Path target = tempDir.resolve("file.bin");
+
+        assertTrue(FileDownloadingUtils.copyURLToFileIfNewer(url, target, 1, Long.MAX_VALUE));
+        assertArrayEquals(content, Files.readAllBytes(target));
+        assertEquals(ETAG, new String(Files.readAllBytes(tempDir.resolve(".download-state/file.bin.etag")), StandardCharsets.UTF_8));
+
+        assertFalse(FileDownloadingUtils.copyURLToFileIfNewer(url, target, 1, Long.MAX_VALUE));
+        assertEquals(1, fullResponses.get());
+    }
+
+    @Test
+    public void resumesPartialDownload() throws IOException {
+        final Path target = tempDir.resolve("file.bin");
+        Files.write(tempDir.resolve("file.bin.download"), Arrays.copyOf(content, 1000));
+        Files.createDirectories(tempDir.resolve(".download-state"));
+        Files.write(tempDir.resolve(".download-state/file.bin.download.etag"), ETAG.getBytes(StandardCharsets.UTF_8));
+
+        assertTrue(FileDownloadingUtils.copyURLToFileIfNewer(url, target, 1, Long.MAX_VALUE));
+        assertArrayEquals(content, Files.readAllBytes(target));
+        assertEquals(1, partialResponses.get());
+        assertEquals(0, fullResponses.get());
+        assertFalse(Files.exists(tempDir.resolve("file.bin.download")));
+        assertFalse(Files.exists(tempDir.resolve(".download-state/file.bin.download.etag")));
+    }
+
+    @Test
+    public void resumesPartialDownloadOfExistingFile() throws IOException {
+        final Path target = tempDir.resolve("file.bin");
+        Files.write(target, new byte[1000]);
+        Files.write(tempDir.resolve("file.bin.download"), Arrays.copyOf(content, 1000));
+        Files.createDirectories(tempDir.resolve(".download-state"));
+        Files.write(tempDir.resolve(".download-state/file.bin.download.etag"), ETAG.getBytes(StandardCharsets.UTF_8));
+
+        assertTrue(FileDownloadingUtils.copyURLToFileIfNewer(url, target, 1, Long.MAX_VALUE));
+        assertArrayEquals(content, Files.readAllBytes(target));
+        assertEquals(1, partialResponses.get());
+        assertEquals(0, fullResponses.get());
+        assertFalse(Files.exists(tempDir.resolve("file.bin.download")));
+    }
+
+    @Test
+    public void restartsPartialDownloadOfChangedFile() throws IOException {
+        final Path target = tempDir.resolve("file.bin");
+        Files.write(tempDir.resolve("file.bin.download"), new byte[1000]);
+        Files.createDirectories(tempDir.resolve(".download-state"));
+        Files.write(tempDir.resolve(".download-state/file.bin.download.etag"), "\"outdated\"".getBytes(StandardCharsets.UTF_8));
+
+        assertTrue(FileDownloadingUtils.copyURLToFileIfNewer(url, target, 1, Long.MAX_VALUE));
+        assertArrayEquals(content, Files.readAllBytes(target));
+        assertEquals(0, partialResponses.get());
+    }
+
+    @Test
+    public void restartsCompletePartialDownload() throws IOException {
+        final Path target = tempDir.resolve("file.bin");
+        Files.write(tempDir.resolve("file.bin.download"), content);
+        Files.createDirectories(tempDir.resolve(".download-state"));
+        Files.write(tempDir.resolve(".download-state/file.bin.download.etag"), ETAG.getBytes(StandardCharsets.UTF_8));
+
+        assertTrue(FileDownloadingUtils.copyURLToFileIfNewer(url, target, 1, Long.MAX_VALUE));
+        assertArrayEquals(content, Files.readAllBytes(target));
+        assertEquals(1, fullResponses.get());
+        assertFalse(Files.exists(tempDir.resolve("file.bin.download")));
+        assertFalse(Files.exists(tempDir.resolve(".download-state/file.bin.download.etag")));
+
+        assertFalse(FileDownloadingUtils.copyURLToFileIfNewer(url, target, 1, Long.MAX_VALUE));
+        assertEquals(1, fullResponses.get());
+    }
+
+    @Test
+    public void downloadsLargeFileInParallelChunks() throws IOException {
+        final Path target = tempDir.resolve("file.bin");
+
+        assertTrue(FileDownloadingUtils.copyURLToFileIfNewer(url, target, 4, 1024));
+        assertArrayEquals(content, Files.readAllBytes(target));
+        assertEquals(4, partialResponses.get());
+    }
+
+    @Test
+    public void downloadsSameFileConcurrentlyOnce() throws Exception {
+        final Path target = tempDir.resolve("file.bin");
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<Boolean>> downloads = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                downloads.add(executor.submit(() -> FileDownloadingUtils.copyURLToFileIfNewer(url, target, 1, Long.MAX_VALUE)));
+            }
+            for (Future<Boolean> download : downloads) {
+                download.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertArrayEquals(content, Files.readAllBytes(target));
+        assertEquals(1, fullResponses.get());
+        assertFalse(Files.exists(tempDir.resolve("file.bin.download")));
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("ETag", ETAG);
+        exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+
+        if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+
+        final String range = exchange.getRequestHeaders().getFirst("Range");
+        final String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+        if (range != null && (ifRange == null || ETAG.equals(ifRange))) {
+            final String[] bounds = range.substring("bytes=".length()).split("-", -1);
+            final int start = Integer.parseInt(bounds[0]);
+            final int end = bounds[1].isEmpty() ? content.length - 1 : Integer.parseInt(bounds[1]);
+            if (start >= content.length) {
+                exchange.getResponseHeaders().set("Content-Range", "bytes */" + content.length);
+                exchange.sendResponseHeaders(416, -1);
+                exchange.close();
+                return;
+            }
+
+            partialResponses.incrementAndGet();
+            exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + content.length);
+            send(exchange, 206, start, end + 1);
+            return;
+        }
+
+        fullResponses.incrementAndGet();
+        send(exchange, 200, 0, content.length);
+    }
+
+    private void send(HttpExchange exchange, int status, int from, int to) throws IOException {
+        exchange.sendResponseHeaders(status, to - from);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(content, from, to - from);
+        }
+    }
+}
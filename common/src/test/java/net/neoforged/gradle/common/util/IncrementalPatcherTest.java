@@ -0,0 +1,310 @@
+package net.neoforged.gradle.common.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class IncrementalPatcherTest {
+
+    private static final int FILES = 400;
+    private static final String REJECT = "REJECT";
+    private static final String DELETE = "DELETE";
+
+    @TempDir
+    public Path tempDir;
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicInteger patchedFiles = new AtomicInteger();
+    private Path base;
+    private Path patches;
+
+    @BeforeEach
+    public void createInputs() throws IOException {
+        base = tempDir.resolve("base.jar");
+        final Map<String, String> files = new LinkedHashMap<>();
+        //Not sorted, so that the order of the base jar is distinguishable from the order of the paths.
+        for (int i = FILES - 1; i >= 0; i--) {
+            files.put("pkg/File" + i + ".java", "base " + i);
+        }
+        writeBase(files);
+
+        patches = tempDir.resolve("patches");
+        for (int i = 0; i < FILES; i += 3) {
+            writePatch("pkg/File" + i + ".java", "patched " + i);
+        }
+    }
+
+    @Test
+    public void cleanOutputDoesNotDependOnParallelism() throws IOException {
+        final Path single = tempDir.resolve("single");
+        final Path parallel = tempDir.resolve("parallel");
+
+        assertEquals(0, patch(single, "rejects.zip", 1));
+        assertEquals(0, patch(parallel, "rejects.zip", 4));
+
+        assertArrayEquals(Files.readAllBytes(single.resolve("output.jar")), Files.readAllBytes(parallel.resolve("output.jar")));
+    }
+
+    @Test
+    public void incrementalOutputMatchesCleanOutput() throws IOException {
+        final Path incremental = tempDir.resolve("incremental");
+        assertEquals(0, patch(incremental, "rejects.zip", 4));
+
+        writePatch("pkg/File3.java", "changed 3");
+        writePatch("pkg/File4.java", "added 4");
+        writePatch("pkg/NewFile.java", "new");
+        Files.delete(patches.resolve("p/pkg/File6.java.patch"));
+
+        patchedFiles.set(0);
+        assertEquals(0, patch(incremental, "rejects.zip", 4));
+        assertEquals(3, patchedFiles.get());
+
+        final Path clean = tempDir.resolve("clean");
+        assertEquals(0, patch(clean, "rejects.zip", 1));
+
+        assertArrayEquals(Files.readAllBytes(clean.resolve("output.jar")), Files.readAllBytes(incremental.resolve("output.jar")));
+    }
+
+    @Test
+    public void deletedAndAddedPatches() throws IOException {
+        final Path directory = tempDir.resolve("output");
+        assertEquals(0, patch(directory, "rejects.zip", 4));
+
+        Files.delete(patches.resolve("p/pkg/File0.java.patch"));
+        writePatch("pkg/File1.java", "added 1");
+        writePatch("pkg/NewFile.java", "new");
+        writePatch("pkg/File2.java", DELETE);
+        assertEquals(0, patch(directory, "rejects.zip", 4));
+
+        final Map<String, String> output = read(directory.resolve("output.jar"));
+        assertEquals("base 0", output.get("pkg/File0.java"));
+        assertEquals("added 1", output.get("pkg/File1.java"));
+        assertNull(output.get("pkg/File2.java"));
+        assertEquals("patched 3", output.get("pkg/File3.java"));
+        assertEquals("new", output.get("pkg/NewFile.java"));
+
+        //The base order, followed by the files which only exist through a patch.
+        final List<String> names = new ArrayList<>(output.keySet());
+        assertEquals("pkg/File" + (FILES - 1) + ".java", names.get(0));
+        assertEquals("pkg/NewFile.java", names.get(names.size() - 1));
+        assertEquals(FILES, names.size());
+    }
+
+    @Test
+    public void rejectsOfAllShardsAreMergedIntoAZip() throws IOException {
+        writePatch("pkg/File3.java", REJECT);
+        writePatch("pkg/File99.java", REJECT);
+
+        final Path directory = tempDir.resolve("output");
+        assertEquals(1, patch(directory, "rejects.zip", 4));
+        assertTrue(calls.get() > 1);
+
+        final Map<String, String> rejects = read(directory.resolve("rejects.zip"));
+        assertEquals(new ArrayList<>(new TreeMap<>(rejects).keySet()), new ArrayList<>(rejects.keySet()));
+        assertEquals(2, rejects.size());
+        assertEquals(REJECT, rejects.get("pkg/File3.java.rej"));
+        assertEquals(REJECT, rejects.get("pkg/File99.java.rej"));
+        assertEquals("base 3", read(directory.resolve("output.jar")).get("pkg/File3.java"));
+    }
+
+    @Test
+    public void rejectsOfAllShardsAreMergedIntoADirectory() throws IOException {
+        writePatch("pkg/File3.java", REJECT);
+        writePatch("pkg/File99.java", REJECT);
+
+        final Path directory = tempDir.resolve("output");
+        assertEquals(1, patch(directory, "rejects", 4));
+        assertTrue(calls.get() > 1);
+
+        assertTrue(Files.isRegularFile(directory.resolve("rejects/pkg/File3.java.rej")));
+        assertTrue(Files.isRegularFile(directory.resolve("rejects/pkg/File99.java.rej")));
+        assertFalse(Files.exists(directory.resolve("rejects/pkg/File6.java.rej")));
+    }
+
+    @Test
+    public void runWithRejectsIsFollowedByAnIncrementalRun() throws IOException {
+        writePatch("pkg/File3.java", REJECT);
+        writePatch("pkg/File99.java", REJECT);
+
+        final Path incremental = tempDir.resolve("incremental");
+        assertEquals(1, patch(incremental, "rejects.zip", 4));
+        assertTrue(Files.isRegularFile(incremental.resolve("state.txt")));
+
+        writePatch("pkg/File3.java", "fixed 3");
+        patchedFiles.set(0);
+        assertEquals(1, patch(incremental, "rejects.zip", 4));
+        assertEquals(1, patchedFiles.get());
+
+        final Map<String, String> rejects = read(incremental.resolve("rejects.zip"));
+        assertEquals(Collections.singleton("pkg/File99.java.rej"), rejects.keySet());
+        assertEquals("fixed 3", read(incremental.resolve("output.jar")).get("pkg/File3.java"));
+
+        final Path clean = tempDir.resolve("clean");
+        assertEquals(1, patch(clean, "rejects.zip", 1));
+        assertArrayEquals(Files.readAllBytes(clean.resolve("output.jar")), Files.readAllBytes(incremental.resolve("output.jar")));
+        assertArrayEquals(Files.readAllBytes(clean.resolve("rejects.zip")), Files.readAllBytes(incremental.resolve("rejects.zip")));
+
+        writePatch("pkg/File99.java", "fixed 99");
+        assertEquals(0, patch(incremental, "rejects.zip", 4));
+        assertFalse(Files.exists(incremental.resolve("rejects.zip")));
+    }
+
+    @Test
+    public void rejectsOfPatchedFilesAreClearedFromADirectory() throws IOException {
+        writePatch("pkg/File3.java", REJECT);
+        writePatch("pkg/File99.java", REJECT);
+
+        final Path directory = tempDir.resolve("output");
+        assertEquals(1, patch(directory, "rejects", 4));
+
+        writePatch("pkg/File3.java", "fixed 3");
+        patchedFiles.set(0);
+        assertEquals(1, patch(directory, "rejects", 4));
+        assertEquals(1, patchedFiles.get());
+        assertFalse(Files.exists(directory.resolve("rejects/pkg/File3.java.rej")));
+        assertTrue(Files.isRegularFile(directory.resolve("rejects/pkg/File99.java.rej")));
+
+        writePatch("pkg/File99.java", "fixed 99");
+        assertEquals(0, patch(directory, "rejects", 4));
+        assertFalse(Files.exists(directory.resolve("rejects/pkg/File99.java.rej")));
+    }
+
+    private int patch(Path directory, String rejects, int parallelism) throws IOException {
+        Files.createDirectories(directory);
+        return new IncrementalPatcher(
+                base.toFile(),
+                patches,
+                "p",
+                directory.resolve("output.jar").toFile(),
+                directory.resolve(rejects),
+                directory.resolve("state.txt").toFile(),
+                "settings",
+                parallelism
+        ).apply(this::apply);
+    }
+
+    /**
+     * A stand-in for the patch operation: a patch replaces the content of its file, unless it rejects or deletes it.
+     * Every call writes its zip with a different timestamp and compression level, like patch operations which do not
+     * produce stable output.
+     */
+    private int apply(Path base, Path patches, Path output, Path rejects) throws IOException {
+        final int call = calls.incrementAndGet();
+        final Map<String, String> rejected = new TreeMap<>();
+        final Map<String, String> files = read(base);
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(output))) {
+            out.setLevel(call % 2 == 0 ? Deflater.BEST_SPEED : Deflater.BEST_COMPRESSION);
+            //Patches of files which are not in the base jar add them, unless there are no patches at all.
+            try (Stream<Path> stream = Files.isDirectory(patches) ? Files.walk(patches) : Stream.empty()) {
+                stream.filter(Files::isRegularFile).forEach(patch -> {
+                    final String name = patches.resolve("p").relativize(patch).toString().replace('\\', '/');
+                    files.putIfAbsent(name.substring(0, name.length() - ".patch".length()), null);
+                });
+            }
+
+            for (Map.Entry<String, String> file : files.entrySet()) {
+                final Path patch = patches.resolve("p/" + file.getKey() + ".patch");
+                String content = file.getValue();
+                if (Files.exists(patch)) {
+                    patchedFiles.incrementAndGet();
+                    final String patched = new String(Files.readAllBytes(patch), StandardCharsets.UTF_8);
+                    if (patched.equals(DELETE))
+                        continue;
+
+                    if (patched.equals(REJECT)) {
+                        rejected.put(file.getKey() + ".rej", patched);
+                    } else {
+                        content = patched;
+                    }
+                }
+
+                final ZipEntry entry = new ZipEntry(file.getKey());
+                entry.setTime(System.currentTimeMillis() - call * 10_000L);
+                out.putNextEntry(entry);
+                out.write(content.getBytes(StandardCharsets.UTF_8));
+                out.closeEntry();
+            }
+        }
+
+        if (rejected.isEmpty())
+            return 0;
+
+        if (rejects.getFileName().toString().endsWith(".zip")) {
+            try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(rejects))) {
+                for (Map.Entry<String, String> reject : rejected.entrySet()) {
+                    out.putNextEntry(new ZipEntry(reject.getKey()));
+                    out.write(reject.getValue().getBytes(StandardCharsets.UTF_8));
+                    out.closeEntry();
+                }
+            }
+        } else {
+            for (Map.Entry<String, String> reject : rejected.entrySet()) {
+                final Path file = rejects.resolve(reject.getKey());
+                Files.createDirectories(file.getParent());
+                Files.write(file, reject.getValue().getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return 1;
+    }
+
+    private void writeBase(Map<String, String> files) throws IOException {
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(base))) {
+            for (Map.Entry<String, String> file : files.entrySet()) {
+                final ZipEntry entry = new ZipEntry(file.getKey());
+                entry.setTime(0);
+                out.putNextEntry(entry);
+                out.write(file.getValue().getBytes(StandardCharsets.UTF_8));
+                out.closeEntry();
+            }
+        }
+    }
+
+    private void writePatch(String file, String content) throws IOException {
+        final Path patch = patches.resolve("p/" + file + ".patch");
+        Files.createDirectories(patch.getParent());
+        Files.write(patch, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Map<String, String> read(Path zip) throws IOException {
+        final Map<String, String> contents = new LinkedHashMap<>();
+        try (ZipFile file = new ZipFile(zip.toFile())) {
+            for (ZipEntry entry : Collections.list(file.entries())) {
+                try (InputStream stream = file.getInputStream(entry)) {
+                    final ByteArrayOutputStream content = new ByteArrayOutputStream();
+                    final byte[] buffer = new byte[4096];
+                    int read;
+                    while ((read = stream.read(buffer)) != -1) {
+                        content.write(buffer, 0, read);
+                    }
+                    contents.put(entry.getName(), new String(content.toByteArray(), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return contents;
+    }
+}
@@ -32,6 +32,16 @@ interface Decompiler extends ConfigurableDSLElement<Decompiler> {
     @DSLProperty
     Property<Integer> getMaxThreads();
 
+    /**
+     * Sizes the maximum memory and threads of the decompiler from the physical memory and processors of the machine,
+     * shared between all decompile steps which can run at the same time.
+     * Explicitly configured values for the maximum memory and threads take precedence. Defaults to false.
+     */
+    @Input
+    @Optional
+    @DSLProperty
+    Property<Boolean> getAutoTune();
+
     /**
      * The log-level to use for the decompiler. Supported values: trace, info, warn, error.
      * Defaults to {@link DecompilerLogLevel#INFO}.
@@ -49,4 +59,13 @@ interface Decompiler extends ConfigurableDSLElement<Decompiler> {
     @DSLProperty
     ListProperty<String> getJvmArgs();
 
+    /**
+     * Whether only the classes which changed since a previously decompiled jar are decompiled, reusing the
+     * decompiled sources of all other classes. Defaults to false.
+     */
+    @Input
+    @Optional
+    @DSLProperty
+    Property<Boolean> getIncremental();
+
 }
@@ -40,4 +40,23 @@ interface Recompiler extends ConfigurableDSLElement<Recompiler> {
     @DSLProperty
     ListProperty<String> getArgs();
 
+    /**
+     * Compile the sources straight from the source jar into the output jar, keeping them and the compiled classes
+     * in memory instead of extracting them to disk. Uses {@link #getMaxMemory()} and {@link #getJvmArgs()} for the
+     * worker process which runs the compiler.
+     */
+    @Input
+    @Optional
+    @DSLProperty
+    Property<Boolean> getInMemory();
+
+    /**
+     * Only compile the sources which changed since the last compilation, and the sources which depend on them,
+     * patching the previous output jar. Only used together with {@link #getInMemory()}.
+     */
+    @Input
+    @Optional
+    @DSLProperty
+    Property<Boolean> getIncremental();
+
 }
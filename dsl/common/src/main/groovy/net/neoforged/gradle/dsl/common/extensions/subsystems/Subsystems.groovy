@@ -32,4 +32,11 @@ interface Subsystems extends BaseDSLElement<Subsystems> {
     @DSLProperty
     Parchment getParchment();
 
+    /**
+     * @return settings for running the tools used to set up a runtime.
+     */
+    @Nested
+    @DSLProperty
+    Tools getTools();
+
 }
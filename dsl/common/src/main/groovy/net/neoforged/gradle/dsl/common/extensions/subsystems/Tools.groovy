@@ -0,0 +1,28 @@
+package net.neoforged.gradle.dsl.common.extensions.subsystems
+
+import groovy.transform.CompileStatic
+import net.minecraftforge.gdi.ConfigurableDSLElement
+import net.minecraftforge.gdi.annotations.DSLProperty
+import org.gradle.api.provider.Property
+import org.gradle.api.tasks.Input
+import org.gradle.api.tasks.Optional
+
+/**
+ * Allows configuration of how NeoGradle runs the external tools, like the NeoForm functions, the access transformer
+ * and the binary patcher, during the setup of a runtime.
+ */
+@CompileStatic
+interface Tools extends ConfigurableDSLElement<Tools> {
+
+    /**
+     * Whether tools are run in pooled Gradle worker processes instead of a freshly forked JVM per step.
+     * Worker processes are reused for every step which runs the same tool jar with the same JVM settings, so the
+     * JVM startup and warm-up is only paid once per tool.
+     * Defaults to false.
+     */
+    @Input
+    @Optional
+    @DSLProperty
+    Property<Boolean> getUseWorkerProcesses();
+
+}
@@ -72,6 +72,16 @@ interface ExecuteSpecification extends ProjectSpecification, OutputSpecification
     @Internal
     ListProperty<String> getRuntimeProgramArguments();
 
+    /**
+     * Defines the jvm arguments which are passed to the java executable when the program is run.
+     * By default these are the jvm arguments, but they may contain additional arguments which do not influence the
+     * output of the program, like its heap size.
+     *
+     * @return The jvm arguments the program runs with.
+     */
+    @Internal
+    ListProperty<String> getRuntimeJvmArguments();
+
     /**
      * Defines the path to the executable that will be used to run the program.
      * Normally this is derived from the base java version.
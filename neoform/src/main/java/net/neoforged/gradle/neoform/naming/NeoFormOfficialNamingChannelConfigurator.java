@@ -2,6 +2,7 @@ package net.neoforged.gradle.neoform.naming;
 
 import net.minecraftforge.srgutils.IMappingFile;
 import net.minecraftforge.srgutils.IRenamer;
+import net.neoforged.gradle.common.caching.MappingFileCacheService;
 import net.neoforged.gradle.common.runtime.definition.IDelegatingRuntimeDefinition;
 import net.neoforged.gradle.common.runtime.naming.renamer.IMappingFileSourceRenamer;
 import net.neoforged.gradle.common.runtime.naming.tasks.ApplyMappingsToSourceJar;
@@ -14,10 +15,10 @@ import net.neoforged.gradle.dsl.common.runtime.naming.TaskBuildingContext;
 import net.neoforged.gradle.dsl.common.runtime.tasks.Runtime;
 import net.neoforged.gradle.dsl.common.tasks.WithOutput;
 import net.neoforged.gradle.neoform.runtime.definition.NeoFormRuntimeDefinition;
-import net.neoforged.gradle.util.IMappingFileUtils;
 import net.neoforged.gradle.util.TransformerUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.gradle.api.Project;
+import org.gradle.api.provider.Provider;
 import org.gradle.api.tasks.TaskProvider;
 import org.jetbrains.annotations.NotNull;
 
@@ -77,8 +78,10 @@ public final class NeoFormOfficialNamingChannelConfigurator {
         final File mappingsFile = new File(mcpRuntimeDefinition.getUnpackedNeoFormZipDirectory(), Objects.requireNonNull(mappingsFilePath));
 
         applySourceMappingsTask.configure(task -> {
+            task.dependsOn(mcpRuntimeDefinition.getUnpackNeoFormZipTaskProvider());
             if (task instanceof ApplyMappingsToSourceJar) {
                 final ApplyMappingsToSourceJar applyMappingsToSourceJar = (ApplyMappingsToSourceJar) task;
+                final Provider<MappingFileCacheService> mappingFileCache = applyMappingsToSourceJar.getMappingFileCache();
                 applyMappingsToSourceJar.getSourceRenamer().set(
                         context.getClientMappings()
                                 .flatMap(WithOutput::getOutput)
@@ -86,9 +89,9 @@ public final class NeoFormOfficialNamingChannelConfigurator {
                                         context.getServerMappings()
                                                 .flatMap(WithOutput::getOutput)
                                                 .map(TransformerUtils.guard(serverMappings -> {
-                                                    final IMappingFile clientMappingFile = IMappingFile.load(clientMappings.getAsFile()).reverse();
-                                                    final IMappingFile serverMappingFile = IMappingFile.load(serverMappings.getAsFile()).reverse();
-                                                    final IMappingFile mcpConfigMappings = IMappingFile.load(mappingsFile);
+                                                    final IMappingFile clientMappingFile = mappingFileCache.get().load(clientMappings.getAsFile()).reverse();
+                                                    final IMappingFile serverMappingFile = mappingFileCache.get().load(serverMappings.getAsFile()).reverse();
+                                                    final IMappingFile mcpConfigMappings = mappingFileCache.get().load(mappingsFile);
                                                     final IMappingFile reversedMcpConfigMappings = mcpConfigMappings.reverse();
                                                     return IMappingFileSourceRenamer.from(
                                                             reversedMcpConfigMappings.chain(clientMappingFile).reverse(),
@@ -146,13 +149,15 @@ public final class NeoFormOfficialNamingChannelConfigurator {
         final File mappingsFile = new File(neoformRuntimeDefinition.getUnpackedNeoFormZipDirectory(), Objects.requireNonNull(mappingsFilePath));
         
         final TaskProvider<? extends Runtime> reverseMappingsTask = context.getProject().getTasks().register(context.getTaskNameBuilder().apply(String.format("combineMappingsFor%s", StringUtils.capitalize(context.getEnvironmentName()))), WriteIMappingsFile.class, task -> {
+            task.dependsOn(neoformRuntimeDefinition.getUnpackNeoFormZipTaskProvider());
+            final Provider<MappingFileCacheService> mappingFileCache = task.getMappingFileCache();
             task.getMappings().set(
                     context.getClientMappings()
                             .flatMap(WithOutput::getOutput)
                             .map(TransformerUtils.guard(
                                     clientMappingsFile -> {
-                                        final IMappingFile neoformConfigMappings = IMappingFile.load(mappingsFile); // OBF -> OBF + PARAM
-                                        final IMappingFile clientMappingFile = IMappingFileUtils.load(clientMappingsFile.getAsFile()).reverse(); // MOJ -> OBF, reversing so that it becomes OBF -> MOJ
+                                        final IMappingFile neoformConfigMappings = mappingFileCache.get().load(mappingsFile); // OBF -> OBF + PARAM
+                                        final IMappingFile clientMappingFile = mappingFileCache.get().load(clientMappingsFile.getAsFile()).reverse(); // MOJ -> OBF, reversing so that it becomes OBF -> MOJ
                                         return new CacheableIMappingFile(neoformConfigMappings.rename(makeRenamer(clientMappingFile, true, true, true, false)));//OBF -> OBF + PARAM -> MOJ + PARAM
                                     }
                             ))
@@ -21,24 +21,66 @@
 package net.neoforged.gradle.neoform.naming.renamer;
 
 import de.siegmar.fastcsv.reader.NamedCsvReader;
-import net.neoforged.gradle.common.runtime.naming.renamer.RegexBasedSourceRenamer;
+import net.neoforged.gradle.common.caching.ParsedFileCache;
+import net.neoforged.gradle.common.runtime.naming.renamer.SrgNameTable;
+import net.neoforged.gradle.common.runtime.naming.renamer.TokenScanningSourceRenamer;
 import org.gradle.api.tasks.Nested;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
-public class NeoFormSourceRenamer extends RegexBasedSourceRenamer {
+public class NeoFormSourceRenamer extends TokenScanningSourceRenamer {
 
-    public static NeoFormSourceRenamer from(File data) throws IOException {
-        Map<String, String> names = new HashMap<>();
-        Map<String, String> docs = new HashMap<>();
+    private static final ParsedFileCache.Format<NeoFormSourceRenamer> FORMAT = new ParsedFileCache.Format<NeoFormSourceRenamer>() {
+        @Override
+        public String getName() {
+            return "neoform-names-v1";
+        }
+
+        @Override
+        public NeoFormSourceRenamer parse(File file) throws IOException {
+            return NeoFormSourceRenamer.parse(file);
+        }
+
+        @Override
+        public NeoFormSourceRenamer read(DataInputStream input) throws IOException {
+            final SrgNameTable names = SrgNameTable.read(input);
+            final SrgNameTable docs = SrgNameTable.read(input);
+            return new NeoFormSourceRenamer(names, docs);
+        }
+
+        @Override
+        public void write(DataOutputStream output, NeoFormSourceRenamer renamer) throws IOException {
+            renamer.names.write(output);
+            renamer.docs.write(output);
+        }
+    };
+
+    /**
+     * Loads the names and docs from the csv files in the given mappings zip.
+     * <p>
+     * The parsed tables are held by the {@link ParsedFileCache} of the given cache directory, so later loads of a zip
+     * with the same content do not have to parse the csv files again. The zip itself may be in a read-only location,
+     * like the dependency cache.
+     *
+     * @param cacheDirectory The cache directory of the plugin
+     * @param data The mappings zip
+     */
+    public static NeoFormSourceRenamer from(File cacheDirectory, File data) throws IOException {
+        return ParsedFileCache.in(cacheDirectory).get(data, FORMAT);
+    }
+
+    private static NeoFormSourceRenamer parse(File data) throws IOException {
+        SrgNameTable.Builder names = SrgNameTable.builder();
+        SrgNameTable.Builder docs = SrgNameTable.builder();
         try (ZipFile zip = new ZipFile(data)) {
             List<ZipEntry> entries = zip.stream().filter(e -> e.getName().endsWith(".csv")).collect(Collectors.toList());
             for (ZipEntry entry : entries) {
@@ -58,14 +100,14 @@ public class NeoFormSourceRenamer extends RegexBasedSourceRenamer {
             }
         }
 
-        return new NeoFormSourceRenamer(names, docs);
+        return new NeoFormSourceRenamer(names.build(), docs.build());
     }
 
-    private final Map<String, String> names;
+    private final SrgNameTable names;
 
-    private final Map<String, String> docs;
+    private final SrgNameTable docs;
 
-    private NeoFormSourceRenamer(Map<String, String> names, Map<String, String> docs) {
+    private NeoFormSourceRenamer(SrgNameTable names, SrgNameTable docs) {
         this.names = names;
         this.docs = docs;
     }
@@ -1,8 +1,10 @@
 package net.neoforged.gradle.neoform.naming.tasks;
 
 import net.neoforged.gradle.common.runtime.naming.tasks.ApplyMappingsToSourceJar;
+import net.neoforged.gradle.common.util.FileCacheUtils;
 import net.neoforged.gradle.neoform.naming.renamer.NeoFormSourceRenamer;
 import net.neoforged.gradle.util.TransformerUtils;
+import org.gradle.api.file.DirectoryProperty;
 import org.gradle.api.file.RegularFileProperty;
 import org.gradle.api.tasks.*;
 
@@ -10,7 +12,8 @@ import org.gradle.api.tasks.*;
 public abstract class ApplyNeoFormMappingsToSourceJar extends ApplyMappingsToSourceJar {
 
     public ApplyNeoFormMappingsToSourceJar() {
-        getSourceRenamer().convention(getMappings().map(TransformerUtils.guard(m -> NeoFormSourceRenamer.from(m.getAsFile()))));
+        getCacheDirectory().convention(FileCacheUtils.getCacheDirectory(getProject()));
+        getSourceRenamer().convention(getMappings().map(TransformerUtils.guard(m -> NeoFormSourceRenamer.from(getCacheDirectory().get().getAsFile(), m.getAsFile()))));
         getRemapLambdas().convention(true);
         getSourceRenamer().finalizeValueOnRead();
     }
@@ -18,4 +21,10 @@ public abstract class ApplyNeoFormMappingsToSourceJar extends ApplyMappingsToSou
     @InputFile
     @PathSensitive(PathSensitivity.NONE)
     public abstract RegularFileProperty getMappings();
+
+    /**
+     * @return The cache directory the parsed mappings are stored in.
+     */
+    @Internal
+    public abstract DirectoryProperty getCacheDirectory();
 }
@@ -27,6 +27,7 @@ import java.util.function.Consumer;
  */
 public class NeoFormRuntimeDefinition extends CommonRuntimeDefinition<NeoFormRuntimeSpecification> implements NeoFormDefinition<NeoFormRuntimeSpecification> {
     private final File unpackedneoformZipDirectory;
+    private final TaskProvider<? extends WithOutput> unpackNeoFormZipTaskProvider;
     private final NeoFormConfigConfigurationSpecV2 neoform;
 
     private final TaskProvider<DownloadAssets> assetsTaskProvider;
@@ -42,11 +43,13 @@ public class NeoFormRuntimeDefinition extends CommonRuntimeDefinition<NeoFormRun
                                     @NotNull Consumer<TaskProvider<? extends Runtime>> associatedTaskConsumer,
                                     @NotNull VersionJson versionJson,
                                     @NotNull File unpackedneoformZipDirectory,
+                                    @NotNull TaskProvider<? extends WithOutput> unpackNeoFormZipTaskProvider,
                                     @NotNull NeoFormConfigConfigurationSpecV2 neoform,
                                     @NotNull TaskProvider<DownloadAssets> assetsTaskProvider,
                                     @NotNull TaskProvider<ExtractNatives> nativesTaskProvider) {
         super(specification, taskOutputs, sourceJarTask, rawJarTask, gameArtifactProvidingTasks, minecraftDependenciesConfiguration, associatedTaskConsumer, versionJson);
         this.unpackedneoformZipDirectory = unpackedneoformZipDirectory;
+        this.unpackNeoFormZipTaskProvider = unpackNeoFormZipTaskProvider;
         this.neoform = neoform;
         this.assetsTaskProvider = assetsTaskProvider;
         this.nativesTaskProvider = nativesTaskProvider;
@@ -59,6 +62,15 @@ public class NeoFormRuntimeDefinition extends CommonRuntimeDefinition<NeoFormRun
         return unpackedneoformZipDirectory;
     }
 
+    /**
+     * @return The task which unpacks the NeoForm zip into the {@link #getUnpackedNeoFormZipDirectory() unpacked directory}.
+     * Tasks which read the data files of the zip have to depend on it.
+     */
+    @NotNull
+    public TaskProvider<? extends WithOutput> getUnpackNeoFormZipTaskProvider() {
+        return unpackNeoFormZipTaskProvider;
+    }
+
     @Override
     @NotNull
     public NeoFormConfigConfigurationSpecV2 getNeoFormConfig() {
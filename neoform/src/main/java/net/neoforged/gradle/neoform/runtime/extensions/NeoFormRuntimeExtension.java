@@ -5,8 +5,10 @@ import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import net.minecraftforge.gdi.ConfigurableDSLElement;
 import net.neoforged.gradle.common.runtime.extensions.CommonRuntimeExtension;
+import net.neoforged.gradle.common.runtime.tasks.Decompile;
 import net.neoforged.gradle.common.runtime.tasks.Execute;
 import net.neoforged.gradle.common.runtime.tasks.ListLibraries;
+import net.neoforged.gradle.common.util.DecompilerResources;
 import net.neoforged.gradle.common.util.ToolUtilities;
 import net.neoforged.gradle.common.util.VersionJson;
 import net.neoforged.gradle.dsl.common.extensions.Mappings;
@@ -37,9 +39,9 @@ import net.neoforged.gradle.neoform.runtime.tasks.InjectZipContent;
 import net.neoforged.gradle.neoform.runtime.tasks.Patch;
 import net.neoforged.gradle.neoform.runtime.tasks.RecompileSourceJar;
 import net.neoforged.gradle.neoform.runtime.tasks.StripJar;
+import net.neoforged.gradle.neoform.runtime.tasks.UnpackZip;
 import net.neoforged.gradle.neoform.util.NeoFormRuntimeConstants;
 import net.neoforged.gradle.neoform.util.NeoFormRuntimeUtils;
-import net.neoforged.gradle.util.CopyingFileTreeVisitor;
 import org.apache.commons.lang3.StringUtils;
 import org.gradle.api.GradleException;
 import org.gradle.api.Project;
@@ -47,7 +49,6 @@ import org.gradle.api.artifacts.Configuration;
 import org.gradle.api.artifacts.Dependency;
 import org.gradle.api.artifacts.ResolvedConfiguration;
 import org.gradle.api.file.FileCollection;
-import org.gradle.api.file.FileTree;
 import org.gradle.api.file.RegularFile;
 import org.gradle.api.provider.Provider;
 import org.gradle.api.tasks.TaskProvider;
@@ -77,10 +78,19 @@ public abstract class NeoFormRuntimeExtension extends CommonRuntimeExtension<Neo
     private static void configureMcpRuntimeTaskWithDefaults(NeoFormRuntimeSpecification spec, File neoFormDirectory, Map<String, String> symbolicDataSources, LinkedHashMap<String, TaskProvider<? extends WithOutput>> tasks, NeoFormConfigConfigurationSpecV1.Step step, Runtime neoFormRuntimeTask, Optional<TaskProvider<? extends WithOutput>> alternativeInputProvider) {
         buildArguments(neoFormRuntimeTask.getArguments(), spec, step, tasks, neoFormRuntimeTask, alternativeInputProvider);
         configureCommonRuntimeTaskParameters(neoFormRuntimeTask, symbolicDataSources, step.getName(), spec, neoFormDirectory);
+        neoFormRuntimeTask.dependsOn(buildUnpackZipTaskName(spec));
     }
 
     private static void configureMcpRuntimeTaskWithDefaults(NeoFormRuntimeSpecification spec, File neoFormDirectory, Map<String, String> symbolicDataSources, Runtime neoFormRuntimeTask) {
         configureCommonRuntimeTaskParameters(neoFormRuntimeTask, symbolicDataSources, CommonRuntimeUtils.buildStepName(spec, neoFormRuntimeTask.getName()), spec, neoFormDirectory);
+        neoFormRuntimeTask.dependsOn(buildUnpackZipTaskName(spec));
+    }
+
+    /**
+     * The name of the task which unpacks the data files of the NeoForm zip, which every step of the runtime depends on.
+     */
+    private static String buildUnpackZipTaskName(NeoFormRuntimeSpecification spec) {
+        return "unpackNeoFormZipFor" + spec.getIdentifier();
     }
 
     @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
@@ -170,6 +180,7 @@ public abstract class NeoFormRuntimeExtension extends CommonRuntimeExtension<Neo
 
         // Retrieve the default memory size from the JVM arguments configured in NeoForm
         String defaultMaxMemory = "4g";
+        int defaultMaxThreads = 0;
         List<String> jvmArgs = new ArrayList<>(function.getJvmArgs());
         for (int i = jvmArgs.size() - 1; i >= 0; i--) {
             if (jvmArgs.get(i).startsWith("-Xmx")) {
@@ -180,21 +191,27 @@ public abstract class NeoFormRuntimeExtension extends CommonRuntimeExtension<Neo
 
         // Consider user-settings
         Decompiler settings = spec.getProject().getExtensions().getByType(Subsystems.class).getDecompiler();
+        if (settings.getAutoTune().getOrElse(false)) {
+            DecompilerResources resources = DecompilerResources.forProject(spec.getProject());
+            if (resources != null) {
+                defaultMaxMemory = resources.getMaxMemory();
+                defaultMaxThreads = resources.getThreads();
+            }
+        }
         String maxMemory = settings.getMaxMemory().getOrElse(defaultMaxMemory);
-        int maxThreads = settings.getMaxThreads().getOrElse(0);
+        int maxThreads = settings.getMaxThreads().getOrElse(defaultMaxThreads);
         String logLevel = getDecompilerLogLevelArg(settings.getLogLevel().getOrElse(DecompilerLogLevel.INFO), function.getVersion());
 
         jvmArgs.addAll(settings.getJvmArgs().get());
-        jvmArgs.add("-Xmx" + maxMemory);
-        if (maxThreads > 0) {
-            decompilerArgs.add(0, "-thr=" + maxThreads);
-        }
         decompilerArgs.add(0, "-log=" + logLevel);
 
-        return spec.getProject().getTasks().register(CommonRuntimeUtils.buildTaskName(spec, step.getName()), Execute.class, task -> {
+        // The heap size and thread count are not inputs, so that the tuned values do not make the step machine specific
+        return spec.getProject().getTasks().register(CommonRuntimeUtils.buildTaskName(spec, step.getName()), Decompile.class, task -> {
             task.getExecutingJar().set(ToolUtilities.resolveTool(task.getProject(), function.getVersion()));
             task.getJvmArguments().addAll(jvmArgs);
             task.getProgramArguments().addAll(decompilerArgs);
+            task.getMaxMemory().set(maxMemory);
+            task.getMaxThreads().set(maxThreads);
         });
     }
 
@@ -249,7 +266,6 @@ public abstract class NeoFormRuntimeExtension extends CommonRuntimeExtension<Neo
                 ));
     }
 
-    @SuppressWarnings({"ResultOfMethodCallIgnored"})
     @NotNull
     protected NeoFormRuntimeDefinition doCreate(final NeoFormRuntimeSpecification spec) {
         if (this.runtimes.containsKey(spec.getIdentifier()))
@@ -274,36 +290,41 @@ public abstract class NeoFormRuntimeExtension extends CommonRuntimeExtension<Neo
             throw new RuntimeException(String.format("Failed to read VersionJson from the launcher metadata for the minecraft version: %s", spec.getMinecraftVersion()), e);
         }
 
-        final Configuration minecraftDependenciesConfiguration = spec.getProject().getConfigurations().detachedConfiguration();
-        minecraftDependenciesConfiguration.setCanBeResolved(true);
-        minecraftDependenciesConfiguration.setCanBeConsumed(false);
-        for (VersionJson.Library library : versionJson.getLibraries()) {
-            minecraftDependenciesConfiguration.getDependencies().add(
-                    spec.getProject().getDependencies().create(library.getName())
-            );
-        }
-
         final File neoFormDirectory = spec.getProject().getLayout().getBuildDirectory().dir(String.format("neoForm/%s", spec.getIdentifier())).get().getAsFile();
         final File unpackedMcpZipDirectory = new File(neoFormDirectory, "unpacked");
-        final File stepsMcpDirectory = new File(neoFormDirectory, "steps");
 
-        stepsMcpDirectory.mkdirs();
-
-        final FileTree neoFormZipFileTree = spec.getProject().zipTree(neoFormZipFile);
-        final CopyingFileTreeVisitor unpackingVisitor = new CopyingFileTreeVisitor(unpackedMcpZipDirectory);
-        neoFormZipFileTree.visit(unpackingVisitor);
-
-        final File neoFormConfigFile = new File(unpackedMcpZipDirectory, "config.json");
-        final NeoFormConfigConfigurationSpecV2 neoFormConfig = NeoFormConfigConfigurationSpecV2.get(neoFormConfigFile);
+        //Only the config is needed to build the task graph, the data files are unpacked by a task when a step needs them.
+        final NeoFormConfigConfigurationSpecV2 neoFormConfig;
+        try {
+            neoFormConfig = NeoFormConfigConfigurationSpecV2.getFromArchive(neoFormZipFile);
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Failed to read the NeoForm config from: %s", neoFormZipFile), e);
+        }
 
-        neoFormConfig.getLibraries(spec.getDistribution().getName()).forEach(library -> minecraftDependenciesConfiguration.getDependencies().add(
-                spec.getProject().getDependencies().create(library)
-        ));
+        final Configuration minecraftDependenciesConfiguration = spec.getProject().getConfigurations().detachedConfiguration();
+        minecraftDependenciesConfiguration.setCanBeResolved(true);
+        minecraftDependenciesConfiguration.setCanBeConsumed(false);
+        minecraftDependenciesConfiguration.getDependencies().addAllLater(spec.getProject().provider(() -> {
+            final List<Dependency> dependencies = new ArrayList<>();
+            for (VersionJson.Library library : versionJson.getLibraries()) {
+                dependencies.add(spec.getProject().getDependencies().create(library.getName()));
+            }
+            for (String library : neoFormConfig.getLibraries(spec.getDistribution().getName())) {
+                dependencies.add(spec.getProject().getDependencies().create(library));
+            }
+            return dependencies;
+        }));
 
         final Map<GameArtifact, TaskProvider<? extends WithOutput>> gameArtifactTasks = buildDefaultArtifactProviderTasks(spec);
 
         final Map<String, String> symbolicDataSources = buildDataFilesMap(neoFormConfig, spec.getDistribution());
 
+        final TaskProvider<? extends UnpackZip> unpackZipTask = spec.getProject().getTasks().register(buildUnpackZipTaskName(spec), UnpackZip.class, task -> {
+            task.getInputZip().set(neoFormZipFile);
+            task.getUnpackingTarget().set(unpackedMcpZipDirectory);
+            configureCommonRuntimeTaskParameters(task, symbolicDataSources, "unpackNeoForm", spec, neoFormDirectory);
+        });
+
         final TaskProvider<? extends ArtifactProvider> sourceJarTask = spec.getProject().getTasks().register("supplySourcesFor" + spec.getIdentifier(), ArtifactProvider.class, task -> {
             task.getOutput().set(new File(neoFormDirectory, "sources.jar"));
         });
@@ -323,6 +344,7 @@ public abstract class NeoFormRuntimeExtension extends CommonRuntimeExtension<Neo
                 }),
                 versionJson,
                 unpackedMcpZipDirectory,
+                unpackZipTask,
                 neoFormConfig,
                 createDownloadAssetsTasks(spec, symbolicDataSources, neoFormDirectory, versionJson),
                 createExtractNativesTasks(spec, symbolicDataSources, neoFormDirectory, versionJson)
@@ -459,6 +481,8 @@ public abstract class NeoFormRuntimeExtension extends CommonRuntimeExtension<Neo
                     forkOptions.setMemoryMaximumSize(maxMemory);
                     forkOptions.setJvmArgs(settings.getJvmArgs().get());
                     task.getOptions().getCompilerArgumentProviders().add(settings.getArgs()::get);
+                    task.getInMemory().set(settings.getInMemory());
+                    task.getIncremental().set(settings.getIncremental());
                 });
         recompileTask.configure(neoFormRuntimeTask -> configureMcpRuntimeTaskWithDefaults(spec, neoFormDirectory, symbolicDataSources, neoFormRuntimeTask));
 
@@ -1,8 +1,7 @@
 package net.neoforged.gradle.neoform.runtime.tasks;
 
-import com.google.gson.JsonObject;
 import net.neoforged.gradle.common.util.FileDownloadingUtils;
-import net.neoforged.gradle.common.util.SerializationUtils;
+import net.neoforged.gradle.common.util.VersionDownloads;
 import org.gradle.api.file.RegularFileProperty;
 import org.gradle.api.provider.Property;
 import org.gradle.api.tasks.*;
@@ -21,13 +20,13 @@ public abstract class DownloadCore extends DownloadFile {
     @Override
     public void run() throws Exception {
         if (!getDownloadInfo().isPresent()) {
-            JsonObject json = SerializationUtils.fromJson(getDownloadedVersionJson().get().getAsFile(), JsonObject.class);
+            final VersionDownloads downloads = VersionDownloads.read(getDownloadedVersionJson().get().getAsFile());
 
-            JsonObject artifactInfo = json.getAsJsonObject("downloads").getAsJsonObject(getArtifact().get());
-            String url = artifactInfo.get("url").getAsString();
-            String hash = artifactInfo.get("sha1").getAsString();
-            String version = json.getAsJsonObject().get("id").getAsString();
-            final FileDownloadingUtils.DownloadInfo info = new FileDownloadingUtils.DownloadInfo(url, hash, getExtension().get(), version, getArtifact().get());
+            final VersionDownloads.Download download = downloads.getDownload(getArtifact().get());
+            if (download == null)
+                throw new IllegalStateException("The version json does not contain the download: " + getArtifact().get());
+
+            final FileDownloadingUtils.DownloadInfo info = new FileDownloadingUtils.DownloadInfo(download.getUrl(), download.getSha1(), getExtension().get(), downloads.getId(), getArtifact().get());
 
             doDownloadFrom(info);
         } else {
@@ -3,7 +3,8 @@ package net.neoforged.gradle.neoform.runtime.tasks;
 import net.neoforged.gradle.common.runtime.tasks.DefaultRuntime;
 import net.neoforged.gradle.dsl.common.util.CacheableMinecraftVersion;
 import net.neoforged.gradle.util.FileUtils;
-import org.apache.commons.io.IOUtils;
+import net.neoforged.gradle.util.RawZipFile;
+import net.neoforged.gradle.util.RawZipOutputStream;
 import org.gradle.api.file.Directory;
 import org.gradle.api.file.RegularFile;
 import org.gradle.api.file.RegularFileProperty;
@@ -20,18 +21,18 @@ import org.gradle.api.tasks.util.PatternSet;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import java.util.zip.ZipException;
 import java.util.zip.ZipOutputStream;
 
 /**
@@ -64,17 +65,46 @@ public abstract class InjectZipContent extends DefaultRuntime {
         String packageInfoTemplateContent = findPackageInfoTemplate(injectedSources);
 
         try (OutputStream fileOut = new FileOutputStream(outputZipFile);
-             ZipOutputStream zos = new ZipOutputStream(fileOut)) {
+             RawZipOutputStream zos = new RawZipOutputStream(fileOut)) {
 
             copyInputZipContent(inputZipFile, zos, packageInfoTemplateContent);
 
             // Copy over the injection sources
             for (AbstractInjectSource injectedSource : injectedSources) {
-                injectedSource.copyTo(zos);
+                injectSource(injectedSource, zos, outputZipFile);
             }
         }
     }
 
+    /*
+     * The injection sources write into a zip stream, so they get a zip of their own, whose entries are then copied.
+     * Files which are already in the output are skipped with a warning, while directories are simply ignored.
+     */
+    private void injectSource(AbstractInjectSource injectedSource, RawZipOutputStream zos, File outputZipFile) throws IOException {
+        final Path injected = FileUtils.temporaryPath(outputZipFile.getParentFile().toPath(), outputZipFile.getName());
+        try {
+            try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(injected))) {
+                injectedSource.copyTo(out);
+            }
+
+            try (RawZipFile zis = RawZipFile.open(injected.toFile())) {
+                for (RawZipFile.Entry entry : zis.getEntries()) {
+                    try {
+                        zos.copyEntry(zis, entry);
+                    } catch (ZipException e) {
+                        if (!e.getMessage().startsWith("duplicate entry:")) {
+                            throw e;
+                        } else if (!entry.isDirectory()) {
+                            getProject().getLogger().warn("Cannot inject duplicate file {}", entry.getName());
+                        }
+                    }
+                }
+            }
+        } finally {
+            Files.deleteIfExists(injected);
+        }
+    }
+
     /*
      * We support automatically adding package-info.java files to the source jar based on a template-file
      * found in any one of the inject directories.
@@ -92,16 +122,13 @@ public abstract class InjectZipContent extends DefaultRuntime {
     }
 
     /*
-     * Copies the original ZIP content while applying the optional package-info.java transform.
+     * Copies the original ZIP content, without recompressing it, while applying the optional package-info.java transform.
      */
-    private void copyInputZipContent(File inputZipFile, ZipOutputStream zos, @Nullable String packageInfoTemplateContent) throws IOException {
+    private void copyInputZipContent(File inputZipFile, RawZipOutputStream zos, @Nullable String packageInfoTemplateContent) throws IOException {
         Set<String> visited = new HashSet<>();
-        try (ZipInputStream zis = new ZipInputStream(new FileInputStream(inputZipFile))) {
-            ZipEntry entry;
-            while ((entry = zis.getNextEntry()) != null) {
-                zos.putNextEntry(entry);
-                IOUtils.copyLarge(zis, zos);
-                zos.closeEntry();
+        try (RawZipFile zis = RawZipFile.open(inputZipFile)) {
+            for (RawZipFile.Entry entry : zis.getEntries()) {
+                zos.copyEntry(zis, entry);
 
                 if (packageInfoTemplateContent != null) {
                     String pkg = entry.isDirectory() && !entry.getName().endsWith("/") ? entry.getName() : entry.getName().indexOf('/') == -1 ? "" : entry.getName().substring(0, entry.getName().lastIndexOf('/'));
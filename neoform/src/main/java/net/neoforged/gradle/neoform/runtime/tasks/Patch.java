@@ -6,6 +6,7 @@ import codechicken.diffpatch.util.LoggingOutputStream;
 import codechicken.diffpatch.util.PatchMode;
 import codechicken.diffpatch.util.archiver.ArchiveFormat;
 import net.neoforged.gradle.common.runtime.tasks.DefaultRuntime;
+import net.neoforged.gradle.common.util.IncrementalPatcher;
 import net.neoforged.gradle.dsl.common.util.Artifact;
 import net.neoforged.gradle.dsl.common.util.ConfigurationUtils;
 import org.gradle.api.file.RegularFileProperty;
@@ -24,44 +25,63 @@ public abstract class Patch extends DefaultRuntime {
 
         getRejectsFile().fileProvider(getFileInOutputDirectory("rejects.zip"));
         getIsVerbose().convention(false);
+        getParallelism().convention(Runtime.getRuntime().availableProcessors());
     }
 
     @TaskAction
     public void run() throws Exception {
         final File input = getInput().get().getAsFile();
-        final File output = ensureFileWorkspaceReady(getOutput());
+        final File output = getOutput().get().getAsFile();
         final File rejects = getRejectsFile().get().getAsFile();
 
         // Resolve the input artifact
         File inputArtifact = ConfigurationUtils.getArtifactProvider(getProject(), getPatchArtifact().map(Artifact::getDescriptor)).get();
 
-        PatchOperation.Builder builder = PatchOperation.builder()
-                .logTo(new LoggingOutputStream(getLogger(), LogLevel.LIFECYCLE))
-                .basePath(input.toPath())
-                .patchesPath(inputArtifact.toPath(), ArchiveFormat.ZIP)
-                .patchesPrefix(getPatchDirectory().get())
-                .outputPath(output.toPath())
-                .level(getIsVerbose().get() ? codechicken.diffpatch.util.LogLevel.ALL : codechicken.diffpatch.util.LogLevel.WARN)
-                .mode(PatchMode.OFFSET)
-                .rejectsPath(rejects.toPath());
-
-        if (getPatchesModifiedPrefix().isPresent()) {
-            builder = builder.bPrefix(getPatchesModifiedPrefix().get());
-        }
-
-        if (getPatchesOriginalPrefix().isPresent()) {
-            builder = builder.aPrefix(getPatchesOriginalPrefix().get());
-        }
-
-        CliOperation.Result<PatchOperation.PatchesSummary> result = builder.build().operate();
-
-        boolean success = result.exit == 0;
+        final String settings = String.join("|",
+                PatchMode.OFFSET.name(),
+                getPatchDirectory().get(),
+                getPatchesOriginalPrefix().getOrElse(""),
+                getPatchesModifiedPrefix().getOrElse("")
+        );
+
+        final IncrementalPatcher patcher = new IncrementalPatcher(input, inputArtifact.toPath(), getPatchDirectory().get(), output, rejects.toPath(), stateFile(), settings, getParallelism().get());
+        final int exit = patcher.apply((base, patches, patched, patchRejects) -> {
+            PatchOperation.Builder builder = PatchOperation.builder()
+                    .logTo(new LoggingOutputStream(getLogger(), LogLevel.LIFECYCLE))
+                    .basePath(base)
+                    .patchesPath(patches, ArchiveFormat.ZIP)
+                    .patchesPrefix(getPatchDirectory().get())
+                    .outputPath(patched)
+                    .level(getIsVerbose().get() ? codechicken.diffpatch.util.LogLevel.ALL : codechicken.diffpatch.util.LogLevel.WARN)
+                    .mode(PatchMode.OFFSET)
+                    .rejectsPath(patchRejects);
+
+            if (getPatchesModifiedPrefix().isPresent()) {
+                builder = builder.bPrefix(getPatchesModifiedPrefix().get());
+            }
+
+            if (getPatchesOriginalPrefix().isPresent()) {
+                builder = builder.aPrefix(getPatchesOriginalPrefix().get());
+            }
+
+            CliOperation.Result<PatchOperation.PatchesSummary> result = builder.build().operate();
+            return result.exit;
+        });
+
+        boolean success = exit == 0;
         if (!success) {
             getProject().getLogger().error("Rejects saved to: {}", rejects);
             throw new RuntimeException("Patch failure.");
         }
     }
 
+    /**
+     * @return The file which holds the state of the last run, used to only re-apply the patches of changed files.
+     */
+    private File stateFile() {
+        return getFileInOutputDirectory("patch-state.txt").get();
+    }
+
     @InputFile
     @PathSensitive(PathSensitivity.NONE)
     public abstract RegularFileProperty getInput();
@@ -85,4 +105,10 @@ public abstract class Patch extends DefaultRuntime {
     @Input
     @Optional
     public abstract Property<String> getPatchesModifiedPrefix();
+
+    /**
+     * @return The amount of patch shards which are applied in parallel, defaults to the amount of available processors.
+     */
+    @Internal
+    public abstract Property<Integer> getParallelism();
 }
@@ -4,9 +4,11 @@ import net.neoforged.gradle.common.runtime.tasks.RuntimeArgumentsImpl;
 import net.neoforged.gradle.common.runtime.tasks.RuntimeMultiArgumentsImpl;
 import net.neoforged.gradle.dsl.common.runtime.tasks.RuntimeArguments;
 import net.neoforged.gradle.dsl.common.runtime.tasks.RuntimeMultiArguments;
+import net.neoforged.gradle.neoform.runtime.tasks.action.RecompileAction;
 import net.neoforged.gradle.util.ZipBuildingFileTreeVisitor;
 import net.neoforged.gradle.dsl.common.runtime.tasks.Runtime;
 import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
 import org.gradle.api.file.RegularFileProperty;
 import org.gradle.api.logging.LogLevel;
 import org.gradle.api.model.ObjectFactory;
@@ -24,15 +26,24 @@ import org.gradle.api.tasks.Optional;
 import org.gradle.api.tasks.PathSensitive;
 import org.gradle.api.tasks.PathSensitivity;
 import org.gradle.api.tasks.TaskAction;
+import org.gradle.api.tasks.compile.ForkOptions;
 import org.gradle.api.tasks.compile.JavaCompile;
 import org.gradle.jvm.toolchain.JavaLanguageVersion;
 import org.gradle.jvm.toolchain.JavaToolchainService;
 import org.gradle.jvm.toolchain.internal.CurrentJvmToolchainSpec;
+import org.gradle.work.Incremental;
 import org.gradle.work.InputChanges;
+import org.gradle.workers.WorkQueue;
+import org.gradle.workers.WorkerExecutor;
+
+import javax.inject.Inject;
 
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.zip.ZipOutputStream;
 
 @CacheableTask
@@ -76,7 +87,13 @@ public abstract class RecompileSourceJar extends JavaCompile implements Runtime
         getLogging().captureStandardError(LogLevel.ERROR);
 
         setDescription("Recompiles an already existing decompiled java jar.");
-        setSource(getProject().zipTree(getInputJar()).matching(filter -> filter.include("**/*.java")));
+        getInMemory().convention(false);
+        getIncremental().convention(false);
+        getIncrementalStateDirectory().convention(getRuntimeDirectory().dir("incremental").flatMap(d -> getStepName().map(d::dir)));
+        //The in memory compilation reads the sources from the jar itself, so there is no need to extract it.
+        setSource(getProviderFactory().provider(() -> getInMemory().get() ?
+                getInputJar() :
+                getProject().zipTree(getInputJar()).matching(filter -> filter.include("**/*.java"))));
 
         setClasspath(getCompileClasspath());
         getOptions().setAnnotationProcessorPath(getAnnotationProcessorPath());
@@ -103,6 +120,11 @@ public abstract class RecompileSourceJar extends JavaCompile implements Runtime
     @Override
     @TaskAction
     protected void compile(InputChanges inputs) {
+        if (getInMemory().get()) {
+            compileInMemory(inputs);
+            return;
+        }
+
         super.compile(inputs);
 
         if (getState().getDidWork()) {
@@ -120,7 +142,53 @@ public abstract class RecompileSourceJar extends JavaCompile implements Runtime
         }
     }
 
-    
+    private void compileInMemory(InputChanges inputs) {
+        final File outputJar = ensureFileWorkspaceReady(getOutput());
+        final ForkOptions forkOptions = getOptions().getForkOptions();
+
+        final WorkQueue queue = getWorkerExecutor().processIsolation(spec -> spec.forkOptions(options -> {
+            options.setExecutable(getJavaLauncher().get().getExecutablePath().getAsFile().getAbsolutePath());
+            options.setMaxHeapSize(forkOptions.getMemoryMaximumSize());
+            options.setJvmArgs(forkOptions.getJvmArgs());
+        }));
+        queue.submit(RecompileAction.class, params -> {
+            params.getInputJar().set(getInputJar());
+            params.getOutputJar().set(outputJar);
+            params.getClasspath().from(getCompileClasspath());
+            params.getAnnotationProcessorPath().from(getAnnotationProcessorPath());
+            params.getCompilerArgs().set(getInMemoryCompilerArgs());
+            params.getEncoding().set(getOptions().getEncoding() != null ? getOptions().getEncoding() : StandardCharsets.UTF_8.name());
+            if (getIncremental().get()) {
+                params.getStateDirectory().set(getIncrementalStateDirectory());
+                params.getClasspathChanged().set(!inputs.isIncremental() || inputs.getFileChanges(getCompileClasspath()).iterator().hasNext());
+            }
+        });
+        queue.await();
+    }
+
+    /**
+     * Builds the arguments of the compiler for the in memory compilation, mirroring the options of this task which
+     * are not related to files.
+     */
+    private List<String> getInMemoryCompilerArgs() {
+        final List<String> args = new ArrayList<>();
+        args.add("-g");
+        if (!getOptions().isWarnings()) {
+            args.add("-nowarn");
+        }
+        if (getOptions().getRelease().isPresent()) {
+            args.add("--release");
+            args.add(String.valueOf(getOptions().getRelease().get()));
+        } else {
+            args.add("-source");
+            args.add(getSourceCompatibility());
+            args.add("-target");
+            args.add(getTargetCompatibility());
+        }
+        args.addAll(getOptions().getAllCompilerArgs());
+        return args;
+    }
+
     @Override
     public RuntimeArguments getArguments() {
         return arguments;
@@ -159,8 +227,42 @@ public abstract class RecompileSourceJar extends JavaCompile implements Runtime
 
     @InputFiles
     @Classpath
+    @Incremental
     public abstract ConfigurableFileCollection getCompileClasspath();
     
+    /**
+     * Whether the sources are compiled straight from the input jar into the output jar, in memory, instead of being
+     * extracted and compiled by a regular forked compiler.
+     * Does not influence the output of the step.
+     *
+     * @return True to compile in memory.
+     */
+    @Internal
+    public abstract Property<Boolean> getInMemory();
+
+    /**
+     * Whether only the changed sources and the sources which depend on them are compiled, patching the previous
+     * output. Only used when compiling in memory.
+     * Does not influence the output of the step.
+     *
+     * @return True to compile incrementally.
+     */
+    @Internal
+    public abstract Property<Boolean> getIncremental();
+
+    /**
+     * The directory the state and the output of the last in memory compilation are kept in, for incremental
+     * compilation. It is not an output of the task, as Gradle removes the outputs of a task before a non-incremental
+     * execution.
+     *
+     * @return The directory of the incremental compilation state.
+     */
+    @Internal
+    public abstract DirectoryProperty getIncrementalStateDirectory();
+
+    @Inject
+    protected abstract WorkerExecutor getWorkerExecutor();
+
     @Override
     public abstract ObjectFactory getObjectFactory();
     
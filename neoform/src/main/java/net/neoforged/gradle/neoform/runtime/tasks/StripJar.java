@@ -1,27 +1,29 @@
 package net.neoforged.gradle.neoform.runtime.tasks;
 
 import net.neoforged.gradle.util.FileUtils;
-import net.neoforged.gradle.util.TransformerUtils;
+import net.neoforged.gradle.util.RawZipFile;
+import net.neoforged.gradle.util.RawZipOutputStream;
 import net.neoforged.gradle.common.runtime.tasks.DefaultRuntime;
-import org.apache.commons.io.IOUtils;
 import org.gradle.api.file.RegularFileProperty;
 import org.gradle.api.provider.ListProperty;
 import org.gradle.api.provider.Property;
 import org.gradle.api.tasks.CacheableTask;
 import org.gradle.api.tasks.Input;
 import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Optional;
 import org.gradle.api.tasks.PathSensitive;
 import org.gradle.api.tasks.PathSensitivity;
 import org.gradle.api.tasks.TaskAction;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.jar.JarEntry;
-import java.util.jar.JarInputStream;
-import java.util.jar.JarOutputStream;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.JarFile;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @CacheableTask
 public abstract class StripJar extends DefaultRuntime {
@@ -31,14 +33,6 @@ public abstract class StripJar extends DefaultRuntime {
 
         getMappingsFile().fileProvider(getRuntimeData().flatMap(data -> data.get("mappings")));
         getIsWhitelistMode().convention(true);
-        getFilters().convention(
-                getMappingsFile().map(
-                        TransformerUtils.guardWithResource(
-                                lines -> lines.filter(l -> !l.startsWith("\t")).map(s -> s.split(" ")[0] + ".class").collect(Collectors.toSet()),
-                                file -> FileUtils.readAllLines(file.getAsFile().toPath())
-                        )
-                )
-        );
 
         getMappingsFile().finalizeValueOnRead();
         getIsWhitelistMode().finalizeValueOnRead();
@@ -51,29 +45,53 @@ public abstract class StripJar extends DefaultRuntime {
         final File output = ensureFileWorkspaceReady(getOutput());
         final boolean isWhitelist = getIsWhitelistMode().get();
 
-        strip(input, output, isWhitelist);
+        strip(input, output, loadFilters(), isWhitelist);
     }
 
-    private void strip(File input, File output, boolean whitelist) throws IOException {
-        try (JarInputStream is = new JarInputStream(new FileInputStream(input));
+    /**
+     * Loads the names of the entries to filter, either the explicitly configured ones or all classes
+     * which are named in the mappings file.
+     */
+    private Set<String> loadFilters() {
+        if (!getFilters().get().isEmpty()) {
+            return new HashSet<>(getFilters().get());
+        }
+
+        try (Stream<String> lines = FileUtils.readAllLines(getMappingsFile().get().getAsFile().toPath())) {
+            return lines.filter(l -> !l.startsWith("\t")).map(s -> s.split(" ")[0] + ".class").collect(Collectors.toCollection(HashSet::new));
+        }
+    }
+
+    private void strip(File input, File output, Set<String> filters, boolean whitelist) throws IOException {
+        try (RawZipFile is = RawZipFile.open(input);
              FileOutputStream fout = new FileOutputStream(output);
-             JarOutputStream os = new JarOutputStream(fout)) {
+             RawZipOutputStream os = new RawZipOutputStream(fout)) {
 
-            // Ignore any entry that's not allowed
-            JarEntry entry;
-            while ((entry = is.getNextJarEntry()) != null) {
-                if (!isEntryValid(entry, whitelist)) {
+            // Ignore any entry that's not allowed, the others are copied without recompressing them
+            final List<RawZipFile.Entry> entries = is.getEntries();
+            for (int i = 0; i < entries.size(); i++) {
+                final RawZipFile.Entry entry = entries.get(i);
+                if (isLeadingManifest(entries, i) || !isEntryValid(entry, filters, whitelist)) {
                     continue;
                 }
-                os.putNextEntry(entry);
-                IOUtils.copyLarge(is, os);
-                os.closeEntry();
+                os.copyEntry(is, entry);
             }
         }
     }
 
-    private boolean isEntryValid(JarEntry entry, boolean whitelist) {
-        return !entry.isDirectory() && getFilters().get().contains(entry.getName()) == whitelist;
+    /**
+     * Checks whether the entry is the manifest at the start of the jar, which a {@link java.util.jar.JarInputStream}
+     * reads as the manifest of the jar instead of returning it as an entry, so it was never part of the stripped jar.
+     */
+    private static boolean isLeadingManifest(List<RawZipFile.Entry> entries, int index) {
+        if (!entries.get(index).getName().equalsIgnoreCase(JarFile.MANIFEST_NAME))
+            return false;
+
+        return index == 0 || (index == 1 && entries.get(0).getName().equalsIgnoreCase("META-INF/"));
+    }
+
+    private boolean isEntryValid(RawZipFile.Entry entry, Set<String> filters, boolean whitelist) {
+        return !entry.isDirectory() && filters.contains(entry.getName()) == whitelist;
     }
 
     @InputFile
@@ -84,7 +102,15 @@ public abstract class StripJar extends DefaultRuntime {
     @PathSensitive(PathSensitivity.NONE)
     public abstract RegularFileProperty getInput();
 
+    /**
+     * The names of the entries to keep, or to remove when not in whitelist mode.
+     * When no filters are configured, all classes named in the mappings file are used. Those are not part of the
+     * inputs of this task, as the mappings file already is.
+     *
+     * @return The explicitly configured filters.
+     */
     @Input
+    @Optional
     public abstract ListProperty<String> getFilters();
 
     @Input
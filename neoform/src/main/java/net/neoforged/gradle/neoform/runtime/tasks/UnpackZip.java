@@ -27,7 +27,7 @@ public abstract class UnpackZip extends DefaultRuntime {
         final File output = ensureFileWorkspaceReady(getUnpackingTarget().getAsFile().get());
         final File input = getInputZip().getAsFile().get();
 
-        final FileTree source = getProject().zipTree(input);
+        final FileTree source = getArchiveOperations().zipTree(input);
         final CopyingFileTreeVisitor visitor = new CopyingFileTreeVisitor(output);
         source.visit(visitor);
     }
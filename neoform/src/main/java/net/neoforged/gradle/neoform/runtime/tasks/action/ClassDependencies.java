@@ -0,0 +1,198 @@
+package net.neoforged.gradle.neoform.runtime.tasks.action;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * The dependencies of a compiled class, read from its class file.
+ * <p>
+ * The references are collected from the constant pool: every class entry, and every class named in a descriptor or
+ * signature. This over-approximates the classes the source depends on, which is fine for deciding what to recompile.
+ * Compile time constants are inlined by the compiler and do not show up as references, so the values of the constant
+ * fields are collected as well.
+ */
+final class ClassDependencies {
+
+    private static final int MAGIC = 0xCAFEBABE;
+
+    private final String name;
+    private final Set<String> superTypes;
+    private final Set<String> references;
+    private final Map<String, String> constants;
+
+    private ClassDependencies(String name, Set<String> superTypes, Set<String> references, Map<String, String> constants) {
+        this.name = name;
+        this.superTypes = superTypes;
+        this.references = references;
+        this.constants = constants;
+    }
+
+    /**
+     * Reads the dependencies of a class file.
+     *
+     * @param classFile The content of the class file
+     * @return The dependencies of the class
+     * @throws IOException If the content is not a valid class file
+     */
+    static ClassDependencies read(byte[] classFile) throws IOException {
+        final DataInputStream input = new DataInputStream(new ByteArrayInputStream(classFile));
+        if (input.readInt() != MAGIC)
+            throw new IOException("Not a class file");
+        input.readUnsignedShort();
+        input.readUnsignedShort();
+
+        final int poolSize = input.readUnsignedShort();
+        final int[] tags = new int[poolSize];
+        final Object[] values = new Object[poolSize];
+        for (int index = 1; index < poolSize; index++) {
+            final int tag = input.readUnsignedByte();
+            tags[index] = tag;
+            switch (tag) {
+                case 1: //Utf8
+                    values[index] = input.readUTF();
+                    break;
+                case 3: //Integer
+                    values[index] = input.readInt();
+                    break;
+                case 4: //Float
+                    values[index] = input.readFloat();
+                    break;
+                case 5: //Long
+                    values[index++] = input.readLong();
+                    break;
+                case 6: //Double
+                    values[index++] = input.readDouble();
+                    break;
+                case 7: //Class
+                case 8: //String
+                case 16: //MethodType
+                case 19: //Module
+                case 20: //Package
+                    values[index] = input.readUnsignedShort();
+                    break;
+                case 9: //Fieldref
+                case 10: //Methodref
+                case 11: //InterfaceMethodref
+                case 12: //NameAndType
+                case 17: //Dynamic
+                case 18: //InvokeDynamic
+                    input.readInt();
+                    break;
+                case 15: //MethodHandle
+                    input.readUnsignedByte();
+                    input.readUnsignedShort();
+                    break;
+                default:
+                    throw new IOException("Unknown constant pool tag: " + tag);
+            }
+        }
+
+        final Set<String> references = new HashSet<>();
+        for (int index = 1; index < poolSize; index++) {
+            if (tags[index] == 7) {
+                addClassName(references, (String) values[(Integer) values[index]]);
+            } else if (tags[index] == 1) {
+                addDescriptorClasses(references, (String) values[index]);
+            }
+        }
+
+        input.readUnsignedShort();
+        final String name = className(values, input.readUnsignedShort());
+        final Set<String> superTypes = new HashSet<>();
+        final int superClass = input.readUnsignedShort();
+        if (superClass != 0) {
+            superTypes.add(className(values, superClass));
+        }
+        final int interfaces = input.readUnsignedShort();
+        for (int i = 0; i < interfaces; i++) {
+            superTypes.add(className(values, input.readUnsignedShort()));
+        }
+
+        final Map<String, String> constants = new TreeMap<>();
+        final int fields = input.readUnsignedShort();
+        for (int i = 0; i < fields; i++) {
+            input.readUnsignedShort();
+            final String fieldName = (String) values[input.readUnsignedShort()];
+            final String descriptor = (String) values[input.readUnsignedShort()];
+            final int attributes = input.readUnsignedShort();
+            for (int j = 0; j < attributes; j++) {
+                final String attribute = (String) values[input.readUnsignedShort()];
+                final int length = input.readInt();
+                if (attribute.equals("ConstantValue")) {
+                    final int constant = input.readUnsignedShort();
+                    final Object value = tags[constant] == 8 ? values[(Integer) values[constant]] : values[constant];
+                    constants.put(fieldName + ":" + descriptor, String.valueOf(value));
+                } else {
+                    input.skipBytes(length);
+                }
+            }
+        }
+
+        references.remove(name);
+        return new ClassDependencies(name, Collections.unmodifiableSet(superTypes), Collections.unmodifiableSet(references), Collections.unmodifiableMap(constants));
+    }
+
+    private static String className(Object[] values, int classIndex) {
+        return (String) values[(Integer) values[classIndex]];
+    }
+
+    private static void addClassName(Set<String> references, String name) {
+        if (name.startsWith("[")) {
+            addDescriptorClasses(references, name);
+        } else {
+            references.add(name);
+        }
+    }
+
+    /**
+     * Adds the classes named in a descriptor or signature, in the form {@code Lname;} or {@code Lname<...>;}.
+     * Arbitrary strings may match as well, which only adds references to classes that do not exist.
+     */
+    private static void addDescriptorClasses(Set<String> references, String descriptor) {
+        int start = descriptor.indexOf('L');
+        while (start >= 0) {
+            int end = start + 1;
+            while (end < descriptor.length() && descriptor.charAt(end) != ';' && descriptor.charAt(end) != '<') {
+                end++;
+            }
+            if (end < descriptor.length() && end > start + 1) {
+                references.add(descriptor.substring(start + 1, end));
+            }
+            start = descriptor.indexOf('L', end);
+        }
+    }
+
+    /**
+     * @return The internal name of the class.
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * @return The internal names of the super class and the interfaces of the class.
+     */
+    Set<String> getSuperTypes() {
+        return superTypes;
+    }
+
+    /**
+     * @return The internal names of all classes the class refers to, excluding itself.
+     */
+    Set<String> getReferences() {
+        return references;
+    }
+
+    /**
+     * @return The values of the compile time constant fields of the class, by field name and descriptor.
+     */
+    Map<String, String> getConstants() {
+        return constants;
+    }
+}
@@ -0,0 +1,195 @@
+package net.neoforged.gradle.neoform.runtime.tasks.action;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A {@link JavaFileManager} which keeps everything the compiler writes in memory instead of on disk.
+ * <p>
+ * Class files and resources written to the {@link StandardLocation#CLASS_OUTPUT} are collected by their path in the
+ * output jar, sources generated by annotation processors are kept in memory only, so that the compiler can read them
+ * back, but do not end up in the output.
+ * Everything else, like the classpath and the platform classes, is handled by the wrapped file manager.
+ */
+final class InMemoryJavaFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+
+    private final Charset encoding;
+    private final Map<String, byte[]> classOutput = new TreeMap<>();
+    private final Map<String, String> classSources = new HashMap<>();
+
+    InMemoryJavaFileManager(StandardJavaFileManager fileManager, Charset encoding) {
+        super(fileManager);
+        this.encoding = encoding;
+    }
+
+    /**
+     * @return The content of the files written to the class output, by their path, in lexicographic order.
+     */
+    Map<String, byte[]> getClassOutput() {
+        return Collections.unmodifiableMap(classOutput);
+    }
+
+    /**
+     * @return The path of the source each file of the class output was compiled from, by the path of the file.
+     * Files which were not compiled from a source of the jar, like the output of annotation processors, are missing.
+     */
+    Map<String, String> getClassSources() {
+        return Collections.unmodifiableMap(classSources);
+    }
+
+    /**
+     * Creates a source file, whose content is read from memory.
+     *
+     * @param path The path of the source file in the source jar
+     * @param content The content of the source file
+     * @return The source file
+     */
+    JavaFileObject createSource(String path, byte[] content) {
+        return new MemorySource(path, content);
+    }
+
+    @Override
+    public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind, FileObject sibling) throws IOException {
+        if (location != StandardLocation.CLASS_OUTPUT && location != StandardLocation.SOURCE_OUTPUT)
+            return super.getJavaFileForOutput(location, className, kind, sibling);
+
+        final String path = className.replace('.', '/') + kind.extension;
+        if (location == StandardLocation.CLASS_OUTPUT && sibling instanceof MemorySource) {
+            classSources.put(path, ((MemorySource) sibling).path);
+        }
+        return new MemoryOutput(path, kind, location == StandardLocation.CLASS_OUTPUT);
+    }
+
+    @Override
+    public FileObject getFileForOutput(Location location, String packageName, String relativeName, FileObject sibling) throws IOException {
+        if (location != StandardLocation.CLASS_OUTPUT && location != StandardLocation.SOURCE_OUTPUT)
+            return super.getFileForOutput(location, packageName, relativeName, sibling);
+
+        final String path = packageName.isEmpty() ? relativeName : packageName.replace('.', '/') + "/" + relativeName;
+        return new MemoryOutput(path, JavaFileObject.Kind.OTHER, location == StandardLocation.CLASS_OUTPUT);
+    }
+
+    @Override
+    public boolean isSameFile(FileObject a, FileObject b) {
+        if (a instanceof MemoryFile || b instanceof MemoryFile)
+            return a.toUri().equals(b.toUri());
+
+        return super.isSameFile(a, b);
+    }
+
+    @Override
+    public String inferBinaryName(Location location, JavaFileObject file) {
+        if (file instanceof MemoryFile) {
+            final String path = ((MemoryFile) file).path;
+            return path.substring(0, path.length() - file.getKind().extension.length()).replace('/', '.');
+        }
+
+        return super.inferBinaryName(location, file);
+    }
+
+    private static JavaFileObject.Kind kindOf(String path) {
+        for (JavaFileObject.Kind kind : JavaFileObject.Kind.values()) {
+            if (kind != JavaFileObject.Kind.OTHER && path.endsWith(kind.extension))
+                return kind;
+        }
+        return JavaFileObject.Kind.OTHER;
+    }
+
+    private abstract class MemoryFile extends SimpleJavaFileObject {
+
+        protected final String path;
+
+        protected MemoryFile(URI uri, String path, Kind kind) {
+            super(uri, kind);
+            this.path = path;
+        }
+
+        protected abstract byte[] content() throws IOException;
+
+        @Override
+        public String getName() {
+            return path;
+        }
+
+        @Override
+        public InputStream openInputStream() throws IOException {
+            return new ByteArrayInputStream(content());
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) throws IOException {
+            return new String(content(), encoding);
+        }
+    }
+
+    private final class MemorySource extends MemoryFile {
+
+        private final byte[] content;
+
+        private MemorySource(String path, byte[] content) {
+            super(URI.create("memory:///sources/" + path), path, kindOf(path));
+            this.content = content;
+        }
+
+        @Override
+        protected byte[] content() {
+            return content;
+        }
+    }
+
+    private final class MemoryOutput extends MemoryFile {
+
+        private final boolean isClassOutput;
+        private byte[] content;
+
+        private MemoryOutput(String path, Kind kind, boolean isClassOutput) {
+            super(URI.create((isClassOutput ? "memory:///classes/" : "memory:///generated/") + path), path, kind == Kind.OTHER ? kindOf(path) : kind);
+            this.isClassOutput = isClassOutput;
+        }
+
+        @Override
+        protected byte[] content() throws IOException {
+            if (content == null)
+                throw new IOException("The file " + path + " has not been written yet");
+
+            return content;
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            return new ByteArrayOutputStream() {
+                @Override
+                public void close() throws IOException {
+                    super.close();
+                    content = toByteArray();
+                    if (isClassOutput) {
+                        classOutput.put(path, content);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public Writer openWriter() {
+            return new OutputStreamWriter(openOutputStream(), encoding);
+        }
+    }
+}
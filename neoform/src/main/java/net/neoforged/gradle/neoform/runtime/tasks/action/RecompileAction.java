@@ -0,0 +1,454 @@
+package net.neoforged.gradle.neoform.runtime.tasks.action;
+
+import net.neoforged.gradle.util.FileUtils;
+import net.neoforged.gradle.util.HashFunction;
+import net.neoforged.gradle.util.RawZipFile;
+import net.neoforged.gradle.util.RawZipOutputStream;
+import org.apache.commons.io.IOUtils;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticListener;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Compiles the sources of a jar with the system java compiler of the worker process, without extracting them.
+ * <p>
+ * The sources are read from the jar into memory, the compiled classes are kept in memory as well, and are written
+ * straight into the output jar, followed by all other entries of the source jar, which are copied without being
+ * recompressed.
+ * <p>
+ * When a state directory is given, the hashes of the sources and a copy of the output jar are kept in it after every
+ * successful compilation, and the next compilation only compiles the sources which changed and the sources which
+ * depend on them. The classes of all other sources are copied from the previous output jar.
+ * The state directory is not an output of the task, so it survives Gradle removing the outputs before a
+ * non-incremental execution.
+ */
+public abstract class RecompileAction implements WorkAction<RecompileAction.Params> {
+
+    private static final Logger LOGGER = Logging.getLogger(RecompileAction.class);
+
+    @Override
+    public void execute() {
+        final Params params = getParameters();
+        final File inputJar = params.getInputJar().get().getAsFile();
+        final File outputJar = params.getOutputJar().get().getAsFile();
+        final Charset encoding = Charset.forName(params.getEncoding().get());
+
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null)
+            throw new IllegalStateException("The java installation at " + System.getProperty("java.home") + " does not provide a java compiler");
+
+        try {
+            final Map<String, byte[]> sources = readSources(inputJar);
+            if (sources.isEmpty())
+                throw new IllegalStateException("The jar " + inputJar + " does not contain any java sources");
+
+            //Annotation processors can generate classes from any source, which can not be tracked.
+            if (!params.getStateDirectory().isPresent() || !params.getAnnotationProcessorPath().isEmpty()) {
+                compileAll(compiler, params, encoding, inputJar, outputJar, sources);
+                return;
+            }
+
+            final File stateDirectory = params.getStateDirectory().get().getAsFile();
+            final File stateFile = new File(stateDirectory, "state.txt");
+            final File previousJar = new File(stateDirectory, "previous.jar");
+            Files.createDirectories(stateDirectory.toPath());
+
+            final String settings = settings(params, encoding);
+            final Map<String, String> sourceHashes = new HashMap<>();
+            for (Map.Entry<String, byte[]> source : sources.entrySet()) {
+                sourceHashes.put(source.getKey(), HashFunction.SHA1.hash(source.getValue()));
+            }
+
+            //The classes of the previous output can not be reused if they were compiled against a different classpath.
+            final RecompileState previous = params.getClasspathChanged().get() ? null : RecompileState.read(stateFile, settings, previousJar);
+            Files.deleteIfExists(stateFile.toPath());
+
+            Map<String, String> classSources = null;
+            if (previous != null) {
+                classSources = compileChanged(compiler, params, encoding, inputJar, outputJar, previousJar, sources, previous, new RecompileState(sourceHashes, Collections.emptyMap()));
+            }
+            if (classSources == null) {
+                classSources = compileAll(compiler, params, encoding, inputJar, outputJar, sources);
+            }
+
+            final Path copy = FileUtils.temporaryPath(stateDirectory.toPath(), previousJar.getName());
+            try {
+                Files.copy(outputJar.toPath(), copy);
+                FileUtils.atomicMove(copy, previousJar.toPath());
+            } finally {
+                Files.deleteIfExists(copy);
+            }
+            new RecompileState(sourceHashes, classSources).write(stateFile, settings, previousJar);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to recompile: " + inputJar, e);
+        }
+    }
+
+    /**
+     * Compiles all sources, replacing the output jar.
+     *
+     * @return The source of every compiled class file
+     */
+    private static Map<String, String> compileAll(JavaCompiler compiler, Params params, Charset encoding, File inputJar, File outputJar, Map<String, byte[]> sources) throws IOException {
+        final InMemoryJavaFileManager compiled = compile(compiler, params, encoding, sources, params.getClasspath().getFiles());
+        writeOutput(inputJar, outputJar, compiled.getClassOutput(), null, Collections.emptySet());
+        return compiled.getClassSources();
+    }
+
+    /**
+     * Compiles the changed sources and the sources which depend on them, against the classes of the previous output,
+     * and writes the previous output jar, patched with the result, to the output jar.
+     * <p>
+     * A source depends on a changed source if one of its classes refers to a class of the changed source, or to a
+     * class which directly or indirectly extends one. Compile time constants are inlined into the classes which use
+     * them, without leaving a reference, so if the value of a constant changes all sources are compiled again.
+     *
+     * @return The source of every class file in the patched output, or null if all sources have to be compiled
+     */
+    private static Map<String, String> compileChanged(JavaCompiler compiler, Params params, Charset encoding, File inputJar, File outputJar, File previousOutput, Map<String, byte[]> sources, RecompileState previous, RecompileState current) throws IOException {
+        final Set<String> removed = current.removedSources(previous);
+        final Set<String> dirty = current.changedSources(previous);
+        dirty.addAll(removed);
+
+        final Map<String, ClassDependencies> previousClasses = readClasses(previousOutput, previous.getClassSources().keySet());
+        final Set<String> affected = affectedSources(previous.getClassSources(), previousClasses, dirty);
+        affected.removeAll(removed);
+        if (affected.size() > sources.size() / 2) {
+            LOGGER.info("Too many of the {} sources of {} changed, compiling all of them", sources.size(), inputJar.getName());
+            return null;
+        }
+
+        final Set<String> replaced = new HashSet<>(affected);
+        replaced.addAll(removed);
+        final Set<String> kept = new HashSet<>();
+        for (Map.Entry<String, String> entry : previous.getClassSources().entrySet()) {
+            if (!replaced.contains(entry.getValue())) {
+                kept.add(entry.getKey());
+            }
+        }
+
+        LOGGER.info("Compiling {} changed and dependent sources of {}", affected.size(), inputJar.getName());
+        final Path workspace = Files.createTempDirectory(previousOutput.getParentFile().toPath(), ".recompile");
+        try {
+            final InMemoryJavaFileManager compiled;
+            final boolean constantsChanged;
+            try (RawZipFile previousJar = RawZipFile.open(previousOutput)) {
+                Map<String, ClassDependencies> recompiled = Collections.emptyMap();
+                if (!affected.isEmpty()) {
+                    //The classes of the unchanged sources are compiled against the previous output, without the classes which are replaced.
+                    final Path classpathJar = workspace.resolve("classpath.jar");
+                    try (RawZipOutputStream classpath = new RawZipOutputStream(new BufferedOutputStream(Files.newOutputStream(classpathJar)))) {
+                        for (RawZipFile.Entry entry : previousJar.getEntries()) {
+                            if (kept.contains(entry.getName())) {
+                                classpath.copyEntry(previousJar, entry);
+                            }
+                        }
+                    }
+
+                    final Set<File> classpath = new LinkedHashSet<>();
+                    classpath.add(classpathJar.toFile());
+                    classpath.addAll(params.getClasspath().getFiles());
+
+                    final Map<String, byte[]> affectedSources = new TreeMap<>();
+                    for (String source : affected) {
+                        affectedSources.put(source, sources.get(source));
+                    }
+                    compiled = compile(compiler, params, encoding, affectedSources, classpath);
+                    recompiled = new HashMap<>();
+                    for (Map.Entry<String, byte[]> entry : compiled.getClassOutput().entrySet()) {
+                        recompiled.put(entry.getKey(), ClassDependencies.read(entry.getValue()));
+                    }
+                } else {
+                    compiled = null;
+                }
+
+                constantsChanged = !constants(previousClasses, previous.getClassSources(), replaced).equals(constants(recompiled, null, null));
+                if (!constantsChanged) {
+                    writeOutput(inputJar, outputJar, compiled != null ? compiled.getClassOutput() : Collections.emptyMap(), previousJar, kept);
+                }
+            }
+
+            if (constantsChanged) {
+                LOGGER.info("Compile time constants of {} changed, compiling all sources", inputJar.getName());
+                return null;
+            }
+
+            final Map<String, String> classSources = new HashMap<>(previous.getClassSources());
+            classSources.keySet().retainAll(kept);
+            if (compiled != null) {
+                classSources.putAll(compiled.getClassSources());
+            }
+            return classSources;
+        } finally {
+            FileUtils.delete(workspace);
+        }
+    }
+
+    /**
+     * Determines the sources which have to be compiled again, because they changed or depend on a changed source.
+     */
+    private static Set<String> affectedSources(Map<String, String> classSources, Map<String, ClassDependencies> classes, Set<String> dirty) {
+        final Map<String, Set<String>> subTypes = new HashMap<>();
+        final Map<String, String> sourcesByName = new HashMap<>();
+        final Set<String> changedTypes = new HashSet<>();
+        final Deque<String> queue = new ArrayDeque<>();
+        for (Map.Entry<String, ClassDependencies> entry : classes.entrySet()) {
+            final ClassDependencies dependencies = entry.getValue();
+            final String source = classSources.get(entry.getKey());
+            sourcesByName.put(dependencies.getName(), source);
+            for (String superType : dependencies.getSuperTypes()) {
+                subTypes.computeIfAbsent(superType, k -> new HashSet<>()).add(dependencies.getName());
+            }
+            if (dirty.contains(source) && changedTypes.add(dependencies.getName())) {
+                queue.add(dependencies.getName());
+            }
+        }
+
+        //A change to a class can change the members inherited by all of its sub types.
+        while (!queue.isEmpty()) {
+            for (String subType : subTypes.getOrDefault(queue.poll(), Collections.emptySet())) {
+                if (changedTypes.add(subType)) {
+                    queue.add(subType);
+                }
+            }
+        }
+
+        final Set<String> affected = new HashSet<>(dirty);
+        for (String changedType : changedTypes) {
+            affected.add(sourcesByName.get(changedType));
+        }
+        for (ClassDependencies dependencies : classes.values()) {
+            if (!Collections.disjoint(dependencies.getReferences(), changedTypes)) {
+                affected.add(sourcesByName.get(dependencies.getName()));
+            }
+        }
+        return affected;
+    }
+
+    /**
+     * Collects the compile time constants of the given classes, optionally only of the classes of the given sources.
+     */
+    private static Map<String, Map<String, String>> constants(Map<String, ClassDependencies> classes, Map<String, String> classSources, Set<String> sources) {
+        final Map<String, Map<String, String>> constants = new HashMap<>();
+        for (Map.Entry<String, ClassDependencies> entry : classes.entrySet()) {
+            if (sources != null && !sources.contains(classSources.get(entry.getKey())))
+                continue;
+
+            if (!entry.getValue().getConstants().isEmpty()) {
+                constants.put(entry.getValue().getName(), entry.getValue().getConstants());
+            }
+        }
+        return constants;
+    }
+
+    private static InMemoryJavaFileManager compile(JavaCompiler compiler, Params params, Charset encoding, Map<String, byte[]> sources, Set<File> classpath) throws IOException {
+        final DiagnosticListener<JavaFileObject> diagnostics = RecompileAction::report;
+        try (StandardJavaFileManager standardFileManager = compiler.getStandardFileManager(diagnostics, Locale.ROOT, encoding);
+             InMemoryJavaFileManager fileManager = new InMemoryJavaFileManager(standardFileManager, encoding)) {
+            standardFileManager.setLocation(StandardLocation.CLASS_PATH, classpath);
+            standardFileManager.setLocation(StandardLocation.SOURCE_PATH, new ArrayList<>());
+            if (!params.getAnnotationProcessorPath().isEmpty()) {
+                standardFileManager.setLocation(StandardLocation.ANNOTATION_PROCESSOR_PATH, params.getAnnotationProcessorPath().getFiles());
+            }
+
+            final List<JavaFileObject> compilationUnits = new ArrayList<>();
+            for (Map.Entry<String, byte[]> source : sources.entrySet()) {
+                compilationUnits.add(fileManager.createSource(source.getKey(), source.getValue()));
+            }
+
+            final List<String> options = new ArrayList<>(params.getCompilerArgs().get());
+            if (params.getAnnotationProcessorPath().isEmpty()) {
+                options.add("-proc:none");
+            }
+
+            final Boolean success = compiler.getTask(null, fileManager, diagnostics, options, null, compilationUnits).call();
+            if (!Boolean.TRUE.equals(success))
+                throw new RuntimeException("Compilation failed; see the compiler error output for details.");
+
+            return fileManager;
+        }
+    }
+
+    /**
+     * Reads the java sources of the jar into memory, by their path.
+     */
+    private static Map<String, byte[]> readSources(File inputJar) throws IOException {
+        final Map<String, byte[]> sources = new TreeMap<>();
+        try (ZipFile zip = new ZipFile(inputJar)) {
+            for (ZipEntry entry : Collections.list(zip.entries())) {
+                if (entry.isDirectory() || !entry.getName().endsWith(".java"))
+                    continue;
+
+                try (InputStream stream = zip.getInputStream(entry)) {
+                    sources.put(entry.getName(), IOUtils.toByteArray(stream));
+                }
+            }
+        }
+        return sources;
+    }
+
+    /**
+     * Reads the dependencies of the given class files of a jar, by the path of the class file.
+     */
+    private static Map<String, ClassDependencies> readClasses(File jar, Set<String> classFiles) throws IOException {
+        final Map<String, ClassDependencies> classes = new HashMap<>();
+        try (ZipFile zip = new ZipFile(jar)) {
+            for (String classFile : classFiles) {
+                final ZipEntry entry = zip.getEntry(classFile);
+                if (entry == null)
+                    throw new IOException("The class " + classFile + " is missing from " + jar);
+
+                try (InputStream stream = zip.getInputStream(entry)) {
+                    classes.put(classFile, ClassDependencies.read(IOUtils.toByteArray(stream)));
+                }
+            }
+        }
+        return classes;
+    }
+
+    /**
+     * The settings the sources are compiled with: the compiler arguments and the encoding.
+     * A change causes all sources to be compiled again. Changes to the classpath are detected by the task, from the
+     * input changes Gradle already tracks.
+     */
+    private static String settings(Params params, Charset encoding) {
+        final StringBuilder settings = new StringBuilder();
+        settings.append(String.join(" ", params.getCompilerArgs().get())).append('\n');
+        settings.append(encoding.name()).append('\n');
+        return HashFunction.SHA1.hash(settings.toString());
+    }
+
+    /**
+     * Writes the compiled classes and the kept classes of the previous output in lexicographic order, followed by every
+     * entry of the source jar which is not a java source.
+     * Directory entries are only written once, like the file tree based jar building did.
+     */
+    private static void writeOutput(File inputJar, File outputJar, Map<String, byte[]> classes, RawZipFile previous, Set<String> kept) throws IOException {
+        final Map<String, RawZipFile.Entry> previousEntries = new HashMap<>();
+        if (previous != null) {
+            for (RawZipFile.Entry entry : previous.getEntries()) {
+                if (kept.contains(entry.getName())) {
+                    previousEntries.put(entry.getName(), entry);
+                }
+            }
+        }
+
+        final Set<String> classFiles = new TreeSet<>(classes.keySet());
+        classFiles.addAll(previousEntries.keySet());
+
+        final Set<String> directories = new HashSet<>();
+        try (RawZipFile input = RawZipFile.open(inputJar);
+             RawZipOutputStream output = new RawZipOutputStream(new BufferedOutputStream(new FileOutputStream(outputJar)))) {
+            for (String classFile : classFiles) {
+                writeDirectories(output, directories, classFile);
+                final byte[] compiled = classes.get(classFile);
+                if (compiled == null) {
+                    output.copyEntry(previous, previousEntries.get(classFile));
+                    continue;
+                }
+
+                output.putNextEntry(FileUtils.getStableEntry(classFile));
+                output.write(compiled);
+                output.closeEntry();
+            }
+
+            for (RawZipFile.Entry entry : input.getEntries()) {
+                if (entry.getName().endsWith(".java"))
+                    continue;
+
+                if (entry.isDirectory()) {
+                    if (directories.add(entry.getName())) {
+                        output.copyEntry(input, entry);
+                    }
+                    continue;
+                }
+
+                writeDirectories(output, directories, entry.getName());
+                output.copyEntry(input, entry);
+            }
+        }
+    }
+
+    private static void writeDirectories(RawZipOutputStream output, Set<String> directories, String path) throws IOException {
+        int separator = path.indexOf('/');
+        while (separator >= 0) {
+            final String directory = path.substring(0, separator + 1);
+            if (directories.add(directory)) {
+                output.putNextEntry(FileUtils.getStableEntry(directory));
+                output.closeEntry();
+            }
+            separator = path.indexOf('/', separator + 1);
+        }
+    }
+
+    private static void report(Diagnostic<? extends JavaFileObject> diagnostic) {
+        if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+            LOGGER.error(diagnostic.toString());
+        } else {
+            LOGGER.info(diagnostic.toString());
+        }
+    }
+
+    public interface Params extends WorkParameters {
+
+        RegularFileProperty getInputJar();
+
+        RegularFileProperty getOutputJar();
+
+        ConfigurableFileCollection getClasspath();
+
+        ConfigurableFileCollection getAnnotationProcessorPath();
+
+        ListProperty<String> getCompilerArgs();
+
+        /**
+         * The directory the state and the output of the last compilation are kept in. When present, only the changed
+         * sources and the sources which depend on them are compiled.
+         */
+        DirectoryProperty getStateDirectory();
+
+        /**
+         * Whether the classpath might have changed since the last compilation, in which case all sources are compiled.
+         */
+        Property<Boolean> getClasspathChanged();
+
+        Property<String> getEncoding();
+    }
+}
@@ -0,0 +1,135 @@
+package net.neoforged.gradle.neoform.runtime.tasks.action;
+
+import net.neoforged.gradle.util.HashFunction;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * The state of the last successful recompilation: the hashes of the compiled sources, and which source each class
+ * file of the output was compiled from.
+ * <p>
+ * The state is only valid together with the output it was recorded for, so it also contains the hash of the output
+ * jar, and the settings the sources were compiled with.
+ */
+final class RecompileState {
+
+    private static final String STATE_HEADER = "incremental-recompile-state-v1";
+
+    private final Map<String, String> sourceHashes;
+    private final Map<String, String> classSources;
+
+    RecompileState(Map<String, String> sourceHashes, Map<String, String> classSources) {
+        this.sourceHashes = sourceHashes;
+        this.classSources = classSources;
+    }
+
+    /**
+     * @return The hashes of the sources, by their path in the source jar.
+     */
+    Map<String, String> getSourceHashes() {
+        return sourceHashes;
+    }
+
+    /**
+     * @return The path of the source each class file was compiled from, by the path of the class file.
+     */
+    Map<String, String> getClassSources() {
+        return classSources;
+    }
+
+    /**
+     * Determines the sources which were added or changed compared to the given previous state.
+     */
+    Set<String> changedSources(RecompileState previous) {
+        final Set<String> changed = new HashSet<>();
+        for (Map.Entry<String, String> entry : sourceHashes.entrySet()) {
+            if (!entry.getValue().equals(previous.sourceHashes.get(entry.getKey()))) {
+                changed.add(entry.getKey());
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Determines the sources of the given previous state which no longer exist.
+     */
+    Set<String> removedSources(RecompileState previous) {
+        final Set<String> removed = new HashSet<>(previous.sourceHashes.keySet());
+        removed.removeAll(sourceHashes.keySet());
+        return removed;
+    }
+
+    /**
+     * Reads the state of the previous run, if the output it was recorded for still exists and the settings did not
+     * change.
+     *
+     * @return The state, or null if the previous output can not be reused
+     */
+    static RecompileState read(File stateFile, String settings, File output) throws IOException {
+        if (!stateFile.isFile() || !output.isFile())
+            return null;
+
+        final Map<String, String> sourceHashes = new HashMap<>();
+        final Map<String, String> classSources = new HashMap<>();
+        final String outputHash;
+        try (BufferedReader reader = Files.newBufferedReader(stateFile.toPath(), StandardCharsets.UTF_8)) {
+            if (!STATE_HEADER.equals(reader.readLine()) || !settings.equals(reader.readLine()))
+                return null;
+
+            outputHash = reader.readLine();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String[] parts = line.split("\t", 3);
+                if (parts.length != 3)
+                    return null;
+
+                if (parts[0].equals("s")) {
+                    sourceHashes.put(parts[1], parts[2]);
+                } else if (parts[0].equals("c")) {
+                    classSources.put(parts[1], parts[2]);
+                } else {
+                    return null;
+                }
+            }
+        }
+
+        //The output might have been replaced, for example by an output loaded from the build cache.
+        if (outputHash == null || !outputHash.equals(HashFunction.SHA1.hash(output)))
+            return null;
+
+        return new RecompileState(Collections.unmodifiableMap(sourceHashes), Collections.unmodifiableMap(classSources));
+    }
+
+    /**
+     * Records this state for the given output.
+     */
+    void write(File stateFile, String settings, File output) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(stateFile.toPath(), StandardCharsets.UTF_8)) {
+            writer.write(STATE_HEADER);
+            writer.newLine();
+            writer.write(settings);
+            writer.newLine();
+            writer.write(HashFunction.SHA1.hash(output));
+            writer.newLine();
+            for (Map.Entry<String, String> entry : new TreeMap<>(sourceHashes).entrySet()) {
+                writer.write("s\t" + entry.getKey() + "\t" + entry.getValue());
+                writer.newLine();
+            }
+            for (Map.Entry<String, String> entry : new TreeMap<>(classSources).entrySet()) {
+                writer.write("c\t" + entry.getKey() + "\t" + entry.getValue());
+                writer.newLine();
+            }
+        }
+    }
+}
@@ -11,6 +11,7 @@ import codechicken.diffpatch.util.LoggingOutputStream;
 import codechicken.diffpatch.util.PatchMode;
 import codechicken.diffpatch.util.archiver.ArchiveFormat;
 import net.neoforged.gradle.common.runtime.tasks.DefaultRuntime;
+import net.neoforged.gradle.common.util.IncrementalPatcher;
 import net.neoforged.gradle.dsl.common.tasks.WithOutput;
 import net.neoforged.gradle.dsl.common.tasks.WithWorkspace;
 import org.apache.commons.io.FileUtils;
@@ -22,6 +23,7 @@ import org.gradle.api.provider.Property;
 import org.gradle.api.tasks.*;
 
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.Path;
 
 @CacheableTask
@@ -33,6 +35,7 @@ public abstract class ApplyPatches extends DefaultRuntime implements WithWorkspa
       getModifiedPrefix().convention("b/");
       getShouldFailOnPatchFailure().convention(false);
       getPatchMode().convention(getShouldFailOnPatchFailure().map(fail -> fail ? PatchMode.ACCESS : PatchMode.FUZZY));
+      getParallelism().convention(Runtime.getRuntime().availableProcessors());
    }
    
    @TaskAction
@@ -42,15 +45,49 @@ public abstract class ApplyPatches extends DefaultRuntime implements WithWorkspa
          return;
       }
       
-      Path outputPath = ensureFileWorkspaceReady(getOutput()).toPath();
-
+      final File output = getOutput().get().getAsFile();
       final Directory rejectsDir = getRejects().get();
       Path rejectsPath = rejectsDir.getAsFile().toPath();
       
+      final int exit;
+      if (ArchiveFormat.findFormat(output.toPath().getFileName()) == ArchiveFormat.ZIP) {
+         final String settings = String.join("|",
+               getPatchMode().get().name(),
+               getPatchesPrefix().get(),
+               getOriginalPrefix().get(),
+               getModifiedPrefix().get(),
+               String.valueOf(getMinimalFuzzingQuality().getOrNull()),
+               String.valueOf(getMaximalFuzzingOffset().getOrNull())
+         );
+         
+         final IncrementalPatcher patcher = new IncrementalPatcher(
+               getBase().get().getAsFile(),
+               getPatches().get().getAsFile().toPath(),
+               getPatchesPrefix().get(),
+               output,
+               rejectsPath,
+               getFileInOutputDirectory("patch-state.txt").get(),
+               settings,
+               getParallelism().get()
+         );
+         exit = patcher.apply(this::patch);
+      } else {
+         exit = patch(getBase().get().getAsFile().toPath(), getPatches().get().getAsFile().toPath(), ensureFileWorkspaceReady(output).toPath(), rejectsPath);
+      }
+      
+      if (exit != 0 && exit != 1) {
+         throw new RuntimeException("DiffPatch failed with exit code: " + exit);
+      }
+      if (exit != 0 && getShouldFailOnPatchFailure().get()) {
+         throw new RuntimeException("Patches failed to apply.");
+      }
+   }
+   
+   private int patch(Path basePath, Path patchesPath, Path outputPath, Path rejectsPath) throws IOException {
       PatchOperation.Builder builder = PatchOperation.builder()
                                              .logTo(new LoggingOutputStream(getLogger(), LogLevel.LIFECYCLE))
-                                             .basePath(getBase().get().getAsFile().toPath())
-                                             .patchesPath(getPatches().get().getAsFile().toPath())
+                                             .basePath(basePath)
+                                             .patchesPath(patchesPath)
                                              .outputPath(outputPath, ArchiveFormat.findFormat(outputPath.getFileName()))
                                              .rejectsPath(rejectsPath, ArchiveFormat.findFormat(rejectsPath.getFileName()))
                                              .mode(getPatchMode().get())
@@ -68,14 +105,7 @@ public abstract class ApplyPatches extends DefaultRuntime implements WithWorkspa
       }
       
       CliOperation.Result<PatchOperation.PatchesSummary> result = builder.build().operate();
-      
-      int exit = result.exit;
-      if (exit != 0 && exit != 1) {
-         throw new RuntimeException("DiffPatch failed with exit code: " + exit);
-      }
-      if (exit != 0 && getShouldFailOnPatchFailure().get()) {
-         throw new RuntimeException("Patches failed to apply.");
-      }
+      return result.exit;
    }
    
    // TODO: split into separate (exclusive) properties for directory or file?
@@ -122,4 +152,10 @@ public abstract class ApplyPatches extends DefaultRuntime implements WithWorkspa
    @Input
    @Optional
    public abstract Property<Boolean> getShouldFailOnPatchFailure();
+   
+   /**
+    * @return The amount of patch shards which are applied in parallel, defaults to the amount of available processors.
+    */
+   @Internal
+   public abstract Property<Integer> getParallelism();
 }
@@ -0,0 +1,71 @@
+package net.neoforged.gradle.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the streaming {@link HashFunction} implementation with the previous one,
+ * which loaded the complete file into memory and formatted the digest through {@link BigInteger}.
+ * <p>
+ * Run with {@code gradlew :utils:jmh}, and add {@code -prof gc} to the jmh arguments to compare allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HashFunctionBenchmark {
+
+    @Param({"4096", "1048576", "52428800"})
+    public int size;
+
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        final byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        file = Files.createTempFile("hash-benchmark", ".bin");
+        Files.write(file, data);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public String streaming() throws IOException {
+        return HashFunction.SHA1.hash(file);
+    }
+
+    @Benchmark
+    public byte[] streamingRaw() throws IOException {
+        return HashFunction.SHA1.digest(file);
+    }
+
+    @Benchmark
+    public String readAllBytes() throws IOException {
+        final byte[] digest = HashFunction.SHA1.get().digest(Files.readAllBytes(file));
+        return HashFunction.SHA1.pad(new BigInteger(1, digest).toString(16));
+    }
+}
@@ -148,7 +148,7 @@ public final class FileUtils {
      * @return The size in bytes of the file
      */
     public static int getFileSize(File asFile) {
-        return readAllBytes(asFile.toPath()).length;
+        return (int) asFile.length();
     }
 
     /**
@@ -23,16 +23,15 @@ package net.neoforged.gradle.util;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Locale;
 
-import org.apache.commons.io.IOUtils;
-
 import javax.annotation.Nullable;
 
 /**
@@ -50,12 +49,23 @@ public enum HashFunction {
     SHA256("SHA-256", 64),
     SHA512("SHA-512", 128);
 
+    /**
+     * The size of the buffers used to stream data into the digests.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private static final ThreadLocal<ByteBuffer> DIRECT_BUFFER = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+    private static final ThreadLocal<byte[]> HEAP_BUFFER = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+
     private final String algo;
     private final String pad;
+    private final ThreadLocal<MessageDigest> digest;
 
     HashFunction(String algo, int length) {
         this.algo = algo;
         this.pad = String.format(Locale.ROOT, "%0" + length + "d", 0);
+        this.digest = ThreadLocal.withInitial(this::get);
     }
 
     /**
@@ -81,6 +91,18 @@ public enum HashFunction {
         }
     }
 
+    /**
+     * Retrieves the {@link MessageDigest} of this hash function which is reused by the current thread.
+     * The digest is reset before it is returned, and must not be shared with other threads.
+     *
+     * @return The reset, thread local, {@link MessageDigest} instance.
+     */
+    private MessageDigest reusable() {
+        final MessageDigest digest = this.digest.get();
+        digest.reset();
+        return digest;
+    }
+
     /**
      * Hashes the given file.
      *
@@ -100,7 +122,7 @@ public enum HashFunction {
      * @throws IOException If an I/O error occurs.
      */
     public String hash(Path file) throws IOException {
-        return hash(Files.readAllBytes(file));
+        return toHex(digest(file));
     }
 
     /**
@@ -111,14 +133,14 @@ public enum HashFunction {
      * @throws IOException If an I/O error occurs.
      */
     public String hash(Iterable<File> files) throws IOException {
-        MessageDigest hash = get();
+        final MessageDigest hash = reusable();
 
         for (File file : files) {
             if (!file.exists())
                 continue;
-            hash.update(Files.readAllBytes(file.toPath()));
+            update(hash, file.toPath());
         }
-        return pad(new BigInteger(1, hash.digest()).toString(16));
+        return toHex(hash.digest());
     }
 
     /**
@@ -139,7 +161,7 @@ public enum HashFunction {
      * @throws IOException If an I/O error occurs.
      */
     public String hash(InputStream stream) throws IOException {
-        return hash(IOUtils.toByteArray(stream));
+        return toHex(digest(stream));
     }
 
     /**
@@ -149,7 +171,85 @@ public enum HashFunction {
      * @return The hash of the bytes.
      */
     public String hash(byte[] data) {
-        return pad(new BigInteger(1, get().digest(data)).toString(16));
+        return toHex(digest(data));
+    }
+
+    /**
+     * Computes the raw digest of the given file.
+     * The file is streamed through a reusable buffer, and is never loaded into memory as a whole.
+     *
+     * @param file The file to digest.
+     * @return The raw digest of the file.
+     * @throws IOException If an I/O error occurs.
+     */
+    public byte[] digest(Path file) throws IOException {
+        final MessageDigest hash = reusable();
+        update(hash, file);
+        return hash.digest();
+    }
+
+    /**
+     * Computes the raw digest of the given stream.
+     * The stream is read through a reusable buffer, but is not closed.
+     *
+     * @param stream The stream to digest.
+     * @return The raw digest of the stream.
+     * @throws IOException If an I/O error occurs.
+     */
+    public byte[] digest(InputStream stream) throws IOException {
+        final MessageDigest hash = reusable();
+        final byte[] buffer = HEAP_BUFFER.get();
+        int read;
+        while ((read = stream.read(buffer)) != -1) {
+            hash.update(buffer, 0, read);
+        }
+        return hash.digest();
+    }
+
+    /**
+     * Computes the raw digest of the given bytes.
+     *
+     * @param data The bytes to digest.
+     * @return The raw digest of the bytes.
+     */
+    public byte[] digest(byte[] data) {
+        return reusable().digest(data);
+    }
+
+    /**
+     * Streams the content of the given file into the given digest.
+     *
+     * @param hash The digest to update.
+     * @param file The file to read.
+     * @throws IOException If an I/O error occurs.
+     */
+    private static void update(MessageDigest hash, Path file) throws IOException {
+        final ByteBuffer buffer = DIRECT_BUFFER.get();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer.clear();
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                hash.update(buffer);
+                buffer.clear();
+            }
+        }
+    }
+
+    /**
+     * Encodes the given raw digest as a lowercase hexadecimal string.
+     * The result always has two characters per byte, so no additional padding is required.
+     *
+     * @param digest The raw digest.
+     * @return The hexadecimal representation of the digest.
+     */
+    public static String toHex(byte[] digest) {
+        final char[] result = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            final int value = digest[i] & 0xFF;
+            result[i * 2] = HEX_DIGITS[value >>> 4];
+            result[i * 2 + 1] = HEX_DIGITS[value & 0x0F];
+        }
+        return new String(result);
     }
 
     /**
@@ -0,0 +1,263 @@
+package net.neoforged.gradle.util;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipException;
+
+/**
+ * A read only view on a zip file, which gives access to the compressed data of its entries.
+ * <p>
+ * Together with {@link RawZipOutputStream#copyEntry(RawZipFile, Entry)} this allows entries to be copied from one zip
+ * file to another without inflating and deflating their content again.
+ * Zip64 archives are not supported.
+ */
+public final class RawZipFile implements Closeable {
+
+    static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+    static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE = 0x07064b50;
+    static final int LOCAL_HEADER_SIZE = 30;
+    static final int CENTRAL_HEADER_SIZE = 46;
+    static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final File file;
+    private final FileChannel channel;
+    private final List<Entry> entries;
+
+    private RawZipFile(File file, FileChannel channel) throws IOException {
+        this.file = file;
+        this.channel = channel;
+        this.entries = Collections.unmodifiableList(readCentralDirectory());
+    }
+
+    /**
+     * Opens the given zip file.
+     *
+     * @param file The zip file
+     * @return The opened zip file
+     * @throws IOException If the file could not be read, or is not a supported zip file
+     */
+    public static RawZipFile open(File file) throws IOException {
+        final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            return new RawZipFile(file, channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return The entries of the zip file, in the order of its central directory.
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Writes the compressed data of the given entry to the output stream.
+     *
+     * @param entry The entry of this file
+     * @param output The output stream
+     * @throws IOException If the data could not be read or written
+     */
+    void transferData(Entry entry, OutputStream output) throws IOException {
+        final long start = dataOffset(entry);
+        final byte[] buffer = new byte[(int) Math.min(COPY_BUFFER_SIZE, Math.max(1, entry.compressedSize))];
+        final ByteBuffer wrapped = ByteBuffer.wrap(buffer);
+
+        long position = start;
+        long remaining = entry.compressedSize;
+        while (remaining > 0) {
+            wrapped.clear();
+            wrapped.limit((int) Math.min(buffer.length, remaining));
+            final int read = channel.read(wrapped, position);
+            if (read < 0)
+                throw new EOFException("Unexpected end of zip file " + file + " in entry " + entry.name);
+
+            output.write(buffer, 0, read);
+            position += read;
+            remaining -= read;
+        }
+    }
+
+    /**
+     * Determines where the data of the entry starts, the local header may have a different extra field than the
+     * central directory.
+     */
+    private long dataOffset(Entry entry) throws IOException {
+        if (entry.dataOffset >= 0)
+            return entry.dataOffset;
+
+        final ByteBuffer header = read(entry.localHeaderOffset, LOCAL_HEADER_SIZE);
+        if (header.getInt(0) != LOCAL_HEADER_SIGNATURE)
+            throw new ZipException("Invalid local header for entry " + entry.name + " in " + file);
+
+        final int nameLength = header.getShort(26) & 0xFFFF;
+        final int extraLength = header.getShort(28) & 0xFFFF;
+        entry.dataOffset = entry.localHeaderOffset + LOCAL_HEADER_SIZE + nameLength + extraLength;
+        return entry.dataOffset;
+    }
+
+    private List<Entry> readCentralDirectory() throws IOException {
+        final long size = channel.size();
+        final int tailSize = (int) Math.min(size, END_OF_CENTRAL_DIRECTORY_SIZE + MAX_COMMENT_SIZE);
+        final ByteBuffer tail = read(size - tailSize, tailSize);
+
+        int end = -1;
+        for (int position = tailSize - END_OF_CENTRAL_DIRECTORY_SIZE; position >= 0; position--) {
+            if (tail.getInt(position) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+                end = position;
+                break;
+            }
+        }
+        if (end < 0)
+            throw new ZipException("Could not find the central directory of " + file);
+        if (end >= 20 && tail.getInt(end - 20) == ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE)
+            throw new ZipException("Zip64 archives are not supported: " + file);
+
+        final int count = tail.getShort(end + 10) & 0xFFFF;
+        final long directorySize = tail.getInt(end + 12) & 0xFFFFFFFFL;
+        final long directoryOffset = tail.getInt(end + 16) & 0xFFFFFFFFL;
+        final ByteBuffer directory = read(directoryOffset, (int) directorySize);
+
+        final List<Entry> result = new ArrayList<>(count);
+        int position = 0;
+        for (int i = 0; i < count; i++) {
+            if (directory.getInt(position) != CENTRAL_HEADER_SIGNATURE)
+                throw new ZipException("Invalid central directory header in " + file);
+
+            final int nameLength = directory.getShort(position + 28) & 0xFFFF;
+            final int extraLength = directory.getShort(position + 30) & 0xFFFF;
+            final int commentLength = directory.getShort(position + 32) & 0xFFFF;
+
+            final byte[] name = bytes(directory, position + CENTRAL_HEADER_SIZE, nameLength);
+            final Entry entry = new Entry(
+                    name,
+                    directory.getShort(position + 4) & 0xFFFF,
+                    directory.getShort(position + 6) & 0xFFFF,
+                    directory.getShort(position + 8) & 0xFFFF,
+                    directory.getShort(position + 10) & 0xFFFF,
+                    directory.getInt(position + 12),
+                    directory.getInt(position + 16) & 0xFFFFFFFFL,
+                    directory.getInt(position + 20) & 0xFFFFFFFFL,
+                    directory.getInt(position + 24) & 0xFFFFFFFFL,
+                    directory.getShort(position + 36) & 0xFFFF,
+                    directory.getInt(position + 38),
+                    directory.getInt(position + 42) & 0xFFFFFFFFL,
+                    bytes(directory, position + CENTRAL_HEADER_SIZE + nameLength, extraLength)
+            );
+            result.add(entry);
+
+            position += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+        return result;
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new EOFException("Unexpected end of zip file " + file);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static byte[] bytes(ByteBuffer buffer, int position, int length) {
+        final byte[] result = new byte[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = buffer.get(position + i);
+        }
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * An entry of a {@link RawZipFile}, as described by the central directory.
+     */
+    public static final class Entry {
+        private final String name;
+        final byte[] rawName;
+        final int versionMadeBy;
+        final int versionNeeded;
+        final int flags;
+        final int method;
+        final int dosTime;
+        final long crc;
+        final long compressedSize;
+        final long size;
+        final int internalAttributes;
+        final int externalAttributes;
+        final long localHeaderOffset;
+        final byte[] extra;
+        private long dataOffset = -1;
+
+        private Entry(byte[] rawName, int versionMadeBy, int versionNeeded, int flags, int method, int dosTime, long crc, long compressedSize, long size, int internalAttributes, int externalAttributes, long localHeaderOffset, byte[] extra) {
+            this.name = new String(rawName, StandardCharsets.UTF_8);
+            this.rawName = rawName;
+            this.versionMadeBy = versionMadeBy;
+            this.versionNeeded = versionNeeded;
+            this.flags = flags;
+            this.method = method;
+            this.dosTime = dosTime;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.internalAttributes = internalAttributes;
+            this.externalAttributes = externalAttributes;
+            this.localHeaderOffset = localHeaderOffset;
+            this.extra = extra;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isDirectory() {
+            return name.endsWith("/");
+        }
+
+        /**
+         * @return The compression method, see {@link java.util.zip.ZipEntry#STORED} and {@link java.util.zip.ZipEntry#DEFLATED}.
+         */
+        public int getMethod() {
+            return method;
+        }
+
+        public long getCrc() {
+            return crc;
+        }
+
+        public long getCompressedSize() {
+            return compressedSize;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
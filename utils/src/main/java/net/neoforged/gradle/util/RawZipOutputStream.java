@@ -0,0 +1,363 @@
+package net.neoforged.gradle.util;
+
+import org.apache.commons.io.output.CountingOutputStream;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * A zip writer which can copy entries from a {@link RawZipFile} as they are, without inflating and deflating their
+ * content again.
+ * <p>
+ * New entries are written like with a {@link java.util.zip.ZipOutputStream}, through {@link #putNextEntry(ZipEntry)},
+ * the write methods and {@link #closeEntry()}, and fail with the same {@code duplicate entry} errors. This is not a
+ * {@link java.util.zip.ZipOutputStream} though, code which needs one has to write into a zip of its own, whose
+ * entries are then copied.
+ * Zip64 archives are not supported, writing more than 65535 entries or more than 4 GiB fails.
+ */
+public class RawZipOutputStream extends OutputStream {
+
+    private static final int DATA_DESCRIPTOR_SIGNATURE = 0x08074b50;
+    private static final int FLAG_DATA_DESCRIPTOR = 0x8;
+    private static final int FLAG_UTF8 = 0x800;
+    private static final int VERSION_STORED = 10;
+    private static final int VERSION_DEFLATED = 20;
+    private static final long MAX_SIZE = 0xFFFFFFFFL;
+    private static final int MAX_ENTRIES = 0xFFFF;
+
+    private final CountingOutputStream target;
+    private final List<Record> records = new ArrayList<>();
+    private final Set<String> names = new HashSet<>();
+    private final CRC32 crc = new CRC32();
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    private final byte[] buffer = new byte[64 * 1024];
+
+    private Record current;
+    private long currentWritten;
+    private boolean finished;
+    private boolean closed;
+
+    public RawZipOutputStream(OutputStream out) {
+        this.target = new CountingOutputStream(new BufferedOutputStream(out));
+    }
+
+    /**
+     * Copies the given entry of the zip file into this stream, keeping its compressed data, its time and attributes.
+     *
+     * @param source The zip file which contains the entry
+     * @param entry The entry to copy
+     * @throws ZipException If an entry with the same name was already written
+     * @throws IOException If the entry could not be read or written
+     */
+    public void copyEntry(RawZipFile source, RawZipFile.Entry entry) throws IOException {
+        ensureOpen();
+        closeEntry();
+        if (!names.add(entry.getName()))
+            throw new ZipException("duplicate entry: " + entry.getName());
+
+        final Record record = new Record(
+                entry.rawName,
+                entry.versionMadeBy,
+                entry.versionNeeded,
+                //The sizes are known up front, so no data descriptor follows the data.
+                entry.flags & ~FLAG_DATA_DESCRIPTOR,
+                entry.method,
+                entry.dosTime,
+                entry.extra,
+                new byte[0],
+                target.getByteCount()
+        );
+        record.crc = entry.crc;
+        record.compressedSize = entry.compressedSize;
+        record.size = entry.size;
+        record.internalAttributes = entry.internalAttributes;
+        record.externalAttributes = entry.externalAttributes;
+
+        writeLocalHeader(record);
+        source.transferData(entry, target);
+        records.add(record);
+    }
+
+    /**
+     * Starts a new entry, whose content is written through the write methods of this stream.
+     * Entries without a method are deflated, entries without a time get the current time.
+     *
+     * @param entry The entry to write
+     * @throws ZipException If an entry with the same name was already written, or a stored entry has no size or crc
+     * @throws IOException If the entry could not be written
+     */
+    public void putNextEntry(ZipEntry entry) throws IOException {
+        ensureOpen();
+        closeEntry();
+        if (!names.add(entry.getName()))
+            throw new ZipException("duplicate entry: " + entry.getName());
+
+        final int method = entry.getMethod() == -1 ? ZipEntry.DEFLATED : entry.getMethod();
+        final long time = entry.getTime() == -1 ? System.currentTimeMillis() : entry.getTime();
+        final byte[] extra = entry.getExtra() == null ? new byte[0] : entry.getExtra();
+        final byte[] entryComment = entry.getComment() == null ? new byte[0] : entry.getComment().getBytes(StandardCharsets.UTF_8);
+        final int version = method == ZipEntry.STORED ? VERSION_STORED : VERSION_DEFLATED;
+        final int flags = method == ZipEntry.STORED ? FLAG_UTF8 : FLAG_UTF8 | FLAG_DATA_DESCRIPTOR;
+
+        final Record record = new Record(entry.getName().getBytes(StandardCharsets.UTF_8), version, version, flags, method, toDosTime(time), extra, entryComment, target.getByteCount());
+        if (method == ZipEntry.STORED) {
+            if (entry.getSize() == -1 || entry.getCrc() == -1)
+                throw new ZipException("STORED entry missing size, compressed size, or crc-32");
+
+            record.crc = entry.getCrc();
+            record.size = entry.getSize();
+            record.compressedSize = entry.getSize();
+        }
+
+        writeLocalHeader(record);
+        crc.reset();
+        deflater.reset();
+        currentWritten = 0;
+        current = record;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        if (current == null)
+            throw new ZipException("no current ZIP entry");
+        if (len == 0)
+            return;
+
+        crc.update(b, off, len);
+        currentWritten += len;
+        if (current.method == ZipEntry.STORED) {
+            target.write(b, off, len);
+            return;
+        }
+
+        deflater.setInput(b, off, len);
+        while (!deflater.needsInput()) {
+            deflate();
+        }
+    }
+
+    /**
+     * Finishes the current entry, if any.
+     *
+     * @throws ZipException If the content of a stored entry does not match its size or crc
+     * @throws IOException If the entry could not be written
+     */
+    public void closeEntry() throws IOException {
+        ensureOpen();
+        if (current == null)
+            return;
+
+        final Record record = current;
+        current = null;
+        if (record.method == ZipEntry.STORED) {
+            if (currentWritten != record.size)
+                throw new ZipException("invalid entry size (expected " + record.size + " but got " + currentWritten + " bytes)");
+            if (crc.getValue() != record.crc)
+                throw new ZipException("invalid entry crc-32 (expected 0x" + Long.toHexString(record.crc) + " but got 0x" + Long.toHexString(crc.getValue()) + ")");
+        } else {
+            deflater.finish();
+            while (!deflater.finished()) {
+                deflate();
+            }
+
+            record.crc = crc.getValue();
+            record.compressedSize = deflater.getBytesWritten();
+            record.size = deflater.getBytesRead();
+            checkSize(record);
+
+            writeInt(DATA_DESCRIPTOR_SIGNATURE);
+            writeInt(record.crc);
+            writeInt(record.compressedSize);
+            writeInt(record.size);
+        }
+
+        records.add(record);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        target.flush();
+    }
+
+    /**
+     * Finishes the current entry and writes the central directory, without closing the underlying stream.
+     *
+     * @throws IOException If the central directory could not be written
+     */
+    public void finish() throws IOException {
+        ensureOpen();
+        if (finished)
+            return;
+
+        closeEntry();
+        if (records.size() > MAX_ENTRIES)
+            throw new ZipException("Zip64 is not supported, too many entries: " + records.size());
+
+        final long directoryOffset = target.getByteCount();
+        for (Record record : records) {
+            writeCentralHeader(record);
+        }
+        final long directorySize = target.getByteCount() - directoryOffset;
+        if (directoryOffset > MAX_SIZE)
+            throw new ZipException("Zip64 is not supported, the archive is too large");
+
+        writeInt(RawZipFile.END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+        writeShort(0);
+        writeShort(0);
+        writeShort(records.size());
+        writeShort(records.size());
+        writeInt(directorySize);
+        writeInt(directoryOffset);
+        writeShort(0);
+        target.flush();
+        finished = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+
+        try {
+            finish();
+        } finally {
+            closed = true;
+            deflater.end();
+            target.close();
+        }
+    }
+
+    private void writeLocalHeader(Record record) throws IOException {
+        checkSize(record);
+        if (record.offset > MAX_SIZE)
+            throw new ZipException("Zip64 is not supported, the archive is too large");
+
+        final boolean hasDescriptor = (record.flags & FLAG_DATA_DESCRIPTOR) != 0;
+        writeInt(RawZipFile.LOCAL_HEADER_SIGNATURE);
+        writeShort(record.versionNeeded);
+        writeShort(record.flags);
+        writeShort(record.method);
+        writeInt(record.dosTime);
+        writeInt(hasDescriptor ? 0 : record.crc);
+        writeInt(hasDescriptor ? 0 : record.compressedSize);
+        writeInt(hasDescriptor ? 0 : record.size);
+        writeShort(record.name.length);
+        writeShort(record.extra.length);
+        target.write(record.name);
+        target.write(record.extra);
+    }
+
+    private void writeCentralHeader(Record record) throws IOException {
+        writeInt(RawZipFile.CENTRAL_HEADER_SIGNATURE);
+        writeShort(record.versionMadeBy);
+        writeShort(record.versionNeeded);
+        writeShort(record.flags);
+        writeShort(record.method);
+        writeInt(record.dosTime);
+        writeInt(record.crc);
+        writeInt(record.compressedSize);
+        writeInt(record.size);
+        writeShort(record.name.length);
+        writeShort(record.extra.length);
+        writeShort(record.comment.length);
+        writeShort(0);
+        writeShort(record.internalAttributes);
+        writeInt(record.externalAttributes);
+        writeInt(record.offset);
+        target.write(record.name);
+        target.write(record.extra);
+        target.write(record.comment);
+    }
+
+    private static void checkSize(Record record) throws ZipException {
+        if (record.size > MAX_SIZE || record.compressedSize > MAX_SIZE)
+            throw new ZipException("Zip64 is not supported, the entry is too large: " + new String(record.name, StandardCharsets.UTF_8));
+    }
+
+    private void deflate() throws IOException {
+        final int length = deflater.deflate(buffer, 0, buffer.length);
+        if (length > 0) {
+            target.write(buffer, 0, length);
+        }
+    }
+
+    private void writeShort(int value) throws IOException {
+        target.write(value & 0xFF);
+        target.write((value >>> 8) & 0xFF);
+    }
+
+    private void writeInt(long value) throws IOException {
+        writeShort((int) (value & 0xFFFF));
+        writeShort((int) ((value >>> 16) & 0xFFFF));
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed)
+            throw new IOException("Stream closed");
+    }
+
+    /**
+     * Converts a java time into the MS-DOS date and time format used by zip files, in the default time zone like
+     * {@link ZipEntry#getTime()}.
+     */
+    private static int toDosTime(long time) {
+        final LocalDateTime date = LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault());
+        if (date.getYear() < 1980)
+            return (1 << 21) | (1 << 16);
+
+        return (date.getYear() - 1980) << 25
+                | date.getMonthValue() << 21
+                | date.getDayOfMonth() << 16
+                | date.getHour() << 11
+                | date.getMinute() << 5
+                | date.getSecond() >> 1;
+    }
+
+    private static final class Record {
+        private final byte[] name;
+        private final int versionMadeBy;
+        private final int versionNeeded;
+        private final int flags;
+        private final int method;
+        private final int dosTime;
+        private final byte[] extra;
+        private final byte[] comment;
+        private final long offset;
+        private long crc;
+        private long compressedSize;
+        private long size;
+        private int internalAttributes;
+        private int externalAttributes;
+
+        private Record(byte[] name, int versionMadeBy, int versionNeeded, int flags, int method, int dosTime, byte[] extra, byte[] comment, long offset) {
+            this.name = name;
+            this.versionMadeBy = versionMadeBy;
+            this.versionNeeded = versionNeeded;
+            this.flags = flags;
+            this.method = method;
+            this.dosTime = dosTime;
+            this.extra = extra;
+            this.comment = comment;
+            this.offset = offset;
+        }
+    }
+}
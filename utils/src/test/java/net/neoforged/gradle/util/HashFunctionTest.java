@@ -0,0 +1,58 @@
+package net.neoforged.gradle.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class HashFunctionTest {
+
+    @Test
+    public void hashingAStringProducesTheKnownDigest() {
+        assertEquals("a9993e364706816aba3e25717850c26c9cd0d89d", HashFunction.SHA1.hash("abc"));
+        assertEquals("900150983cd24fb0d6963f7d28e17f72", HashFunction.MD5.hash("abc"));
+    }
+
+    @Test
+    public void hexEncodingKeepsLeadingZeroes() {
+        for (int seed = 0; seed < 256; seed++) {
+            final byte[] data = new byte[]{(byte) seed};
+            final String expected = HashFunction.SHA1.pad(new BigInteger(1, HashFunction.SHA1.get().digest(data)).toString(16));
+            assertEquals(expected, HashFunction.SHA1.hash(data));
+        }
+    }
+
+    @Test
+    public void streamingAFileProducesTheSameHashAsItsContent(@TempDir Path directory) throws IOException {
+        final byte[] data = new byte[200 * 1024 + 17];
+        new Random(42).nextBytes(data);
+        final Path file = directory.resolve("data.bin");
+        Files.write(file, data);
+
+        assertEquals(HashFunction.SHA256.hash(data), HashFunction.SHA256.hash(file));
+        assertEquals(HashFunction.SHA256.hash(data), HashFunction.SHA256.hash(new ByteArrayInputStream(data)));
+        assertArrayEquals(HashFunction.SHA256.get().digest(data), HashFunction.SHA256.digest(file));
+    }
+
+    @Test
+    public void hashingMultipleFilesHashesTheirConcatenatedContent(@TempDir Path directory) throws IOException {
+        final File first = directory.resolve("first.txt").toFile();
+        final File second = directory.resolve("second.txt").toFile();
+        final File missing = directory.resolve("missing.txt").toFile();
+        Files.write(first.toPath(), "Hello ".getBytes(StandardCharsets.UTF_8));
+        Files.write(second.toPath(), "World".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(HashFunction.SHA1.hash("Hello World"), HashFunction.SHA1.hash(Arrays.asList(first, missing, second)));
+    }
+}
@@ -0,0 +1,158 @@
+package net.neoforged.gradle.util;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class RawZipOutputStreamTest {
+
+    @TempDir
+    public Path tempDir;
+
+    @Test
+    public void copiedEntriesKeepTheirContentAndMetadata() throws IOException {
+        final File input = createInput();
+        final File output = tempDir.resolve("output.zip").toFile();
+
+        try (RawZipFile source = RawZipFile.open(input);
+             RawZipOutputStream out = new RawZipOutputStream(new FileOutputStream(output))) {
+            for (RawZipFile.Entry entry : source.getEntries()) {
+                out.copyEntry(source, entry);
+            }
+        }
+
+        try (ZipFile expected = new ZipFile(input); ZipFile actual = new ZipFile(output)) {
+            assertEquals(names(expected), names(actual));
+            for (ZipEntry expectedEntry : Collections.list(expected.entries())) {
+                final ZipEntry actualEntry = actual.getEntry(expectedEntry.getName());
+                assertEquals(expectedEntry.getMethod(), actualEntry.getMethod());
+                assertEquals(expectedEntry.getCompressedSize(), actualEntry.getCompressedSize());
+                assertEquals(expectedEntry.getCrc(), actualEntry.getCrc());
+                assertEquals(expectedEntry.getTime(), actualEntry.getTime());
+                assertArrayEquals(read(expected, expectedEntry), read(actual, actualEntry));
+            }
+        }
+    }
+
+    @Test
+    public void newEntriesCanBeMixedWithCopiedEntries() throws IOException {
+        final File input = createInput();
+        final File output = tempDir.resolve("output.zip").toFile();
+        final byte[] content = "package-info".getBytes(StandardCharsets.UTF_8);
+
+        try (RawZipFile source = RawZipFile.open(input);
+             RawZipOutputStream out = new RawZipOutputStream(new FileOutputStream(output))) {
+            out.putNextEntry(FileUtils.getStableEntry("com/example/package-info.java"));
+            out.write(content);
+            out.closeEntry();
+
+            for (RawZipFile.Entry entry : source.getEntries()) {
+                out.copyEntry(source, entry);
+            }
+
+            final ZipEntry stored = new ZipEntry("stored.txt");
+            stored.setMethod(ZipEntry.STORED);
+            stored.setSize(content.length);
+            stored.setCrc(crc(content));
+            out.putNextEntry(stored);
+            out.write(content);
+            out.closeEntry();
+        }
+
+        try (ZipFile actual = new ZipFile(output)) {
+            assertEquals(7, actual.size());
+            assertArrayEquals(content, read(actual, actual.getEntry("com/example/package-info.java")));
+            assertArrayEquals(content, read(actual, actual.getEntry("stored.txt")));
+            assertEquals(FileUtils.getStableEntry("x").getTime(), actual.getEntry("com/example/package-info.java").getTime());
+        }
+    }
+
+    @Test
+    public void duplicateEntriesAreRejected() throws IOException {
+        final File input = createInput();
+
+        try (RawZipFile source = RawZipFile.open(input);
+             RawZipOutputStream out = new RawZipOutputStream(new FileOutputStream(tempDir.resolve("output.zip").toFile()))) {
+            out.putNextEntry(new ZipEntry("com/example/Large.class"));
+            out.closeEntry();
+
+            final ZipException exception = assertThrows(ZipException.class, () -> out.copyEntry(source, source.getEntries().get(1)));
+            assertEquals("duplicate entry: com/example/Large.class", exception.getMessage());
+        }
+    }
+
+    private File createInput() throws IOException {
+        final File input = tempDir.resolve("input.zip").toFile();
+        final Random random = new Random(42);
+        final byte[] large = new byte[200_000];
+        for (int i = 0; i < large.length; i++) {
+            large[i] = (byte) ('a' + random.nextInt(4));
+        }
+        final byte[] small = "Hello World".getBytes(StandardCharsets.UTF_8);
+
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(input))) {
+            out.putNextEntry(new ZipEntry("com/example/"));
+            out.closeEntry();
+
+            out.putNextEntry(new ZipEntry("com/example/Large.class"));
+            out.write(large);
+            out.closeEntry();
+
+            final ZipEntry stored = new ZipEntry("com/example/stored.txt");
+            stored.setMethod(ZipEntry.STORED);
+            stored.setSize(small.length);
+            stored.setCrc(crc(small));
+            out.putNextEntry(stored);
+            out.write(small);
+            out.closeEntry();
+
+            out.putNextEntry(new ZipEntry("empty.txt"));
+            out.closeEntry();
+
+            out.putNextEntry(new ZipEntry("com/example/unicode-\u00e9.txt"));
+            out.write(small);
+            out.closeEntry();
+        }
+        return input;
+    }
+
+    private static List<String> names(ZipFile file) {
+        final List<String> names = new ArrayList<>();
+        for (ZipEntry entry : Collections.list(file.entries())) {
+            names.add(entry.getName());
+        }
+        return names;
+    }
+
+    private static byte[] read(ZipFile file, ZipEntry entry) throws IOException {
+        try (InputStream stream = file.getInputStream(entry)) {
+            return IOUtils.toByteArray(stream);
+        }
+    }
+
+    private static long crc(byte[] data) {
+        final CRC32 crc = new CRC32();
+        crc.update(data);
+        return crc.getValue();
+    }
+}